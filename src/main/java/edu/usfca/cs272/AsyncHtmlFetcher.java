@@ -0,0 +1,328 @@
+package edu.usfca.cs272;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.net.http.HttpResponse.BodySubscribers;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A non-blocking alternative to {@link HtmlFetcher} built on a shared
+ * {@link HttpClient}. The client negotiates HTTP/2 where possible and keeps
+ * connections alive in its own pool, so many requests to the same host can be
+ * in flight at once. The number of in-flight requests per host is limited;
+ * requests over the limit wait in a per-host queue without holding a thread.
+ *
+ * @see HtmlFetcher
+ *
+ * @author Colin Bindi
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2022
+ */
+public class AsyncHtmlFetcher {
+	/** Logger used for this class. */
+	private static final Logger log = LogManager.getLogger();
+
+	/** The default number of requests in flight per host. */
+	public static final int DEFAULT_LIMIT = 8;
+
+	/**
+	 * Only subscribes to the body of successful HTML responses no larger than
+	 * {@link HttpsFetcher#getMaxBody()}, decoded with the character set of the
+	 * response.
+	 */
+	private static final BodyHandler<String> HTML = info -> {
+		String type = info.headers().firstValue("Content-Type").orElse("");
+		long length = info.headers().firstValueAsLong("Content-Length").orElse(-1);
+		long max = HttpsFetcher.getMaxBody();
+
+		if (type.contains("text/html") && info.statusCode() == 200 && length <= max) {
+			return new LimitedBody(HtmlFetcher.getCharset(Map.of("Content-Type", List.of(type))), max);
+		}
+
+		return BodySubscribers.replacing(null);
+	};
+
+	/** The client shared by every request. */
+	private final HttpClient client;
+
+	/** The number of requests in flight per host. */
+	private final int limit;
+
+	/** Map of each host to its in-flight requests. */
+	private final Map<String, HostQueue> hosts;
+
+	/**
+	 * Initializes a fetcher with the default per-host limit.
+	 */
+	public AsyncHtmlFetcher() {
+		this(DEFAULT_LIMIT);
+	}
+
+	/**
+	 * Initializes a fetcher.
+	 *
+	 * @param limit the number of requests in flight per host
+	 */
+	public AsyncHtmlFetcher(int limit) {
+		this.limit = Math.max(limit, 1);
+		this.hosts = new ConcurrentHashMap<String, HostQueue>();
+		this.client = HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_2)
+				.followRedirects(HttpClient.Redirect.NORMAL)
+				.connectTimeout(Duration.ofMillis(timeout(HttpsFetcher.getConnectTimeout())))
+				.build();
+	}
+
+	/**
+	 * Converts a timeout where 0 means forever into one the client accepts.
+	 *
+	 * @param millis the timeout in milliseconds, or 0 to wait forever
+	 * @return the timeout in milliseconds
+	 */
+	private static long timeout(int millis) {
+		return millis > 0 ? millis : Long.MAX_VALUE / 1000000;
+	}
+
+	/**
+	 * Fetches the resource at the URL. The response body is only read if the
+	 * status code is 200 and the content type is HTML; otherwise it is discarded
+	 * as it arrives and the body will be {@code null}.
+	 *
+	 * @param url the url to fetch
+	 * @return the future response, or a future {@code null} if the request failed
+	 */
+	public CompletableFuture<HttpResponse<String>> fetch(URL url) {
+		return fetch(url, Map.of());
+	}
+
+	/**
+	 * Fetches the resource at the URL like {@link #fetch(URL)}, sending
+	 * conditional request headers such as "If-None-Match" and
+	 * "If-Modified-Since". An unchanged resource has status code 304 and a
+	 * {@code null} body.
+	 *
+	 * @param url the url to fetch
+	 * @param conditions the conditional request headers to send
+	 * @return the future response, or a future {@code null} if the request failed
+	 */
+	public CompletableFuture<HttpResponse<String>> fetch(URL url, Map<String, String> conditions) {
+		HttpRequest request;
+
+		try {
+			HttpRequest.Builder builder = HttpRequest.newBuilder(url.toURI())
+					.timeout(Duration.ofMillis(timeout(HttpsFetcher.getReadTimeout())))
+					.GET();
+
+			conditions.forEach(builder::header);
+			request = builder.build();
+		}
+		catch (URISyntaxException | IllegalArgumentException e) {
+			log.debug("Unable to request {}.", url);
+			return CompletableFuture.completedFuture(null);
+		}
+
+		HostQueue queue = hosts.computeIfAbsent(url.getHost(), host -> new HostQueue());
+		CompletableFuture<HttpResponse<String>> future = new CompletableFuture<>();
+
+		queue.submit(() -> {
+			try {
+				return client.sendAsync(request, HTML)
+						// the request timeout stops at the headers, so also limit the whole body
+						.orTimeout(timeout(HttpsFetcher.getReadTimeout()), TimeUnit.MILLISECONDS)
+						.whenComplete((response, exception) -> {
+							if (exception != null) {
+								log.debug("Unable to fetch {}: {}", url, exception.getMessage());
+								future.complete(null);
+							}
+							else {
+								future.complete(response);
+							}
+						});
+			}
+			catch (RuntimeException e) {
+				log.debug("Unable to start fetching {}: {}", url, e.getMessage());
+				future.complete(null);
+				return null;
+			}
+		});
+
+		return future;
+	}
+
+	/**
+	 * Starts requests to a single host, queueing any above the per-host limit
+	 * until an earlier request completes. A queued request is started on another
+	 * thread rather than by the thread completing the earlier request, so a long
+	 * queue never builds up a deep call stack.
+	 */
+	private class HostQueue {
+		/** The requests waiting to start. */
+		private final ArrayDeque<Supplier<CompletableFuture<?>>> waiting;
+
+		/** The number of requests in flight. */
+		private int active;
+
+		/**
+		 * Initializes an empty host queue.
+		 */
+		public HostQueue() {
+			this.waiting = new ArrayDeque<Supplier<CompletableFuture<?>>>();
+			this.active = 0;
+		}
+
+		/**
+		 * Starts the request now if under the limit, or queues it otherwise.
+		 *
+		 * @param start starts the request and returns it, or returns {@code null}
+		 *   if it could not be started
+		 */
+		public void submit(Supplier<CompletableFuture<?>> start) {
+			synchronized (this) {
+				if (active >= limit) {
+					waiting.addLast(start);
+					return;
+				}
+				active++;
+			}
+
+			start(start);
+		}
+
+		/**
+		 * Starts a request that holds a slot, releasing the slot when the request
+		 * completes, or right away if it could not be started.
+		 *
+		 * @param start starts the request
+		 */
+		private void start(Supplier<CompletableFuture<?>> start) {
+			CompletableFuture<?> request = null;
+
+			try {
+				request = start.get();
+			}
+			finally {
+				if (request == null) {
+					release();
+				}
+				else {
+					request.whenComplete((result, exception) -> release());
+				}
+			}
+		}
+
+		/**
+		 * Marks a request as complete and starts the next waiting request on
+		 * another thread.
+		 */
+		private void release() {
+			Supplier<CompletableFuture<?>> next;
+
+			synchronized (this) {
+				next = waiting.pollFirst();
+
+				if (next == null) {
+					active--;
+					return;
+				}
+			}
+
+			CompletableFuture.runAsync(() -> start(next));
+		}
+	}
+
+	/**
+	 * Collects a body as it arrives and decodes it once complete. If the body
+	 * grows past the maximum size, the rest is cancelled and the body is
+	 * {@code null}.
+	 */
+	private static class LimitedBody implements BodySubscriber<String> {
+		/** The character set of the body. */
+		private final Charset charset;
+
+		/** The largest body that is kept, in bytes. */
+		private final long max;
+
+		/** The bytes received so far. */
+		private final ByteArrayOutputStream bytes;
+
+		/** The decoded body. */
+		private final CompletableFuture<String> body;
+
+		/** The subscription to cancel if the body is too large. */
+		private Flow.Subscription subscription;
+
+		/**
+		 * Initializes an empty body.
+		 *
+		 * @param charset the character set of the body
+		 * @param max the largest body that is kept, in bytes
+		 */
+		public LimitedBody(Charset charset, long max) {
+			this.charset = charset;
+			this.max = max;
+			this.bytes = new ByteArrayOutputStream();
+			this.body = new CompletableFuture<>();
+		}
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+			subscription.request(Long.MAX_VALUE);
+		}
+
+		@Override
+		public void onNext(List<ByteBuffer> buffers) {
+			if (body.isDone()) {
+				return;
+			}
+
+			for (ByteBuffer buffer : buffers) {
+				if (bytes.size() + buffer.remaining() > max) {
+					log.debug("Skipping a body larger than {} bytes.", max);
+					subscription.cancel();
+					body.complete(null);
+					return;
+				}
+
+				byte[] array = new byte[buffer.remaining()];
+				buffer.get(array);
+				bytes.writeBytes(array);
+			}
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			body.completeExceptionally(throwable);
+		}
+
+		@Override
+		public void onComplete() {
+			body.complete(new String(bytes.toByteArray(), charset));
+		}
+
+		@Override
+		public CompletionStage<String> getBody() {
+			return body;
+		}
+	}
+}
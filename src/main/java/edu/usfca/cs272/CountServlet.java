@@ -1,10 +1,7 @@
 package edu.usfca.cs272;
 
-import static java.nio.charset.StandardCharsets.UTF_8;
-
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
 import java.time.LocalDateTime;
@@ -14,7 +11,6 @@ import java.util.HashMap;
 import java.util.Map;
 
 import org.apache.commons.text.StringEscapeUtils;
-import org.apache.commons.text.StringSubstitutor;
 
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServlet;
@@ -23,7 +19,11 @@ import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
 
 /**
- * Servlet to GET handle requests to /counts.
+ * Servlet to GET handle requests to /counts. The word counts are shown one page
+ * of locations at a time, starting after the location in the "after"
+ * parameter.
+ *
+ * @see IndexServlet
  */
 public class CountServlet extends HttpServlet {
 	/** ID used for serialization, which we are not using. */
@@ -39,6 +39,12 @@ public class CountServlet extends HttpServlet {
 	 */
 	public WorkQueue workQueue;
 	
+	/** The number of locations on a page if no limit is given. */
+	public static final int DEFAULT_LIMIT = 500;
+	
+	/** The most locations allowed on a page. */
+	public static final int MAX_LIMIT = 5000;
+	
 	/** Location of the HTML template for this servlet. */
 	private static final Path COUNTS = Path.of("src", "main", "resources", "counts.html");
 	
@@ -63,11 +69,13 @@ public class CountServlet extends HttpServlet {
 	 * If a URL was included as a parameter in the GET request, safely fetch and
 	 * display the HTTP headers of that URL.
 	 */
-	@SuppressWarnings("unchecked")
 	@Override
 	protected void doGet(HttpServletRequest request,
 			HttpServletResponse response) throws ServletException, IOException {
 		
+		response.setContentType("text/html;charset=UTF-8");
+		response.setStatus(HttpServletResponse.SC_OK);
+		
 		HttpSession session = request.getSession(true);
 		
 		if (session.isNew()) {
@@ -83,26 +91,31 @@ public class CountServlet extends HttpServlet {
 		
 		PrintWriter out = response.getWriter();
 		
-		ArrayList<String> inputList = (ArrayList<String>) session.getAttribute("input");
+		SearchHistory history = SearchHistory.get(session);
 		
 		Map<String, String> values = new HashMap<>();
 		
-		values.put("counts", index.wordCountToWeb());
+		String after = request.getParameter("after");
+		int limit = IndexServlet.limit(request.getParameter("limit"), DEFAULT_LIMIT, MAX_LIMIT);
+		// the uptime is left out of the tag, so a revalidated page keeps the uptime it was rendered with
+		String tag = HttpCaching.tag(true, index.getGeneration(), history.total(), lastVisit, after, limit);
+		
+		if (HttpCaching.notModified(request, response, tag)) {
+			return;
+		}
+		
+		values.put("counts", browse(index, after, limit));
 		
 		Duration searchDuration = Duration.between(WebServer.serverUptime(), LocalDateTime.now());
 		
 		values.put("stats", "<br>Server Uptime: "+String.format("%02d:%02d:%02d", searchDuration.toHours(), searchDuration.toMinutesPart(), searchDuration.toSecondsPart())+
 				"&ensp;|&ensp;Words Stored: "+index.size()+
-				"&ensp;|&ensp;Queries Conducted: "+(inputList != null ? Integer.toString(inputList.size()) : "0")+
+				"&ensp;|&ensp;Queries Conducted: "+history.total()+
 				"&ensp;|&ensp;Last Visit: "+(lastVisit == null ? "" : lastVisit.format(DateTimeFormatter.ofPattern("EEEE, MMMM dd, yyyy 'at' HH:mm a"))));
 		
-		out.print(new StringSubstitutor(values).replace(Files.readString(COUNTS, UTF_8)));
-		
-		response.setContentType("text/html;charset=UTF-8");
-		response.setStatus(HttpServletResponse.SC_OK);
+		HtmlTemplate.get(COUNTS).render(out, values);
 	}
 	
-	@SuppressWarnings("unchecked")
 	@Override
 	protected void doPost(HttpServletRequest request, 
 			HttpServletResponse response) throws ServletException, IOException {
@@ -122,7 +135,7 @@ public class CountServlet extends HttpServlet {
 		
 		PrintWriter out = response.getWriter();
 		
-		ArrayList<String> inputList = (ArrayList<String>) session.getAttribute("input");
+		SearchHistory history = SearchHistory.get(session);
 		
 		Map<String, String> values = new HashMap<>();
 		
@@ -130,11 +143,11 @@ public class CountServlet extends HttpServlet {
 		
 		values.put("stats", "<br>Server Uptime: "+String.format("%02d:%02d:%02d", searchDuration.toHours(), searchDuration.toMinutesPart(), searchDuration.toSecondsPart())+
 				"&ensp;|&ensp;Words Stored: "+index.size()+
-				"&ensp;|&ensp;Queries Conducted: "+(inputList != null ? Integer.toString(inputList.size()) : "0")+
+				"&ensp;|&ensp;Queries Conducted: "+history.total()+
 				"&ensp;|&ensp;Last Visit: "+(lastVisit == null ? "" : lastVisit.format(DateTimeFormatter.ofPattern("EEEE, MMMM dd, yyyy 'at' HH:mm a"))));
 		
 		if (request.getParameter("options") != null) {
-			out.print(Files.readString(OPTIONS, UTF_8));
+			HtmlTemplate.get(OPTIONS).render(out);
 			return;
 		}
 		
@@ -150,20 +163,44 @@ public class CountServlet extends HttpServlet {
 			if (list.isEmpty()) {
 				values.put("counts", "There are no matches.");
 				
-				out.print(new StringSubstitutor(values).replace(Files.readString(COUNTS, UTF_8)));
+				HtmlTemplate.get(COUNTS).render(out, values);
 			} else {
 				StringBuilder builder = new StringBuilder();
 				
 				for (String match : list) {
+					int count = index.getWordCount(match);
+					
+					// the location may have been removed since the search
+					if (count == 0) {
+						continue;
+					}
+					
 					builder.append("<a href=\""+match+"\">"+match+"</a><strong> - ");
-					builder.append("Word Count: </strong>"+index.getWordCount(match));
+					builder.append("Word Count: </strong>"+count);
 					builder.append("<br>");
 				}
 				
 				values.put("counts", builder.toString());
 				
-				out.print(new StringSubstitutor(values).replace(Files.readString(COUNTS, UTF_8)));
+				HtmlTemplate.get(COUNTS).render(out, values);
 			}
 		}
 	}
-}
\ No newline at end of file
+	
+	/**
+	 * Builds HTML for one page of the word counts with links to the first and
+	 * next pages.
+	 * 
+	 * @param index the inverted index
+	 * @param after the last location of the previous page, or {@code null} for
+	 *   the first page
+	 * @param limit the most locations on the page
+	 * @return the HTML
+	 */
+	public static String browse(ThreadSafeInvertedIndex index, String after, int limit) {
+		StringBuilder builder = new StringBuilder();
+		String next = index.wordCountToWeb(builder, after, limit);
+		IndexServlet.links(builder, "/counts", after, next, limit);
+		return builder.toString();
+	}
+}
@@ -0,0 +1,486 @@
+package edu.usfca.cs272;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Decides which discovered links are crawled and when. Links are admitted
+ * once each (without locking) until the maximum number of links is reached,
+ * then wait in a
+ * queue for their host. Each host has at most a fixed number of fetches in
+ * flight and waits a fixed delay between starting fetches, so many hosts can
+ * be crawled at once without overloading any single one. Within a host,
+ * shallower links are fetched first and links at the same depth are fetched
+ * in the order they were found.
+ *
+ * Every dispatched link must be marked complete with {@link #complete()} once
+ * its page has been processed. The frontier can then be paused until no page
+ * is in flight, so the waiting links and the seen set can be saved together
+ * with a consistent index.
+ *
+ * @see WebCrawler
+ *
+ * @author Colin Bindi
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2022
+ */
+public class CrawlFrontier {
+	/** Logger used for this class. */
+	private static final Logger log = LogManager.getLogger();
+
+	/** The default number of fetches in flight per host. */
+	public static final int DEFAULT_CONCURRENCY = 4;
+
+	/** The default delay between starting fetches to the same host in milliseconds. */
+	public static final long DEFAULT_DELAY = 0;
+
+	/**
+	 * Starts fetching a link once its host allows it.
+	 */
+	@FunctionalInterface
+	public interface Dispatcher {
+		/**
+		 * Starts fetching the link. The callback must be run exactly once when the
+		 * fetch is complete, whether or not it succeeded, so the host can start
+		 * its next fetch, and {@link CrawlFrontier#complete()} must be called
+		 * exactly once when the page has been processed.
+		 *
+		 * @param url the link to fetch
+		 * @param depth the number of links followed from the seed
+		 * @param done the callback to run when the fetch is complete
+		 */
+		void dispatch(URL url, int depth, Runnable done);
+	}
+
+	/** Orders links by depth, then by the order they were found. */
+	private static final Comparator<Entry> PRIORITY = Comparator.comparingInt((Entry entry) -> entry.depth)
+			.thenComparingLong(entry -> entry.sequence);
+
+	/** The total number of links to crawl. */
+	private final int max;
+
+	/** The number of fetches in flight per host. */
+	private final int concurrency;
+
+	/** The delay between starting fetches to the same host in milliseconds. */
+	private final long delay;
+
+	/** The work queue, which tracks delayed fetches. */
+	private final WorkQueue workQueue;
+
+	/** Starts each fetch. */
+	private final Dispatcher dispatcher;
+
+	/** The links seen so far. */
+	private final UrlSeenSet seen;
+
+	/** The number of links admitted. */
+	private final AtomicInteger admitted;
+
+	/** Map of each host to its waiting links. */
+	private final Map<String, Host> hosts;
+
+	/** Counts the links admitted, to keep links at the same depth in order. */
+	private final AtomicLong sequence;
+
+	/** The number of links dispatched but not yet complete. */
+	private int running;
+
+	/** Whether dispatching is paused. */
+	private boolean paused;
+
+	/**
+	 * Initializes an empty frontier.
+	 *
+	 * @param max the total number of links to crawl
+	 * @param concurrency the number of fetches in flight per host
+	 * @param delay the delay between starting fetches to the same host in milliseconds
+	 * @param workQueue the work queue, which tracks delayed fetches
+	 * @param dispatcher starts each fetch
+	 */
+	public CrawlFrontier(int max, int concurrency, long delay, WorkQueue workQueue, Dispatcher dispatcher) {
+		this(max, concurrency, delay, workQueue, dispatcher, new UrlSeenSet());
+	}
+
+	/**
+	 * Initializes an empty frontier.
+	 *
+	 * @param max the total number of links to crawl
+	 * @param concurrency the number of fetches in flight per host
+	 * @param delay the delay between starting fetches to the same host in milliseconds
+	 * @param workQueue the work queue, which tracks delayed fetches
+	 * @param dispatcher starts each fetch
+	 * @param seen the links seen so far
+	 */
+	public CrawlFrontier(int max, int concurrency, long delay, WorkQueue workQueue, Dispatcher dispatcher, UrlSeenSet seen) {
+		this.max = max;
+		this.concurrency = Math.max(concurrency, 1);
+		this.delay = Math.max(delay, 0);
+		this.workQueue = workQueue;
+		this.dispatcher = dispatcher;
+		this.seen = seen;
+		this.admitted = new AtomicInteger();
+		this.hosts = new ConcurrentHashMap<String, Host>();
+		this.sequence = new AtomicLong();
+		this.running = 0;
+		this.paused = false;
+	}
+
+	/**
+	 * Admits a link if it has not been seen and the maximum has not been
+	 * reached, then queues it for its host.
+	 *
+	 * @param url the link
+	 * @param depth the number of links followed from the seed
+	 * @return {@code true} if the link was admitted
+	 */
+	public boolean add(URL url, int depth) {
+		if (admitted.get() >= max || !seen.add(url)) {
+			return false;
+		}
+
+		int count;
+
+		do {
+			count = admitted.get();
+
+			if (count >= max) {
+				return false;
+			}
+		} while (!admitted.compareAndSet(count, count + 1));
+
+		Host host = hosts.computeIfAbsent(url.getHost().toLowerCase(), name -> new Host());
+		host.offer(new Entry(url, depth, sequence.getAndIncrement()));
+		return true;
+	}
+
+	/**
+	 * Marks a dispatched link as complete once its page has been processed,
+	 * whether or not it succeeded.
+	 */
+	public synchronized void complete() {
+		assert running > 0;
+		running--;
+
+		if (running == 0) {
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Counts a link as dispatched unless dispatching is paused.
+	 *
+	 * @return {@code true} if the link may be dispatched
+	 */
+	private synchronized boolean start() {
+		if (paused) {
+			return false;
+		}
+
+		running++;
+		return true;
+	}
+
+	/**
+	 * Stops dispatching links and waits until every dispatched link is
+	 * complete. The work queue is kept busy while paused so it does not finish
+	 * early.
+	 *
+	 * @return the future to complete when resuming
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	private CompletableFuture<Void> pause() throws InterruptedException {
+		CompletableFuture<Void> resumed = new CompletableFuture<>();
+		workQueue.track(resumed);
+
+		synchronized (this) {
+			paused = true;
+
+			while (running > 0) {
+				wait();
+			}
+		}
+
+		return resumed;
+	}
+
+	/**
+	 * Resumes dispatching links after a pause.
+	 *
+	 * @param resumed the future returned by {@link #pause()}
+	 */
+	private void resume(CompletableFuture<Void> resumed) {
+		synchronized (this) {
+			paused = false;
+		}
+
+		hosts.values().forEach(Host::schedule);
+		resumed.complete(null);
+	}
+
+	/**
+	 * Pauses the frontier until no page is in flight, runs the action, and then
+	 * resumes. The waiting links and the seen set are written to the directory
+	 * before the action runs, so the action can save the rest of the crawl
+	 * state knowing no page will change it in the meantime.
+	 *
+	 * @param directory the directory to write to
+	 * @param action saves the rest of the crawl state
+	 * @throws IOException if an I/O error occurs
+	 *
+	 * @see #read(Path)
+	 */
+	public void checkpoint(Path directory, Checkpoint action) throws IOException {
+		CompletableFuture<Void> resumed;
+
+		try {
+			resumed = pause();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while pausing the crawl", e);
+		}
+
+		try {
+			action.save();
+
+			Path seenPath = directory.resolve("seen.bin");
+			Path seenTemp = directory.resolve("seen.bin.tmp");
+			seen.write(seenTemp);
+
+			Path frontierPath = directory.resolve("frontier.tsv");
+			Path frontierTemp = directory.resolve("frontier.tsv.tmp");
+
+			try (BufferedWriter writer = Files.newBufferedWriter(frontierTemp, UTF_8)) {
+				writer.write(Integer.toString(admitted.get()));
+				writer.newLine();
+
+				for (Host host : hosts.values()) {
+					for (Entry entry : host.snapshot()) {
+						writer.write(entry.depth + "\t" + entry.url);
+						writer.newLine();
+					}
+				}
+			}
+
+			WebCrawler.replace(seenTemp, seenPath);
+			WebCrawler.replace(frontierTemp, frontierPath);
+			log.debug("Checkpointed {} admitted links to {}.", admitted.get(), directory);
+		}
+		finally {
+			resume(resumed);
+		}
+	}
+
+	/**
+	 * Reads the waiting links written by a checkpoint and queues them again.
+	 * The seen set must already have been restored, for example with
+	 * {@link UrlSeenSet#read(Path)}.
+	 *
+	 * @param directory the checkpoint directory
+	 * @return the number of links queued
+	 * @throws IOException if an I/O error occurs or the file is malformed
+	 */
+	public int read(Path directory) throws IOException {
+		int count = 0;
+
+		try (BufferedReader reader = Files.newBufferedReader(directory.resolve("frontier.tsv"), UTF_8)) {
+			String line = reader.readLine();
+
+			try {
+				admitted.set(Integer.parseInt(line.strip()));
+
+				while ((line = reader.readLine()) != null) {
+					if (line.isBlank()) {
+						continue;
+					}
+
+					String[] split = line.split("\t", 2);
+					URL url = new URL(split[1]);
+					Host host = hosts.computeIfAbsent(url.getHost().toLowerCase(), name -> new Host());
+					host.offer(new Entry(url, Integer.parseInt(split[0]), sequence.getAndIncrement()));
+					count++;
+				}
+			}
+			catch (NullPointerException | NumberFormatException | ArrayIndexOutOfBoundsException e) {
+				throw new IOException("Malformed frontier line: " + line);
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * Saves crawl state while the frontier is paused.
+	 */
+	@FunctionalInterface
+	public interface Checkpoint {
+		/**
+		 * Saves crawl state.
+		 *
+		 * @throws IOException if an I/O error occurs
+		 */
+		void save() throws IOException;
+	}
+
+	/**
+	 * Returns the number of admitted links.
+	 *
+	 * @return the number of admitted links
+	 */
+	public int size() {
+		return admitted.get();
+	}
+
+	/**
+	 * A link waiting to be fetched.
+	 */
+	private static class Entry {
+		/** The link. */
+		private final URL url;
+
+		/** The number of links followed from the seed. */
+		private final int depth;
+
+		/** The order the link was admitted. */
+		private final long sequence;
+
+		/**
+		 * Initializes an entry.
+		 *
+		 * @param url the link
+		 * @param depth the number of links followed from the seed
+		 * @param sequence the order the link was admitted
+		 */
+		public Entry(URL url, int depth, long sequence) {
+			this.url = url;
+			this.depth = depth;
+			this.sequence = sequence;
+		}
+	}
+
+	/**
+	 * The waiting links and fetches in flight for a single host.
+	 */
+	private class Host {
+		/** The links waiting to be fetched. */
+		private final PriorityQueue<Entry> waiting;
+
+		/** The number of fetches in flight. */
+		private int active;
+
+		/** The earliest time the next fetch may start in milliseconds. */
+		private long next;
+
+		/** Whether a delayed call to {@link #schedule()} is pending. */
+		private boolean sleeping;
+
+		/**
+		 * Initializes an empty host.
+		 */
+		public Host() {
+			this.waiting = new PriorityQueue<Entry>(PRIORITY);
+			this.active = 0;
+			this.next = 0;
+			this.sleeping = false;
+		}
+
+		/**
+		 * Queues a link and starts it if the host allows.
+		 *
+		 * @param entry the link
+		 */
+		public void offer(Entry entry) {
+			synchronized (this) {
+				waiting.add(entry);
+			}
+			schedule();
+		}
+
+		/**
+		 * Marks a fetch as complete and starts the next waiting link if the host
+		 * allows.
+		 */
+		public void release() {
+			synchronized (this) {
+				active--;
+			}
+			schedule();
+		}
+
+		/**
+		 * Returns a copy of the waiting links.
+		 *
+		 * @return the waiting links
+		 */
+		public synchronized List<Entry> snapshot() {
+			return new ArrayList<>(waiting);
+		}
+
+		/**
+		 * Wakes up after a delay and starts the next waiting link if the host
+		 * allows.
+		 */
+		private void wake() {
+			synchronized (this) {
+				sleeping = false;
+			}
+			schedule();
+		}
+
+		/**
+		 * Starts as many waiting links as the concurrency and delay allow. If the
+		 * delay has not passed, schedules a call to this method for when it has.
+		 */
+		public void schedule() {
+			List<Entry> ready = new ArrayList<>();
+
+			synchronized (this) {
+				long now = System.currentTimeMillis();
+
+				while (active < concurrency && !waiting.isEmpty()) {
+					if (now < next) {
+						if (!sleeping) {
+							sleeping = true;
+							var executor = CompletableFuture.delayedExecutor(next - now, TimeUnit.MILLISECONDS);
+							workQueue.track(CompletableFuture.runAsync(this::wake, executor));
+						}
+						break;
+					}
+
+					if (!start()) {
+						break;
+					}
+
+					ready.add(waiting.poll());
+					active++;
+					next = now + delay;
+				}
+			}
+
+			for (Entry entry : ready) {
+				log.debug("Dispatching {} at depth {}.", entry.url, entry.depth);
+				dispatcher.dispatch(entry.url, entry.depth, this::release);
+			}
+		}
+	}
+}
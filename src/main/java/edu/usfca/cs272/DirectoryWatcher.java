@@ -0,0 +1,337 @@
+package edu.usfca.cs272;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Watches a text directory and its sub-directories for changes and applies
+ * them to a live inverted index. Events are debounced: changed paths are
+ * collected until no new event arrives for the debounce delay (or the maximum
+ * delay passes), then each changed file is re-parsed on the work queue. Files
+ * are parsed into a local index first so the shared index is only locked
+ * while the postings are swapped. Tasks for the same path run one at a time in
+ * the order they were queued, so a file changed and then deleted in two
+ * batches is never re-added by the older task.
+ *
+ * The watcher is a daemon thread, so the caller must keep the process alive
+ * (for example by joining the watcher) for as long as changes should be
+ * applied.
+ *
+ * @see WatchService
+ * @see ThreadSafeInvertedIndexBuilder
+ *
+ * @author Colin Bindi
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2022
+ */
+public class DirectoryWatcher extends Thread {
+	/** Logger used for this class. */
+	private static final Logger log = LogManager.getLogger();
+
+	/** The default time to wait for events to settle in milliseconds. */
+	public static final long DEFAULT_DEBOUNCE = 500;
+
+	/** The longest a batch of events may be delayed, as a multiple of the debounce delay. */
+	private static final int MAX_DELAY_FACTOR = 10;
+
+	/** The directory being watched. */
+	private final Path root;
+
+	/** The inverted index. */
+	private final ThreadSafeInvertedIndex index;
+
+	/** The work queue. */
+	private final WorkQueue workQueue;
+
+	/** The time to wait for events to settle in milliseconds. */
+	private final long debounce;
+
+	/** The watch service. */
+	private final WatchService watcher;
+
+	/** Map of each registered key to its directory. */
+	private final Map<WatchKey, Path> keys;
+
+	/** Map of each path to the last task queued for it that has not finished. */
+	private final ConcurrentHashMap<Path, CompletableFuture<Void>> pending;
+
+	/**
+	 * Initializes a watcher and registers the directory and its sub-directories.
+	 *
+	 * @param root the directory to watch
+	 * @param index the inverted index
+	 * @param workQueue the work queue
+	 * @param debounce the time to wait for events to settle in milliseconds
+	 * @throws IOException if an I/O error occurs
+	 */
+	public DirectoryWatcher(Path root, ThreadSafeInvertedIndex index, WorkQueue workQueue, long debounce) throws IOException {
+		this.root = root;
+		this.index = index;
+		this.workQueue = workQueue;
+		this.debounce = debounce;
+		this.watcher = root.getFileSystem().newWatchService();
+		this.keys = new HashMap<WatchKey, Path>();
+		this.pending = new ConcurrentHashMap<Path, CompletableFuture<Void>>();
+
+		setName("DirectoryWatcher");
+		setDaemon(true);
+		register(root, null);
+	}
+
+	/**
+	 * Registers the directory and its sub-directories with the watch service.
+	 * Text files found in newly created directories are added to the changes.
+	 *
+	 * @param directory the directory to register
+	 * @param changed the changed paths, or {@code null} if registering at startup
+	 * @throws IOException if an I/O error occurs
+	 */
+	private void register(Path directory, Set<Path> changed) throws IOException {
+		keys.put(directory.register(watcher, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), directory);
+
+		try (DirectoryStream<Path> listing = Files.newDirectoryStream(directory)) {
+			for (Path path : listing) {
+				if (Files.isDirectory(path)) {
+					register(path, changed);
+				}
+				else if (changed != null && InvertedIndexBuilder.isTextFile(path)) {
+					changed.add(path);
+				}
+			}
+		}
+	}
+
+	@Override
+	public void run() {
+		Set<Path> changed = new LinkedHashSet<>();
+		long first = 0;
+
+		try {
+			while (!isInterrupted()) {
+				WatchKey key;
+
+				if (changed.isEmpty()) {
+					key = watcher.take();
+					first = System.currentTimeMillis();
+				}
+				else {
+					key = watcher.poll(debounce, TimeUnit.MILLISECONDS);
+				}
+
+				if (key != null) {
+					collect(key, changed);
+				}
+
+				if (!changed.isEmpty() && (key == null || System.currentTimeMillis() - first >= debounce * MAX_DELAY_FACTOR)) {
+					apply(changed);
+					changed.clear();
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			log.catching(Level.DEBUG, e);
+		}
+		finally {
+			try {
+				watcher.close();
+			}
+			catch (IOException e) {
+				log.catching(Level.DEBUG, e);
+			}
+		}
+
+		log.debug("Directory watcher terminating...");
+	}
+
+	/**
+	 * Collects the paths changed by the events of a watch key.
+	 *
+	 * @param key the signalled key
+	 * @param changed the changed paths
+	 */
+	private void collect(WatchKey key, Set<Path> changed) {
+		Path directory = keys.get(key);
+
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == OVERFLOW || directory == null) {
+				log.debug("Watch events overflowed; rescanning {}.", root);
+				changed.add(root);
+				continue;
+			}
+
+			Path path = directory.resolve((Path) event.context());
+
+			if (event.kind() == ENTRY_CREATE && Files.isDirectory(path)) {
+				try {
+					register(path, changed);
+				}
+				catch (IOException e) {
+					log.debug("Unable to watch directory {}.", path);
+				}
+			}
+			else {
+				changed.add(path);
+			}
+		}
+
+		if (!key.reset()) {
+			keys.remove(key);
+		}
+	}
+
+	/**
+	 * Applies a batch of changed paths to the index using the work queue.
+	 *
+	 * @param changed the changed paths
+	 */
+	private void apply(Set<Path> changed) {
+		log.debug("Applying {} changed paths.", changed.size());
+
+		for (Path path : changed) {
+			if (Files.isDirectory(path)) {
+				submit(path, new RemoveTask(path, true));
+
+				try {
+					rescan(path);
+				}
+				catch (IOException e) {
+					log.debug("Unable to rescan directory {}.", path);
+				}
+			}
+			else if (Files.isRegularFile(path)) {
+				if (InvertedIndexBuilder.isTextFile(path)) {
+					submit(path, new UpdateTask(path, index));
+				}
+			}
+			else {
+				submit(path, new RemoveTask(path, false));
+			}
+		}
+	}
+
+	/**
+	 * Queues a task for a path on the work queue once every task queued earlier
+	 * for the same path has finished.
+	 *
+	 * @param path the path the task changes
+	 * @param task the task
+	 */
+	private void submit(Path path, Runnable task) {
+		CompletableFuture<Void> next = pending.compute(path, (key, previous) -> previous == null
+				? CompletableFuture.runAsync(task, workQueue::execute)
+				: previous.exceptionally(e -> null).thenRunAsync(task, workQueue::execute));
+
+		next.whenComplete((result, exception) -> pending.remove(path, next));
+	}
+
+	/**
+	 * Re-parses every text file in the directory and its sub-directories using
+	 * the work queue.
+	 *
+	 * @param directory the directory to rescan
+	 * @throws IOException if an I/O error occurs
+	 */
+	private void rescan(Path directory) throws IOException {
+		try (DirectoryStream<Path> listing = Files.newDirectoryStream(directory)) {
+			for (Path path : listing) {
+				if (Files.isDirectory(path)) {
+					rescan(path);
+				}
+				else if (InvertedIndexBuilder.isTextFile(path)) {
+					submit(path, new UpdateTask(path, index));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Re-parses a changed text file and swaps its postings into the index.
+	 */
+	private static class UpdateTask implements Runnable {
+		/** The changed text file. */
+		private final Path path;
+
+		/** The inverted index. */
+		private final ThreadSafeInvertedIndex index;
+
+		/**
+		 * Initializes this task.
+		 *
+		 * @param path the changed text file
+		 * @param index the inverted index
+		 */
+		public UpdateTask(Path path, ThreadSafeInvertedIndex index) {
+			this.path = path;
+			this.index = index;
+		}
+
+		@Override
+		public void run() {
+			try {
+				InvertedIndex local = new InvertedIndex();
+				InvertedIndexBuilder.parseFile(path, local);
+				index.replaceLocation(local, path.toString());
+			}
+			catch (IOException e) {
+				log.debug("IOException error at path: {}.", path);
+			}
+		}
+	}
+
+	/**
+	 * Removes a deleted file, or every file under a deleted directory, from the
+	 * index.
+	 */
+	private class RemoveTask implements Runnable {
+		/** The deleted path. */
+		private final Path path;
+
+		/** Whether existing files under this path should be kept. */
+		private final boolean existing;
+
+		/**
+		 * Initializes this task.
+		 *
+		 * @param path the deleted path
+		 * @param existing {@code true} to only remove locations whose files are gone
+		 */
+		public RemoveTask(Path path, boolean existing) {
+			this.path = path;
+			this.existing = existing;
+		}
+
+		@Override
+		public void run() {
+			String location = path.toString();
+			index.removeLocation(location);
+
+			for (String match : index.partialLocationSearch(location + File.separator)) {
+				if (!existing || !Files.isRegularFile(Path.of(match))) {
+					index.removeLocation(match);
+				}
+			}
+		}
+	}
+}
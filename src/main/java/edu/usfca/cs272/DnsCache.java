@@ -0,0 +1,253 @@
+package edu.usfca.cs272;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Caches host name lookups for the crawler. Successful lookups are kept for a
+ * time to live, and failed lookups are kept for a shorter time so a host that
+ * does not resolve is not looked up again for every link to it. Concurrent
+ * lookups of the same host share a single request to the resolver.
+ *
+ * Hosts can be prefetched as links are discovered, so their addresses are
+ * usually ready by the time the page is fetched. Prefetches run on a small
+ * pool of daemon threads.
+ *
+ * @see HttpsFetcher#openConnection(java.net.URL)
+ *
+ * @author Colin Bindi
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2022
+ */
+public class DnsCache {
+	/** Logger used for this class. */
+	private static final Logger log = LogManager.getLogger();
+
+	/** The default time to keep a successful lookup in milliseconds. */
+	public static final long DEFAULT_TTL = 5 * 60 * 1000;
+
+	/** The default time to keep a failed lookup in milliseconds. */
+	public static final long DEFAULT_NEGATIVE_TTL = 30 * 1000;
+
+	/** The number of hosts cached before expired lookups are removed. */
+	private static final int CLEANUP_SIZE = 10000;
+
+	/** The number of threads used to prefetch hosts. */
+	private static final int PREFETCH_THREADS = 4;
+
+	/** The cache used by the fetchers. */
+	private static volatile DnsCache shared = new DnsCache(InetAddress::getAllByName, DEFAULT_TTL, DEFAULT_NEGATIVE_TTL);
+
+	/**
+	 * Looks up the addresses of a host name.
+	 */
+	@FunctionalInterface
+	public interface Resolver {
+		/**
+		 * Looks up the addresses of a host name.
+		 *
+		 * @param host the host name
+		 * @return the addresses, which must not be empty
+		 * @throws UnknownHostException if the host name cannot be resolved
+		 */
+		InetAddress[] resolve(String host) throws UnknownHostException;
+	}
+
+	/** Looks up hosts that are not cached. */
+	private final Resolver resolver;
+
+	/** The time to keep a successful lookup in milliseconds. */
+	private final long ttl;
+
+	/** The time to keep a failed lookup in milliseconds. */
+	private final long negativeTtl;
+
+	/** Map of each lowercase host name to its lookup, which may still be running. */
+	private final Map<String, CompletableFuture<Entry>> entries;
+
+	/** Runs prefetches. */
+	private final ExecutorService prefetcher;
+
+	/**
+	 * Initializes an empty cache.
+	 *
+	 * @param resolver looks up hosts that are not cached
+	 * @param ttl the time to keep a successful lookup in milliseconds
+	 * @param negativeTtl the time to keep a failed lookup in milliseconds
+	 */
+	public DnsCache(Resolver resolver, long ttl, long negativeTtl) {
+		this.resolver = resolver;
+		this.ttl = ttl;
+		this.negativeTtl = negativeTtl;
+		this.entries = new ConcurrentHashMap<String, CompletableFuture<Entry>>();
+		this.prefetcher = Executors.newFixedThreadPool(PREFETCH_THREADS, runnable -> {
+			Thread thread = new Thread(runnable, "DnsPrefetcher");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Gets the cache used by the fetchers.
+	 *
+	 * @return the shared cache
+	 */
+	public static DnsCache getShared() {
+		return shared;
+	}
+
+	/**
+	 * Replaces the cache used by the fetchers, for example to use a different
+	 * resolver or time to live.
+	 *
+	 * @param cache the new shared cache
+	 */
+	public static void setShared(DnsCache cache) {
+		shared = cache;
+	}
+
+	/**
+	 * Returns the first address of a host, looking it up if it is not cached or
+	 * has expired. Waits if the host is already being looked up.
+	 *
+	 * @param host the host name
+	 * @return the first address of the host
+	 * @throws UnknownHostException if the host name cannot be resolved, now or
+	 *   within the negative time to live
+	 */
+	public InetAddress resolve(String host) throws UnknownHostException {
+		Entry entry;
+
+		try {
+			entry = lookup(host, false).join();
+		}
+		catch (CompletionException e) {
+			throw new UnknownHostException(host);
+		}
+
+		if (entry.addresses == null) {
+			throw new UnknownHostException(host);
+		}
+
+		return entry.addresses[0];
+	}
+
+	/**
+	 * Starts looking up a host in the background if it is not cached.
+	 *
+	 * @param host the host name
+	 */
+	public void prefetch(String host) {
+		lookup(host, true);
+	}
+
+	/**
+	 * Returns the number of hosts cached, including failed and running lookups.
+	 *
+	 * @return the number of hosts cached
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Returns the cached lookup of a host, or starts a new one if there is none
+	 * or it has expired.
+	 *
+	 * @param host the host name
+	 * @param async whether to run a new lookup in the background
+	 * @return the lookup
+	 */
+	private CompletableFuture<Entry> lookup(String host, boolean async) {
+		String key = host.toLowerCase();
+		long now = System.currentTimeMillis();
+		CompletableFuture<Entry> cached = entries.get(key);
+
+		if (cached != null && !expired(cached, now)) {
+			return cached;
+		}
+
+		CompletableFuture<Entry> created = new CompletableFuture<>();
+		CompletableFuture<Entry> current = cached == null ? entries.putIfAbsent(key, created) : (entries.replace(key, cached, created) ? null : entries.get(key));
+
+		if (current != null) {
+			// another thread started a lookup first
+			return current;
+		}
+
+		if (entries.size() > CLEANUP_SIZE) {
+			entries.values().removeIf(entry -> expired(entry, now));
+		}
+
+		if (async) {
+			prefetcher.execute(() -> complete(key, created));
+		}
+		else {
+			complete(key, created);
+		}
+
+		return created;
+	}
+
+	/**
+	 * Runs a lookup and completes its future.
+	 *
+	 * @param host the lowercase host name
+	 * @param future the future to complete
+	 */
+	private void complete(String host, CompletableFuture<Entry> future) {
+		long now = System.currentTimeMillis();
+
+		try {
+			future.complete(new Entry(resolver.resolve(host), now + ttl));
+		}
+		catch (UnknownHostException | RuntimeException e) {
+			log.debug("Unable to resolve {}: {}", host, e.getMessage());
+			future.complete(new Entry(null, now + negativeTtl));
+		}
+	}
+
+	/**
+	 * Determines whether a finished lookup has expired. Running lookups never
+	 * expire.
+	 *
+	 * @param future the lookup
+	 * @param now the current time in milliseconds
+	 * @return {@code true} if the lookup has finished and expired
+	 */
+	private static boolean expired(CompletableFuture<Entry> future, long now) {
+		Entry entry = future.getNow(null);
+		return entry != null && entry.expires <= now;
+	}
+
+	/**
+	 * A finished lookup.
+	 */
+	private static class Entry {
+		/** The addresses, or {@code null} if the lookup failed. */
+		private final InetAddress[] addresses;
+
+		/** The time this lookup expires in milliseconds. */
+		private final long expires;
+
+		/**
+		 * Initializes a finished lookup.
+		 *
+		 * @param addresses the addresses, or {@code null} if the lookup failed
+		 * @param expires the time this lookup expires in milliseconds
+		 */
+		public Entry(InetAddress[] addresses, long expires) {
+			this.addresses = addresses == null || addresses.length == 0 ? null : addresses;
+			this.expires = expires;
+		}
+	}
+}
@@ -1,6 +1,7 @@
 package edu.usfca.cs272;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 
 /**
@@ -30,7 +31,13 @@ public class Driver {
 		
 		WorkQueue workQueue = null;
 		
-		if (parser.hasFlag("-threads") || parser.hasFlag("-html") || parser.hasFlag("-server")) {
+		IndexManifest manifest = null;
+		
+		Path indexPath = parser.getPath("-index", Path.of("index.json"));
+		
+		Path manifestPath = parser.getPath("-incremental", IncrementalIndexBuilder.manifestPath(indexPath));
+		
+		if (parser.hasFlag("-threads") || parser.hasFlag("-html") || parser.hasFlag("-server") || parser.hasFlag("-watch")) {
 			int num = parser.getInteger("-threads", 5);
 			
 			if (num < 1) {
@@ -50,7 +57,13 @@ public class Driver {
 			if (parser.hasValue("-text")) {
 				Path textPath = parser.getPath("-text");
 				try {
-					if (safeIndex != null && workQueue != null) {
+					if (parser.hasFlag("-incremental")) {
+						if (safeIndex != null && workQueue != null) {
+							manifest = IncrementalIndexBuilder.build(textPath, safeIndex, indexPath, manifestPath, workQueue);
+						} else {
+							manifest = IncrementalIndexBuilder.build(textPath, index, indexPath, manifestPath);
+						}
+					} else if (safeIndex != null && workQueue != null) {
 						ThreadSafeInvertedIndexBuilder.build(textPath, safeIndex, workQueue);
 					} else {
 						InvertedIndexBuilder.build(textPath, index);
@@ -63,6 +76,28 @@ public class Driver {
 			}
 		}
 		
+		DirectoryWatcher watcher = null;
+		
+		if (workQueue != null && parser.hasFlag("-watch") && parser.hasValue("-text")) {
+			Path textPath = parser.getPath("-text");
+			
+			try {
+				long debounce = parser.getInteger("-watch", (int) DirectoryWatcher.DEFAULT_DEBOUNCE);
+				watcher = new DirectoryWatcher(textPath, safeIndex, workQueue, Math.max(debounce, 1));
+				watcher.start();
+			} catch (IOException e) {
+				System.out.println("Unable to watch the path: " + textPath.toString());
+			}
+		}
+		
+		HttpsFetcher.setLimits(parser.getInteger("-timeout", HttpsFetcher.DEFAULT_CONNECT_TIMEOUT),
+				parser.getInteger("-readtimeout", HttpsFetcher.DEFAULT_READ_TIMEOUT),
+				parser.getInteger("-maxbody", (int) HttpsFetcher.DEFAULT_MAX_BODY));
+		
+		if (parser.hasFlag("-pages")) {
+			PageStore.setShared(new PageStore(parser.getInteger("-pages", PageStore.DEFAULT_MAX_PAGES), PageStore.DEFAULT_MAX_BYTES));
+		}
+		
 		if (workQueue != null && parser.hasFlag("-html")) {
 			String htmlPath = parser.getString("-html", "");
 			
@@ -73,17 +108,71 @@ public class Driver {
 			}
 			
 			try {
-				WebCrawler webCrawler = new WebCrawler(safeIndex, max, workQueue);
+				AsyncHtmlFetcher fetcher = null;
+				
+				if (parser.hasFlag("-async")) {
+					fetcher = new AsyncHtmlFetcher(parser.getInteger("-async", AsyncHtmlFetcher.DEFAULT_LIMIT));
+				}
+				
+				int concurrency = parser.getInteger("-concurrency", CrawlFrontier.DEFAULT_CONCURRENCY);
+				long delay = parser.getInteger("-delay", (int) CrawlFrontier.DEFAULT_DELAY);
+				
+				UrlSeenSet seen = new UrlSeenSet();
+				
+				if (parser.hasFlag("-bloom")) {
+					int expected = parser.getInteger("-bloom", Math.max(max, 1000));
+					seen = parser.hasFlag("-lossy") ? new UrlSeenSet(expected, UrlSeenSet.DEFAULT_FALSE_POSITIVES) : new UrlSeenSet(expected);
+				}
+				
+				Path checkpointPath = parser.getPath("-checkpoint", Path.of("checkpoint"));
+				Path resumePath = parser.getPath("-resume", checkpointPath);
+				
+				if (parser.hasFlag("-resume") && Files.exists(resumePath.resolve("seen.bin"))) {
+					seen = UrlSeenSet.read(resumePath.resolve("seen.bin"));
+				}
+				
+				WebCrawler webCrawler = new WebCrawler(safeIndex, max, workQueue, fetcher, concurrency, delay, seen);
+				NearDuplicateDetector detector = null;
+				
+				if (parser.hasFlag("-simhash")) {
+					detector = new NearDuplicateDetector(parser.getInteger("-simhash", NearDuplicateDetector.DEFAULT_THRESHOLD));
+					webCrawler.setDuplicateDetector(detector);
+				}
+				
+				if (parser.hasFlag("-resume") && Files.exists(resumePath.resolve("seen.bin"))) {
+					webCrawler.resume(resumePath);
+				}
+				
+				if (parser.hasFlag("-checkpoint")) {
+					webCrawler.startCheckpoints(checkpointPath, parser.getInteger("-interval", 60));
+				}
+				
 				webCrawler.build(htmlPath);
 				workQueue.finish();
+				
+				if (parser.hasFlag("-checkpoint")) {
+					webCrawler.stopCheckpoints();
+					webCrawler.checkpoint(checkpointPath);
+				}
+				
+				if (detector != null) {
+					System.out.println(detector);
+				}
 			} catch (IOException e) {
 				System.out.println("Unable to build the inverted index from URL: " + htmlPath.toString());
+			} catch (IllegalArgumentException e) {
+				System.out.println("Unable to crawl the URL: " + e.getMessage());
 			}
 		}
 		
 		if (workQueue != null && parser.hasFlag("-server")) {
 			int port = parser.getInteger("-server", 8080);
 			WebServer webServer = new WebServer(port, safeIndex, workQueue);
+			webServer.setThreads(parser.getInteger("-minthreads", WebServer.DEFAULT_MIN_THREADS),
+					parser.getInteger("-maxthreads", 0), parser.getInteger("-maxqueued", 0));
+			webServer.setConnector(parser.getInteger("-acceptqueue", 0), parser.getInteger("-idletimeout", WebServer.DEFAULT_IDLE_TIMEOUT));
+			webServer.setVirtualThreads(parser.hasFlag("-virtual"));
+			webServer.setCompression(parser.getInteger("-gzipmin", WebServer.DEFAULT_MIN_GZIP_SIZE));
 			try {
 				webServer.startServer();
 			} catch (Exception e) {
@@ -103,6 +192,19 @@ public class Driver {
 			}
 		}
 		
+		// watching runs until the process is stopped, unless a server was running and has stopped
+		if (watcher != null) {
+			if (parser.hasFlag("-server")) {
+				watcher.interrupt();
+			}
+			
+			try {
+				watcher.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		
 		if (workQueue != null) {
 			workQueue.join();
 		}
@@ -127,11 +229,13 @@ public class Driver {
 			}
 		}
 			
-		if (parser.hasFlag("-index")) {
-			Path indexPath = parser.getPath("-index", Path.of("index.json"));
-
+		if (parser.hasFlag("-index") || manifest != null) {
 			try {
 				index.toJson(indexPath);
+				
+				if (manifest != null) {
+					manifest.write(manifestPath);
+				}
 			} catch (IOException e) {
 				System.out.println("Unable to output the inverted index to path: " + indexPath.toString());
 			}
@@ -0,0 +1,194 @@
+package edu.usfca.cs272;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.http.HttpResponse;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The outcome of fetching a single page: the final link after redirects, the
+ * status code and headers of the last response, the decoded html, and how
+ * long the fetch took and how much it read. Each fetch returns its own result,
+ * so many fetches can run at once without sharing state.
+ *
+ * @see HtmlFetcher#get(URL, int, Map)
+ *
+ * @author Colin Bindi
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2022
+ */
+public class FetchResult {
+	/** The link of the last response, after any redirects. */
+	private final URL url;
+
+	/** The status code of the last response, or -1 if there was none. */
+	private final int status;
+
+	/** The headers of the last response, with the status line under the {@code null} key. */
+	private final Map<String, List<String>> headers;
+
+	/** The decoded html, or {@code null} if there is none. */
+	private final String html;
+
+	/** The number of body bytes read, or -1 if unknown. */
+	private final long bytes;
+
+	/** The time the fetch took in nanoseconds. */
+	private final long elapsed;
+
+	/**
+	 * Initializes a result.
+	 *
+	 * @param url the link of the last response, after any redirects
+	 * @param status the status code of the last response, or -1 if there was none
+	 * @param headers the headers of the last response
+	 * @param html the decoded html, or {@code null} if there is none
+	 * @param bytes the number of body bytes read, or -1 if unknown
+	 * @param elapsed the time the fetch took in nanoseconds
+	 */
+	public FetchResult(URL url, int status, Map<String, List<String>> headers, String html, long bytes, long elapsed) {
+		this.url = url;
+		this.status = status;
+		this.headers = Collections.unmodifiableMap(headers);
+		this.html = html;
+		this.bytes = bytes;
+		this.elapsed = elapsed;
+	}
+
+	/**
+	 * Creates the result of a fetch that failed before any response.
+	 *
+	 * @param url the link fetched
+	 * @param elapsed the time the fetch took in nanoseconds
+	 * @return the result
+	 */
+	public static FetchResult failed(URL url, long elapsed) {
+		return new FetchResult(url, -1, new HashMap<>(), null, 0, elapsed);
+	}
+
+	/**
+	 * Creates the result of a fetch made by {@link AsyncHtmlFetcher}. The number
+	 * of body bytes is not known, since the client decodes the body as it
+	 * arrives.
+	 *
+	 * @param url the link fetched
+	 * @param response the response, or {@code null} if the fetch failed
+	 * @param elapsed the time the fetch took in nanoseconds
+	 * @return the result
+	 */
+	public static FetchResult of(URL url, HttpResponse<String> response, long elapsed) {
+		if (response == null) {
+			return failed(url, elapsed);
+		}
+
+		Map<String, List<String>> headers = new HashMap<>();
+		response.headers().map().forEach((name, values) -> headers.put(HttpsFetcher.canonical(name), values));
+		headers.put(null, List.of("HTTP/1.1 " + response.statusCode()));
+
+		URL last = url;
+
+		try {
+			last = response.uri().toURL();
+		}
+		catch (MalformedURLException | IllegalArgumentException e) {
+			// keep the link fetched
+		}
+
+		return new FetchResult(last, response.statusCode(), headers, response.body(), -1, elapsed);
+	}
+
+	/**
+	 * Gets the link of the last response, after any redirects.
+	 *
+	 * @return the link
+	 */
+	public URL getUrl() {
+		return url;
+	}
+
+	/**
+	 * Gets the status code of the last response.
+	 *
+	 * @return the status code, or -1 if there was no response
+	 */
+	public int getStatus() {
+		return status;
+	}
+
+	/**
+	 * Gets the headers of the last response, with the status line under the
+	 * {@code null} key.
+	 *
+	 * @return the unmodifiable headers, which are empty if there was no response
+	 */
+	public Map<String, List<String>> getHeaders() {
+		return headers;
+	}
+
+	/**
+	 * Returns the first value of a response header.
+	 *
+	 * @param name the canonical header name
+	 * @return the first value or {@code null} if there is none
+	 */
+	public String getHeader(String name) {
+		List<String> values = headers.get(name);
+		return values == null || values.isEmpty() ? null : values.get(0);
+	}
+
+	/**
+	 * Gets the decoded html.
+	 *
+	 * @return the html, or {@code null} if the fetch failed, the resource is not
+	 *   html, or the body was too large
+	 */
+	public String getHtml() {
+		return html;
+	}
+
+	/**
+	 * Gets the "Content-Length" header.
+	 *
+	 * @return the content length, or an empty string if there is none
+	 */
+	public String getContentLength() {
+		String length = getHeader("Content-Length");
+		return length == null ? "" : length;
+	}
+
+	/**
+	 * Gets the number of body bytes read.
+	 *
+	 * @return the number of bytes, or -1 if unknown
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * Gets the time the fetch took, including redirects.
+	 *
+	 * @return the time in nanoseconds
+	 */
+	public long getElapsed() {
+		return elapsed;
+	}
+
+	/**
+	 * Returns {@code true} if the resource has not changed since the version
+	 * described by the conditional request headers.
+	 *
+	 * @return {@code true} if the status code is 304
+	 */
+	public boolean isNotModified() {
+		return status == 304;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s %d (%d bytes in %.1f ms)", url, status, bytes, elapsed / 1e6);
+	}
+}
@@ -1,23 +1,14 @@
 package edu.usfca.cs272;
 
-import static java.nio.charset.StandardCharsets.UTF_8;
-
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Set;
-import java.util.TreeMap;
-import java.util.TreeSet;
 
-import org.apache.commons.text.StringSubstitutor;
 
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServlet;
@@ -69,7 +60,6 @@ public class HistoryServlet extends HttpServlet {
 	 * If a URL was included as a parameter in the GET request, safely fetch and
 	 * display the HTTP headers of that URL.
 	 */
-	@SuppressWarnings("unchecked")
 	@Override
 	protected void doGet(HttpServletRequest request,
 			HttpServletResponse response) throws ServletException, IOException {
@@ -91,26 +81,20 @@ public class HistoryServlet extends HttpServlet {
 			
 		StringBuilder builder = new StringBuilder();
 		
-		ArrayList<String> inputList = (ArrayList<String>) session.getAttribute("input");
-		
-		if (inputList == null) {
-			inputList = new ArrayList<>();
-		}
+		SearchHistory history = SearchHistory.get(session);
 		
-		if (inputList != null) {
-			int i = 1;
-			for (String search : inputList) {
-				builder.append("<strong>"+i+".</strong> "+search+"<br>");
-				i++;
-			}
+		int i = 1;
+		for (String search : history.recent()) {
+			builder.append("<strong>"+i+".</strong> "+search+"<br>");
+			i++;
 		}
 		
 		if (request.getParameter("options") != null) {
-			out.print(Files.readString(OPTIONS, UTF_8));
+			HtmlTemplate.get(OPTIONS).render(out);
 		}
 		
 		if (request.getParameter("pop") != null) {
-			out.print(Files.readString(POPULAR, UTF_8));
+			HtmlTemplate.get(POPULAR).render(out);
 		}
 		
 		Map<String, String> values = new HashMap<>();
@@ -119,18 +103,17 @@ public class HistoryServlet extends HttpServlet {
 		
 		values.put("stats", "<br>Server Uptime: "+String.format("%02d:%02d:%02d", searchDuration.toHours(), searchDuration.toMinutesPart(), searchDuration.toSecondsPart())+
 				"&ensp;|&ensp;Words Stored: "+index.size()+
-				"&ensp;|&ensp;Queries Conducted: "+(inputList != null ? Integer.toString(inputList.size()) : "0")+
+				"&ensp;|&ensp;Queries Conducted: "+history.total()+
 				"&ensp;|&ensp;Last Visit: "+(lastVisit == null ? "" : lastVisit.format(DateTimeFormatter.ofPattern("EEEE, MMMM dd, yyyy 'at' HH:mm a"))));
 		
 		values.put("history", builder.toString());
 		
-		out.print(new StringSubstitutor(values).replace(Files.readString(HISTORY, UTF_8)));
+		HtmlTemplate.get(HISTORY).render(out, values);
 
 		response.setContentType("text/html;charset=UTF-8");
 		response.setStatus(HttpServletResponse.SC_OK);
 	}
 	
-	@SuppressWarnings("unchecked")
 	@Override
 	protected void doPost(HttpServletRequest request, 
 			HttpServletResponse response) throws ServletException, IOException {
@@ -152,76 +135,39 @@ public class HistoryServlet extends HttpServlet {
 		
 		Map<String, String> values = new HashMap<>();
 		
-		ArrayList<String> inputList = (ArrayList<String>) session.getAttribute("input");
-		
-		if (inputList == null) {
-			inputList = new ArrayList<>();
-		}
+		SearchHistory history = SearchHistory.get(session);
 		
 		Duration searchDuration = Duration.between(WebServer.serverUptime(), LocalDateTime.now());
 		
 		values.put("stats", "<br>Server Uptime: "+String.format("%02d:%02d:%02d", searchDuration.toHours(), searchDuration.toMinutesPart(), searchDuration.toSecondsPart())+
 				"&ensp;|&ensp;Words Stored: "+index.size()+
-				"&ensp;|&ensp;Queries Conducted: "+(inputList != null ? Integer.toString(inputList.size()) : "0")+
+				"&ensp;|&ensp;Queries Conducted: "+history.total()+
 				"&ensp;|&ensp;Last Visit: "+(lastVisit == null ? "" : lastVisit.format(DateTimeFormatter.ofPattern("EEEE, MMMM dd, yyyy 'at' HH:mm a"))));
 		
 		if (request.getParameter("options") != null) {
-			out.print(Files.readString(OPTIONS, UTF_8));
+			HtmlTemplate.get(OPTIONS).render(out);
 		}
 		
 		if (request.getParameter("clear") != null) {
 			values.put("history", "");
 			
-			out.print(new StringSubstitutor(values).replace(Files.readString(HISTORY, UTF_8)));
+			HtmlTemplate.get(HISTORY).render(out, values);
 			
-			session.setAttribute("input", new ArrayList<String>());
+			history.clear();
 		}
 		
 		if (request.getParameter("pop") != null) {
 			StringBuilder builder = new StringBuilder();
 			
-			Map<Integer, Set<String>> map = new TreeMap<>(Collections.reverseOrder());
-			
-			if (inputList != null) {
-				ArrayList<String> list = new ArrayList<String>();
-				list.addAll(inputList);
-				
-				if (list != null && !list.isEmpty()) {
-					for (String str : list) {
-						if (str.contains(" - ")) {
-							String[] split = str.split(" - ");
-							if (split[1] != null) {
-								Collections.replaceAll(list, str, split[1]);
-							} else {
-								Collections.replaceAll(list, str, "");
-							}
-						}
-					}
-				    for (String str : list) {
-				    	if (map.get(Collections.frequency(list, str)) == null) {
-				    		map.put(Collections.frequency(list, str), new TreeSet<>());
-				    	}
-				    	map.get(Collections.frequency(list, str)).add(str);
-				    }
-				    
-				    int i = 1;
-			    	for (var entry : map.entrySet()) {
-			    		if (i > 5) {
-			    			break;
-			    		}
-				    	for (String str : entry.getValue()) {
-				    		if (i > 5) {
-				    			break;
-				    		}
-				    		builder.append("<strong>"+i+".</strong> "+str+"<br>");
-				    		i++;
-				    	}
-			    	}
-				}
+			int i = 1;
+			for (String query : history.popular(5)) {
+				builder.append("<strong>"+i+".</strong> "+query+"<br>");
+				i++;
 			}
 			
 			values.put("pop", builder.toString());
-			out.print(new StringSubstitutor(values).replace(Files.readString(POPULAR, UTF_8)));
+			values.put("trending", PopularServlet.trending(5));
+			HtmlTemplate.get(POPULAR).render(out, values);
 		}
 		
 		out.flush();
@@ -0,0 +1,211 @@
+package edu.usfca.cs272;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.apache.commons.text.StringEscapeUtils;
+
+/**
+ * Microbenchmarks comparing the hand-written scanners in {@link HtmlCleaner}
+ * and {@link LinkParser} with the regular expressions they replaced, on both
+ * ordinary and adversarial HTML. Every scanner result is first checked against
+ * the regular expression result, then each is timed. The words found by
+ * {@link HtmlScanner} can differ on an unterminated quoted attribute, since the
+ * scanner does not end a tag at a closing bracket inside quotes. The scanner
+ * finds the words and links together, so it is compared with both regular
+ * expression passes.
+ *
+ * Run with an optional input size in characters, for example:
+ *
+ * <pre>
+ * java -cp target/classes:... edu.usfca.cs272.HtmlBenchmark 20000
+ * </pre>
+ *
+ * @author Colin Bindi
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2022
+ */
+public class HtmlBenchmark {
+	/** The regular expression previously used to remove tags. */
+	private static final Pattern TAG_REGEX = Pattern.compile("(?is)<[^><]*?>");
+
+	/** The regular expression previously used to remove comments. */
+	private static final Pattern COMMENT_REGEX = Pattern.compile("(?s)<!--.*?-->");
+
+	/** The regular expression previously used to remove unrecognized entities. */
+	private static final Pattern ENTITY_REGEX = Pattern.compile("&[^\\s^;]*;");
+
+	/** The regular expressions previously used to remove block elements. */
+	private static final List<Pattern> ELEMENT_REGEX = Stream.of("head", "style", "script", "noscript", "iframe", "svg")
+			.map(name -> Pattern.compile("(?is)<" + name + "(\\s+?[^>]*?>|>).*?<[^>]*?\\/" + name + "\\s*?>"))
+			.toList();
+
+	/** The regular expression previously used to find anchor links. */
+	private static final Pattern HREF_REGEX = Pattern.compile("(?i)<a[^>]*?(?=href)href\\s*=\\s*\"([^\"]*)\"[\\s\\S]*?>");
+
+	/** The base url used for links. */
+	private static final URL BASE;
+
+	static {
+		try {
+			BASE = new URL("https://www.example.com/docs/index.html");
+		}
+		catch (MalformedURLException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	/**
+	 * Finds links the way {@link LinkParser} previously did.
+	 *
+	 * @param html the raw html
+	 * @return the valid links found
+	 */
+	private static List<URL> regexLinks(String html) {
+		List<URL> links = new ArrayList<>();
+		Matcher matcher = HREF_REGEX.matcher(html);
+
+		while (matcher.find()) {
+			URL link = LinkParser.toValidLink(BASE, matcher.group(1));
+
+			if (link != null) {
+				links.add(link);
+			}
+		}
+
+		return links;
+	}
+
+	/**
+	 * Removes block elements, tags, and entities the way {@link HtmlCleaner}
+	 * previously did.
+	 *
+	 * @param html the raw html
+	 * @return the visible text
+	 */
+	private static String regexStrip(String html) {
+		html = COMMENT_REGEX.matcher(html).replaceAll("");
+
+		for (Pattern element : ELEMENT_REGEX) {
+			html = element.matcher(html).replaceAll("");
+		}
+
+		html = TAG_REGEX.matcher(html).replaceAll("");
+		return ENTITY_REGEX.matcher(StringEscapeUtils.unescapeHtml4(html)).replaceAll("");
+	}
+
+	/**
+	 * Builds the inputs to benchmark, keyed by a short description.
+	 *
+	 * @param size the approximate size of each input in characters
+	 * @return the inputs
+	 */
+	private static Map<String, String> inputs(int size) {
+		StringBuilder page = new StringBuilder("<html><head><title>Example</title><script>var x = 1;</script></head><body>");
+
+		while (page.length() < size) {
+			page.append("<p class=\"text\">Lorem ipsum &amp; dolor <b>sit</b> amet, <a href=\"/page/");
+			page.append(page.length());
+			page.append(".html#top\">consectetur</a> adipiscing elit.</p>\n<!-- note -->\n");
+		}
+
+		page.append("</body></html>");
+
+		Map<String, String> inputs = new LinkedHashMap<>();
+		inputs.put("ordinary page", page.toString());
+		inputs.put("unclosed anchor", "<a " + "x".repeat(size));
+		inputs.put("anchors without href", "<a ".repeat(size / 3) + ">");
+		inputs.put("unclosed href quote", "<a href=\"" + "x".repeat(size) + ">");
+		inputs.put("unclosed brackets", "<".repeat(size));
+		inputs.put("unclosed comments", "<!--".repeat(size / 4));
+		inputs.put("unclosed scripts", "<script>".repeat(size / 8));
+		inputs.put("ampersands", "&".repeat(size));
+		inputs.put("long entity", "&" + "x".repeat(size));
+		return inputs;
+	}
+
+	/**
+	 * Times a function on an input, repeating it until enough time passes. The
+	 * function is first run untimed for a while, so the time is not mostly spent
+	 * compiling it.
+	 *
+	 * @param function the function to time
+	 * @param input the input
+	 * @return the average time per call in microseconds
+	 */
+	private static double time(Function<String, ?> function, String input) {
+		long start = System.nanoTime();
+
+		while (System.nanoTime() - start < 500_000_000L) {
+			function.apply(input);
+		}
+
+		start = System.nanoTime();
+		long elapsed = 0;
+		int calls = 0;
+
+		while (calls < 3 || elapsed < 200_000_000L) {
+			function.apply(input);
+			calls++;
+			elapsed = System.nanoTime() - start;
+
+			if (elapsed > 5_000_000_000L) {
+				break;
+			}
+		}
+
+		return elapsed / 1000.0 / calls;
+	}
+
+	/**
+	 * Checks and times one pair of implementations on every input.
+	 *
+	 * @param name the name of the operation
+	 * @param regex the regular expression implementation
+	 * @param scanner the scanner implementation
+	 * @param inputs the inputs
+	 */
+	private static void compare(String name, Function<String, ?> regex, Function<String, ?> scanner, Map<String, String> inputs) {
+		System.out.println(name);
+
+		for (var entry : inputs.entrySet()) {
+			String input = entry.getValue();
+			boolean same = regex.apply(input).equals(scanner.apply(input));
+			double before = time(regex, input);
+			double after = time(scanner, input);
+
+			System.out.printf("  %-22s regex %12.1f us  scanner %10.1f us  %6.1fx%s%n",
+					entry.getKey(), before, after, before / after, same ? "" : "  MISMATCH");
+		}
+	}
+
+	/**
+	 * Runs the benchmarks.
+	 *
+	 * @param args an optional input size in characters
+	 */
+	public static void main(String[] args) {
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+		Map<String, String> inputs = inputs(size);
+
+		compare("stripTags", html -> TAG_REGEX.matcher(html).replaceAll(""), HtmlCleaner::stripTags, inputs);
+		compare("stripComments", html -> COMMENT_REGEX.matcher(html).replaceAll(""), HtmlCleaner::stripComments, inputs);
+		compare("stripElement(script)", html -> ELEMENT_REGEX.get(2).matcher(html).replaceAll(""), html -> HtmlCleaner.stripElement(html, "script"), inputs);
+		compare("stripEntities", html -> ENTITY_REGEX.matcher(StringEscapeUtils.unescapeHtml4(html)).replaceAll(""), HtmlCleaner::stripEntities, inputs);
+		compare("stripHtml", HtmlBenchmark::regexStrip, HtmlCleaner::stripHtml, inputs);
+		compare("getValidLinks", HtmlBenchmark::regexLinks, html -> LinkParser.getValidLinks(BASE, html), inputs);
+		compare("words and links", html -> List.of(List.of(TextParser.parse(regexStrip(html))), regexLinks(html)), html -> {
+			List<String> words = new ArrayList<>();
+			HtmlScanner scanner = HtmlScanner.scan(html, BASE, words::add);
+			return List.of(words, scanner.getLinks());
+		}, inputs);
+	}
+}
@@ -1,7 +1,5 @@
 package edu.usfca.cs272;
 
-import java.util.regex.Pattern;
-
 import org.apache.commons.text.StringEscapeUtils;
 
 /**
@@ -11,12 +9,11 @@ import org.apache.commons.text.StringEscapeUtils;
  * but does not check that the removed entity was valid.
  *
  * <p>
- * Look at the "See Also" section for useful classes and methods for
- * implementing this class.
+ * The tags, comments, elements, and entities are removed by hand-written
+ * scanners instead of regular expressions, so each method runs in linear time
+ * even on malformed HTML that would make a lazy pattern backtrack.
  *
- * @see String#replaceAll(String, String)
- * @see Pattern#DOTALL
- * @see Pattern#CASE_INSENSITIVE
+ * @see HtmlScanner
  * @see StringEscapeUtils#unescapeHtml4(String)
  *
  * @author CS 272 Software Development (University of San Francisco)
@@ -36,7 +33,6 @@ public class HtmlCleaner {
 	 * <em>(View this comment as HTML in the "Javadoc" view in Eclipse.)</em>
 	 *
 	 * @see StringEscapeUtils#unescapeHtml4(String)
-	 * @see String#replaceAll(String, String)
 	 *
 	 * @param html text including HTML entities to remove
 	 * @return text with all HTML entities converted or removed
@@ -47,13 +43,35 @@ public class HtmlCleaner {
 			return html;
 		}
 		
-		String regex = "&[^\\s^;]*;";
-		
 		html = StringEscapeUtils.unescapeHtml4(html);
 		
-		html = html.replaceAll(regex, "");
+		if (html.indexOf('&') < 0) {
+			return html;
+		}
+		
+		StringBuilder builder = new StringBuilder(html.length());
+		int start = 0;
+		int amp;
 		
-		return html;
+		while ((amp = html.indexOf('&', start)) >= 0) {
+			int end = amp + 1;
+			
+			while (end < html.length() && !isEntityEnd(html.charAt(end))) {
+				end++;
+			}
+			
+			if (end < html.length() && html.charAt(end) == ';') {
+				builder.append(html, start, amp);
+				start = end + 1;
+			} else {
+				// every ampersand before this point fails at the same character
+				builder.append(html, start, end);
+				start = end;
+			}
+		}
+		
+		builder.append(html, start, html.length());
+		return builder.toString();
 	}
 
 	/**
@@ -65,8 +83,6 @@ public class HtmlCleaner {
 	 *
 	 * @param html text including HTML tags to remove
 	 * @return text without any HTML tags
-	 *
-	 * @see String#replaceAll(String, String)
 	 */
 	public static String stripTags(String html) {
 		if (html == null) {
@@ -74,11 +90,33 @@ public class HtmlCleaner {
 			return html;
 		}
 		
-		String regex = "(?is)<[^><]*?>";
+		StringBuilder builder = new StringBuilder(html.length());
+		int start = 0;
+		int open;
 		
-		html = html.replaceAll(regex, "");
+		while ((open = html.indexOf('<', start)) >= 0) {
+			int end = open + 1;
+			
+			while (end < html.length() && html.charAt(end) != '<' && html.charAt(end) != '>') {
+				end++;
+			}
+			
+			if (end == html.length()) {
+				break;
+			}
+			
+			if (html.charAt(end) == '>') {
+				builder.append(html, start, open);
+				start = end + 1;
+			} else {
+				// the bracket is not a tag, so keep it and try again from the next one
+				builder.append(html, start, end);
+				start = end;
+			}
+		}
 		
-		return html;
+		builder.append(html, start, html.length());
+		return builder.toString();
 	}
 
 	/**
@@ -102,8 +140,6 @@ public class HtmlCleaner {
 	 *
 	 * @param html text including HTML comments to remove
 	 * @return text without any HTML comments
-	 *
-	 * @see String#replaceAll(String, String)
 	 */
 	public static String stripComments(String html) {
 		if (html == null) {
@@ -111,11 +147,23 @@ public class HtmlCleaner {
 			return html;
 		}
 		
-		String regex = "(?s)<!--.*?-->";
+		StringBuilder builder = new StringBuilder(html.length());
+		int start = 0;
+		int open;
 		
-		html = html.replaceAll(regex, "");
+		while ((open = html.indexOf("<!--", start)) >= 0) {
+			int close = html.indexOf("-->", open + 4);
+			
+			if (close < 0) {
+				break;
+			}
+			
+			builder.append(html, start, open);
+			start = close + 3;
+		}
 		
-		return html;
+		builder.append(html, start, html.length());
+		return builder.toString();
 	}
 
 	/**
@@ -135,10 +183,6 @@ public class HtmlCleaner {
 	 * @param html text including HTML elements to remove
 	 * @param name name of the HTML element (like "style" or "script")
 	 * @return text without that HTML element
-	 *
-	 * @see String#formatted(Object...)
-	 * @see String#format(String, Object...)
-	 * @see String#replaceAll(String, String)
 	 */
 	public static String stripElement(String html, String name) {
 		if (html == null) {
@@ -146,11 +190,111 @@ public class HtmlCleaner {
 			return html;
 		}
 		
-		String regex = "(?is)<"+name+"(\\s+?[^>]*?>|>).*?<[^>]*?\\/"+name+"\\s*?>";
+		StringBuilder builder = new StringBuilder(html.length());
+		int start = 0;
+		int open = findOpening(html, name, 0);
 		
-		html = html.replaceAll(regex, "");
+		while (open >= 0) {
+			int content = html.indexOf('>', open);
+			int end = content < 0 ? -1 : findClosing(html, name, content + 1);
+			
+			if (end < 0) {
+				// no later element can be closed either
+				break;
+			}
+			
+			builder.append(html, start, open);
+			start = end;
+			open = findOpening(html, name, end);
+		}
 		
-		return html;
+		builder.append(html, start, html.length());
+		return builder.toString();
+	}
+
+	/**
+	 * Finds the next opening tag of an element, which is a bracket followed by
+	 * the element name (case-insensitive) and then whitespace or a closing
+	 * bracket.
+	 *
+	 * @param html the HTML to search
+	 * @param name name of the HTML element
+	 * @param from the index to start searching from
+	 * @return the index of the opening bracket or -1 if not found
+	 */
+	private static int findOpening(String html, String name, int from) {
+		int open;
+		
+		while ((open = html.indexOf('<', from)) >= 0) {
+			int after = open + 1 + name.length();
+			
+			if (after < html.length() && html.regionMatches(true, open + 1, name, 0, name.length())
+					&& (html.charAt(after) == '>' || isSpace(html.charAt(after)))) {
+				return open;
+			}
+			
+			from = open + 1;
+		}
+		
+		return -1;
+	}
+
+	/**
+	 * Finds the end of the first closing tag of an element, which is a bracket
+	 * followed by anything except a closing bracket, a slash, the element name
+	 * (case-insensitive), optional whitespace, and a closing bracket.
+	 *
+	 * @param html the HTML to search
+	 * @param name name of the HTML element
+	 * @param from the index to start searching from
+	 * @return the index just after the closing tag or -1 if not found
+	 */
+	private static int findClosing(String html, String name, int from) {
+		boolean bracket = false;
+		
+		for (int i = from; i < html.length(); i++) {
+			char c = html.charAt(i);
+			
+			if (c == '<') {
+				bracket = true;
+			} else if (c == '>') {
+				bracket = false;
+			} else if (c == '/' && bracket && html.regionMatches(true, i + 1, name, 0, name.length())) {
+				int end = i + 1 + name.length();
+				
+				while (end < html.length() && isSpace(html.charAt(end))) {
+					end++;
+				}
+				
+				if (end < html.length() && html.charAt(end) == '>') {
+					return end + 1;
+				}
+			}
+		}
+		
+		return -1;
+	}
+
+	/**
+	 * Determines whether the character is an ASCII whitespace character, which
+	 * matches {@code \\s} in a regular expression.
+	 *
+	 * @param c the character to check
+	 * @return {@code true} if the character is whitespace
+	 */
+	static boolean isSpace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+	}
+
+	/**
+	 * Determines whether the character ends a possible entity, which is the case
+	 * for a semicolon, caret, or whitespace.
+	 *
+	 * @param c the character to check
+	 * @return {@code true} if the character ends a possible entity
+	 */
+	private static boolean isEntityEnd(char c) {
+		return c == ';' || c == '^' || isSpace(c);
 	}
 
 	/**
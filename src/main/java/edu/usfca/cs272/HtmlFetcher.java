@@ -1,12 +1,11 @@
 package edu.usfca.cs272;
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
 import java.net.MalformedURLException;
-import java.net.Socket;
 import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
 import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
 import java.util.List;
 import java.util.Map;
 
@@ -20,11 +19,6 @@ import java.util.Map;
  * @version Spring 2022
  */
 public class HtmlFetcher {
-	/**
-	 * The content length
-	 */
-	private static String contentLength;
-	
 	/**
 	 * Returns {@code true} if and only if there is a "Content-Type" header and
 	 * the first value of that header starts with the value "text/html"
@@ -40,6 +34,31 @@ public class HtmlFetcher {
 		return false;
 	}
 
+	/**
+	 * Returns the character set named by the "charset" parameter of the
+	 * "Content-Type" header, or UTF-8 if there is none or it is not supported.
+	 *
+	 * @param headers the HTTP/1.1 headers to parse
+	 * @return the character set of the body
+	 */
+	public static Charset getCharset(Map<String, List<String>> headers) {
+		if (headers.containsKey("Content-Type")) {
+			for (String parameter : headers.get("Content-Type").get(0).split(";")) {
+				String[] split = parameter.split("=", 2);
+
+				if (split.length == 2 && split[0].strip().equalsIgnoreCase("charset")) {
+					try {
+						return Charset.forName(split[1].strip().replace("\"", ""));
+					}
+					catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+						break;
+					}
+				}
+			}
+		}
+		return StandardCharsets.UTF_8;
+	}
+
 	/**
 	 * Parses the HTTP status code from the provided HTTP headers, assuming the
 	 * status line is stored under the {@code null} key.
@@ -69,71 +88,80 @@ public class HtmlFetcher {
 	}
 	
 	/**
-	 * Gets the content length
-	 * 
-	 * @return the content length
-	 */
-	public static String getContentLength() {
-		return contentLength;
-	}
-
-	/**
-	 * Fetches the resource at the URL using HTTP/1.1 and sockets. If the status
-	 * code is 200 and the content type is HTML, returns the HTML as a single
-	 * string. If the status code is a valid redirect, will follow that redirect
-	 * if the number of redirects is greater than 0. Otherwise, returns
-	 * {@code null}.
+	 * Fetches the resource at the URL using HTTP/1.1 and pooled keep-alive
+	 * sockets. If the status code is 200 and the content type is HTML, returns
+	 * the HTML as a single string decoded with the character set of the
+	 * response. Bodies larger than {@link HttpsFetcher#getMaxBody()} are skipped.
+	 * If the status code is a valid redirect, will follow that redirect if the
+	 * number of redirects is greater than 0. Otherwise, returns {@code null}.
 	 *
 	 * @param url the url to fetch
 	 * @param redirects the number of times to follow redirects
 	 * @return the html or {@code null} if unable to fetch the resource or the
 	 *         resource is not html
 	 *
-	 * @see HttpsFetcher#openConnection(URL)
-	 * @see HttpsFetcher#printGetRequest(PrintWriter, URL)
-	 * @see HttpsFetcher#getHeaderFields(BufferedReader)
-	 *
-	 * @see String#join(CharSequence, CharSequence...)
+	 * @see #get(URL, int, Map)
 	 *
 	 * @see #isHtml(Map)
 	 * @see #isRedirect(Map)
 	 */
 	public static String fetch(URL url, int redirects) {
-		String html = null;
-		
-		try (
-				Socket socket = HttpsFetcher.openConnection(url);
-				PrintWriter request = new PrintWriter(socket.getOutputStream());
-				InputStreamReader input = new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8);
-				BufferedReader response = new BufferedReader(input);
-		) {
-			HttpsFetcher.printGetRequest(request, url);
-			
-			Map<String, List<String>> headers = HttpsFetcher.getHeaderFields(response);
-			
-			if (headers.containsKey("Content-Length")) {
-				contentLength = headers.get("Content-Length").get(0);
-			} else {
-				contentLength = "";
-			}
-			
-			if (isHtml(headers) && getStatusCode(headers) == 200) {
-				html = "";
+		return get(url, redirects, Map.of()).getHtml();
+	}
+	
+	/**
+	 * Returns {@code true} if the HTTP status code is 304, meaning the resource
+	 * has not changed since the version described by the conditional request
+	 * headers.
+	 *
+	 * @param headers the HTTP/1.1 headers to parse
+	 * @return {@code true} if the headers indicate the resource is unchanged
+	 */
+	public static boolean isNotModified(Map<String, List<String>> headers) {
+		return getStatusCode(headers) == 304;
+	}
 
-				List<String> content = response.lines().toList();
+	/**
+	 * Fetches the resource at the URL like {@link #fetch(URL, int)}, sending
+	 * conditional request headers such as "If-None-Match" and
+	 * "If-Modified-Since" with the first request, and returns everything known
+	 * about the fetch: the final link, the status code and headers of the last
+	 * response, the html, and the time and bytes it took. A failed fetch has
+	 * status code -1.
+	 *
+	 * @param url the url to fetch
+	 * @param redirects the number of times to follow redirects
+	 * @param conditions the conditional request headers to send
+	 * @return the result of the fetch
+	 *
+	 * @see HttpsFetcher#get(URL, Map, java.util.function.Predicate)
+	 */
+	public static FetchResult get(URL url, int redirects, Map<String, String> conditions) {
+		long start = System.nanoTime();
+		long bytes = 0;
+		
+		try {
+			while (true) {
+				HttpsFetcher.Response response = HttpsFetcher.get(url, conditions, headers -> isHtml(headers) && getStatusCode(headers) == 200);
+				Map<String, List<String>> headers = response.getHeaders();
+				byte[] body = response.getBody();
+				bytes += body == null ? 0 : body.length;
 				
-			    html = String.join("\n", content);
-			}
-			
-			if (isRedirect(headers) && redirects > 0) {
-				html = fetch(headers.get("Location").get(0), --redirects);
+				if (isRedirect(headers) && redirects > 0 && headers.containsKey("Location")) {
+					url = new URL(url, headers.get("Location").get(0));
+					conditions = Map.of();
+					redirects--;
+					continue;
+				}
+				
+				String html = body == null ? null : new String(body, getCharset(headers));
+				return new FetchResult(url, getStatusCode(headers), headers, html, bytes, System.nanoTime() - start);
 			}
 		}
-		catch (IOException e) {
+		catch (IOException | RuntimeException e) {
 			System.out.println("IOException");
-			html = null;
+			return FetchResult.failed(url, System.nanoTime() - start);
 		}
-		return html;
 	}
 
 	/**
@@ -0,0 +1,759 @@
+package edu.usfca.cs272;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import org.apache.commons.text.StringEscapeUtils;
+
+/**
+ * Scans HTML in a single pass over a character stream, extracting the title,
+ * snippet, links, and visible words at the same time. This replaces running
+ * {@link HtmlCleaner}, {@link LinkParser}, and the snippet and title patterns
+ * one after another over the whole page.
+ *
+ * Comments are skipped, and the text inside the head, style, script,
+ * noscript, iframe, and svg elements is not visible. As in HTML parsers, the
+ * head also ends at any tag that cannot appear in it or at any text outside
+ * its title, since pages may leave out the closing head tag. Entities in the visible
+ * text are decoded, and unrecognized entities are removed. The visible text is
+ * parsed and passed on in whitespace-bounded chunks, so words are never split
+ * and the whole page is never copied. Chunks of plain ASCII text are split into
+ * words directly, without the normalization and regular expressions of
+ * {@link TextParser}, which give the same words for such text.
+ *
+ * Warning: This class is not thread-safe. Each page should be scanned by its
+ * own scanner.
+ *
+ * @see HtmlCleaner
+ * @see LinkParser
+ * @see TextParser
+ *
+ * @author Colin Bindi
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2022
+ */
+public class HtmlScanner {
+	/** Elements that may appear inside the head element. */
+	private static final Set<String> HEAD_ELEMENTS = Set.of("head", "title", "base", "basefont", "bgsound", "link", "meta", "style", "script", "noscript", "template");
+
+	/** Elements whose content is skipped without looking for tags. */
+	private static final Set<String> RAW_ELEMENTS = Set.of("style", "script", "noscript", "iframe", "svg");
+
+	/** The number of characters of visible text collected before it is parsed. */
+	private static final int CHUNK_SIZE = 4096;
+
+	/** The shortest paragraph text used in the snippet. */
+	private static final int MIN_SNIPPET = 50;
+
+	/** The longest paragraph text used in the snippet. */
+	private static final int MAX_SNIPPET = 800;
+
+	/** The longest snippet kept. */
+	private static final int SNIPPET_LENGTH = 400;
+
+	/** The longest entity recognized, including the ampersand. */
+	private static final int MAX_ENTITY = 32;
+
+	/** The reader to scan. */
+	private final Reader reader;
+
+	/** The base url used to convert relative links to absolute. */
+	private final URL base;
+
+	/** Receives every cleaned word of visible text in order. */
+	private final Consumer<String> words;
+
+	/** The read buffer. */
+	private final char[] buffer;
+
+	/** The next position to read in the buffer. */
+	private int position;
+
+	/** The number of characters in the buffer. */
+	private int limit;
+
+	/** A character pushed back to be read again, or -2 if none. */
+	private int pushed;
+
+	/** Whether the characters read are being recorded, which they are in a tag. */
+	private boolean recording;
+
+	/** The characters read since the start of the current tag. */
+	private final StringBuilder recorded;
+
+	/** The visible text not yet parsed. */
+	private final StringBuilder text;
+
+	/** Whether the visible text not yet parsed is all ASCII. */
+	private boolean ascii;
+
+	/** The word being built from plain ASCII text. */
+	private final StringBuilder word;
+
+	/** The title text. */
+	private final StringBuilder title;
+
+	/** The snippet text. */
+	private final StringBuilder snippet;
+
+	/** The raw text of the current paragraph, or {@code null} if not in one. */
+	private StringBuilder paragraph;
+
+	/** The valid links in the order they were found. */
+	private final List<URL> links;
+
+	/** Whether inside the head element. */
+	private boolean head;
+
+	/** Whether inside the first title element. */
+	private boolean inTitle;
+
+	/** Whether the title has been read. */
+	private boolean titled;
+
+	/**
+	 * Initializes a scanner.
+	 *
+	 * @param reader the reader to scan
+	 * @param base the base url used to convert relative links to absolute
+	 * @param words receives every cleaned word of visible text in order
+	 */
+	private HtmlScanner(Reader reader, URL base, Consumer<String> words) {
+		this.reader = reader;
+		this.base = base;
+		this.words = words;
+		this.buffer = new char[8192];
+		this.position = 0;
+		this.limit = 0;
+		this.pushed = -2;
+		this.recorded = new StringBuilder();
+		this.text = new StringBuilder();
+		this.ascii = true;
+		this.word = new StringBuilder();
+		this.title = new StringBuilder();
+		this.snippet = new StringBuilder();
+		this.paragraph = null;
+		this.links = new ArrayList<URL>();
+	}
+
+	/**
+	 * Scans the HTML from the reader, passing each visible word to the consumer
+	 * as it is found.
+	 *
+	 * @param reader the reader to scan
+	 * @param base the base url used to convert relative links to absolute
+	 * @param words receives every cleaned word of visible text in order
+	 * @return the scanner holding the title, snippet, and links found
+	 * @throws IOException if an I/O error occurs
+	 */
+	public static HtmlScanner scan(Reader reader, URL base, Consumer<String> words) throws IOException {
+		HtmlScanner scanner = new HtmlScanner(reader, base, words);
+		scanner.scan();
+		return scanner;
+	}
+
+	/**
+	 * Scans the HTML text, passing each visible word to the consumer as it is
+	 * found.
+	 *
+	 * @param html the HTML to scan
+	 * @param base the base url used to convert relative links to absolute
+	 * @param words receives every cleaned word of visible text in order
+	 * @return the scanner holding the title, snippet, and links found
+	 */
+	public static HtmlScanner scan(String html, URL base, Consumer<String> words) {
+		try {
+			return scan(new StringReader(html == null ? "" : html), base, words);
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Gets the title, with line breaks removed and surrounding whitespace
+	 * trimmed.
+	 *
+	 * @return the title or an empty string if there is none
+	 */
+	public String getTitle() {
+		return title.toString().replace("\n", "").trim();
+	}
+
+	/**
+	 * Gets the snippet, made of the text of the paragraphs between 50 and 800
+	 * characters long and limited to 400 characters.
+	 *
+	 * @return the snippet or an empty string if there is none
+	 */
+	public String getSnippet() {
+		return snippet.toString();
+	}
+
+	/**
+	 * Gets the valid HTTP(S) links found in the href attribute of the anchor
+	 * tags, converted to absolute and normalized.
+	 *
+	 * @return the links in the order they were found
+	 *
+	 * @see LinkParser#toValidLink(URL, String)
+	 */
+	public List<URL> getLinks() {
+		return links;
+	}
+
+	/**
+	 * Scans until the end of the input.
+	 *
+	 * @throws IOException if an I/O error occurs
+	 */
+	private void scan() throws IOException {
+		int c;
+
+		while ((c = read()) >= 0) {
+			if (c == '<') {
+				tag();
+			}
+			else if (c == '&') {
+				entity();
+			}
+			else {
+				character((char) c);
+			}
+		}
+
+		flush();
+	}
+
+	/**
+	 * Handles a character of text outside of any tag.
+	 *
+	 * @param c the character
+	 */
+	private void character(char c) {
+		raw(c);
+
+		if (head && !inTitle && !isSpace(c)) {
+			head = false;
+		}
+
+		if (!head) {
+			text.append(c);
+			ascii &= c < 128;
+
+			if (text.length() >= CHUNK_SIZE && Character.isWhitespace(c)) {
+				flush();
+			}
+		}
+	}
+
+	/**
+	 * Adds raw text to the title and paragraph, which keep entities undecoded.
+	 *
+	 * @param c the character
+	 */
+	private void raw(char c) {
+		if (inTitle) {
+			title.append(c);
+		}
+
+		if (paragraph != null) {
+			if (paragraph.length() < MAX_SNIPPET) {
+				paragraph.append(c);
+			}
+			else {
+				paragraph = null;
+			}
+		}
+	}
+
+	/**
+	 * Parses the collected visible text and passes on its words.
+	 */
+	private void flush() {
+		if (text.isEmpty()) {
+			return;
+		}
+
+		if (!ascii) {
+			for (String parsed : TextParser.parse(text.toString())) {
+				words.accept(parsed);
+			}
+		}
+		else {
+			for (int i = 0; i < text.length(); i++) {
+				char c = text.charAt(i);
+
+				if (isLetter(c)) {
+					word.append(c);
+				}
+				else if (isSpace(c)) {
+					flushWord();
+				}
+			}
+
+			flushWord();
+		}
+
+		text.setLength(0);
+		ascii = true;
+	}
+
+	/**
+	 * Passes on the word built from plain ASCII text, if any, converted to
+	 * lowercase like {@link TextParser#clean(String)}.
+	 */
+	private void flushWord() {
+		if (!word.isEmpty()) {
+			words.accept(word.toString().toLowerCase());
+			word.setLength(0);
+		}
+	}
+
+	/**
+	 * Handles an entity after its ampersand has been read. Recognized entities
+	 * are decoded and unrecognized ones removed. An ampersand that does not
+	 * start an entity is kept as text.
+	 *
+	 * @throws IOException if an I/O error occurs
+	 */
+	private void entity() throws IOException {
+		StringBuilder entity = new StringBuilder("&");
+		int c;
+
+		while ((c = read()) >= 0 && c != ';' && !Character.isWhitespace(c) && c != '<' && c != '&' && entity.length() < MAX_ENTITY) {
+			entity.append((char) c);
+		}
+
+		if (c != ';' || entity.length() == 1) {
+			unread(c);
+
+			for (int i = 0; i < entity.length(); i++) {
+				character(entity.charAt(i));
+			}
+			return;
+		}
+
+		entity.append(';');
+
+		for (int i = 0; i < entity.length(); i++) {
+			raw(entity.charAt(i));
+		}
+
+		String decoded = StringEscapeUtils.unescapeHtml4(entity.toString());
+
+		if (!head && !decoded.equals(entity.toString())) {
+			text.append(decoded);
+
+			for (int i = 0; i < decoded.length(); i++) {
+				ascii &= decoded.charAt(i) < 128;
+			}
+		}
+	}
+
+	/**
+	 * Handles a tag, comment, or declaration after its opening bracket has been
+	 * read. A bracket that does not start a tag is kept as text.
+	 *
+	 * @throws IOException if an I/O error occurs
+	 */
+	private void tag() throws IOException {
+		recorded.setLength(0);
+		recording = true;
+		int c = read();
+
+		if (c == '!') {
+			if ((c = read()) == '-' && (c = read()) == '-') {
+				recording = false;
+				skipComment();
+			}
+			else {
+				unread(c);
+				skipTag();
+			}
+		}
+		else if (c == '?') {
+			skipTag();
+		}
+		else if (c == '/') {
+			String name = readName(read());
+
+			if (skipTag()) {
+				closeTag(name);
+			}
+		}
+		else if (isLetter(c)) {
+			openTag(readName(c));
+		}
+		else {
+			unread(c);
+			recording = false;
+			character('<');
+		}
+	}
+
+	/**
+	 * Skips the rest of a tag up to and including its closing bracket.
+	 *
+	 * @return {@code true} if the tag was closed, or {@code false} if it was not
+	 *         a tag after all
+	 * @throws IOException if an I/O error occurs
+	 *
+	 * @see #abortTag(int)
+	 */
+	private boolean skipTag() throws IOException {
+		int c;
+
+		while ((c = read()) != '>') {
+			if (c < 0 || c == '<') {
+				abortTag(c);
+				return false;
+			}
+		}
+
+		recording = false;
+		return true;
+	}
+
+	/**
+	 * Handles a tag that reached another opening bracket or the end of input
+	 * before its closing bracket. Like {@link HtmlCleaner#stripTags(String)},
+	 * the opening bracket and everything after it are kept as text.
+	 *
+	 * @param c the opening bracket or -1 at the end of input
+	 */
+	private void abortTag(int c) {
+		unread(c);
+		String skipped = recorded.toString();
+		recording = false;
+
+		character('<');
+
+		for (int i = 0; i < skipped.length(); i++) {
+			character(skipped.charAt(i));
+		}
+	}
+
+	/**
+	 * Handles an opening tag after its name has been read, including its
+	 * attributes.
+	 *
+	 * @param name the lowercase tag name
+	 * @throws IOException if an I/O error occurs
+	 */
+	private void openTag(String name) throws IOException {
+		if (head && !HEAD_ELEMENTS.contains(name)) {
+			head = false;
+		}
+
+		boolean anchor = name.equals("a") && !head;
+		boolean closed = false;
+		String href = null;
+		int c;
+
+		while ((c = read()) != '>') {
+			if (c < 0 || c == '<') {
+				abortTag(c);
+				return;
+			}
+
+			if (c == '/') {
+				closed = true;
+				continue;
+			}
+
+			closed = false;
+
+			if (Character.isWhitespace(c)) {
+				continue;
+			}
+
+			StringBuilder attribute = anchor ? new StringBuilder() : null;
+
+			while (c >= 0 && c != '=' && c != '>' && c != '<' && c != '/' && !Character.isWhitespace(c)) {
+				if (attribute != null) {
+					attribute.append((char) c);
+				}
+				c = read();
+			}
+
+			while (c >= 0 && Character.isWhitespace(c)) {
+				c = read();
+			}
+
+			if (c != '=') {
+				unread(c);
+				continue;
+			}
+
+			String value = readValue(anchor);
+
+			if (anchor && href == null && attribute.toString().equalsIgnoreCase("href")) {
+				href = value;
+			}
+		}
+
+		recording = false;
+
+		if (href != null) {
+			URL link = LinkParser.toValidLink(base, href.indexOf('&') < 0 ? href : StringEscapeUtils.unescapeHtml4(href));
+
+			if (link != null) {
+				links.add(link);
+			}
+		}
+
+		endParagraph(name.charAt(0) == 'p');
+
+		if (name.charAt(0) == 'p') {
+			paragraph = new StringBuilder();
+		}
+
+		if (closed) {
+			return;
+		}
+
+		if (RAW_ELEMENTS.contains(name)) {
+			skipElement(name);
+		}
+		else if (name.equals("head")) {
+			head = true;
+		}
+		else if (name.equals("title") && !titled) {
+			inTitle = true;
+		}
+	}
+
+	/**
+	 * Handles a closing tag after it has been read.
+	 *
+	 * @param name the lowercase tag name
+	 */
+	private void closeTag(String name) {
+		endParagraph(!name.isEmpty() && name.charAt(0) == 'p');
+
+		if (name.equals("head")) {
+			head = false;
+		}
+		else if (name.equals("title") && inTitle) {
+			inTitle = false;
+			titled = true;
+		}
+	}
+
+	/**
+	 * Ends the current paragraph text at a tag, adding it to the snippet if the
+	 * tag ends the paragraph and the text is long enough.
+	 *
+	 * @param closing whether the tag ends the paragraph
+	 */
+	private void endParagraph(boolean closing) {
+		if (closing && paragraph != null && paragraph.length() >= MIN_SNIPPET && snippet.length() < SNIPPET_LENGTH) {
+			snippet.append(paragraph, 0, Math.min(paragraph.length(), SNIPPET_LENGTH - snippet.length()));
+		}
+		paragraph = null;
+	}
+
+	/**
+	 * Reads an attribute value after the equals sign, which may be quoted with
+	 * double or single quotes or unquoted.
+	 *
+	 * @param keep whether to return the value or only skip it
+	 * @return the value, or {@code null} if not kept
+	 * @throws IOException if an I/O error occurs
+	 */
+	private String readValue(boolean keep) throws IOException {
+		int c = read();
+
+		while (c >= 0 && Character.isWhitespace(c)) {
+			c = read();
+		}
+
+		StringBuilder value = keep ? new StringBuilder() : null;
+
+		if (c == '"' || c == '\'') {
+			int quote = c;
+
+			while ((c = read()) >= 0 && c != quote) {
+				if (keep) {
+					value.append((char) c);
+				}
+			}
+		}
+		else {
+			while (c >= 0 && c != '>' && c != '<' && !Character.isWhitespace(c)) {
+				if (keep) {
+					value.append((char) c);
+				}
+				c = read();
+			}
+			unread(c);
+		}
+
+		return keep ? value.toString() : null;
+	}
+
+	/**
+	 * Reads a tag name starting with the character provided.
+	 *
+	 * @param c the first character
+	 * @return the lowercase tag name, which may be empty
+	 * @throws IOException if an I/O error occurs
+	 */
+	private String readName(int c) throws IOException {
+		StringBuilder name = new StringBuilder();
+
+		while (isLetter(c) || (c >= '0' && c <= '9') || c == '-' || c == ':') {
+			name.append(Character.toLowerCase((char) c));
+			c = read();
+		}
+
+		unread(c);
+		return name.toString();
+	}
+
+	/**
+	 * Skips the content of an element up to and including its closing tag,
+	 * without looking for any other tags.
+	 *
+	 * @param name the lowercase element name
+	 * @throws IOException if an I/O error occurs
+	 */
+	private void skipElement(String name) throws IOException {
+		int c = read();
+
+		while (c >= 0) {
+			if (c != '<') {
+				c = read();
+				continue;
+			}
+
+			if ((c = read()) != '/') {
+				continue;
+			}
+
+			int i = 0;
+
+			while (i < name.length() && (c = read()) >= 0 && Character.toLowerCase(c) == name.charAt(i)) {
+				i++;
+			}
+
+			if (i == name.length()) {
+				c = read();
+
+				if (c == '>' || Character.isWhitespace(c)) {
+					unread(c);
+					skipTo('>');
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Skips a comment after its opening "&lt;!--" has been read.
+	 *
+	 * @throws IOException if an I/O error occurs
+	 */
+	private void skipComment() throws IOException {
+		int dashes = 0;
+		int c;
+
+		while ((c = read()) >= 0) {
+			if (c == '>' && dashes >= 2) {
+				return;
+			}
+			dashes = c == '-' ? dashes + 1 : 0;
+		}
+	}
+
+	/**
+	 * Skips up to and including the character provided.
+	 *
+	 * @param end the character to skip to
+	 * @throws IOException if an I/O error occurs
+	 */
+	private void skipTo(char end) throws IOException {
+		int c;
+
+		while ((c = read()) >= 0 && c != end) {
+			continue;
+		}
+	}
+
+	/**
+	 * Determines whether the character is an ASCII letter.
+	 *
+	 * @param c the character
+	 * @return {@code true} if the character is an ASCII letter
+	 */
+	private static boolean isLetter(int c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+	}
+
+	/**
+	 * Determines whether the ASCII character is whitespace as matched by
+	 * {@link TextParser#SPLIT_REGEX}, which unlike
+	 * {@link Character#isWhitespace(char)} leaves out the separator controls.
+	 *
+	 * @param c the character
+	 * @return {@code true} if the character is ASCII whitespace
+	 */
+	private static boolean isSpace(int c) {
+		return c == ' ' || (c >= '\t' && c <= '\r');
+	}
+
+	/**
+	 * Pushes a character back so it is read again.
+	 *
+	 * @param c the character, or -1 at the end of input
+	 */
+	private void unread(int c) {
+		pushed = c;
+
+		if (recording && c >= 0) {
+			recorded.setLength(recorded.length() - 1);
+		}
+	}
+
+	/**
+	 * Reads the next character.
+	 *
+	 * @return the next character or -1 at the end of input
+	 * @throws IOException if an I/O error occurs
+	 */
+	private int read() throws IOException {
+		int c;
+
+		if (pushed != -2) {
+			c = pushed;
+			pushed = -2;
+		}
+		else {
+			if (position == limit) {
+				limit = reader.read(buffer, 0, buffer.length);
+				position = 0;
+
+				if (limit <= 0) {
+					limit = 0;
+					return -1;
+				}
+			}
+
+			c = buffer[position++];
+		}
+
+		if (recording && c >= 0) {
+			recorded.append((char) c);
+		}
+
+		return c;
+	}
+}
@@ -0,0 +1,185 @@
+package edu.usfca.cs272;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * An HTML template with {@code ${name}} variables, compiled once into a list
+ * of literal text and variable segments so it can be rendered straight into a
+ * writer without reading or parsing the file again. Variables without a value
+ * are written unchanged, and values are written as they are without being
+ * searched for further variables.
+ *
+ * Templates are cached by path. A cached template is reloaded if its file has
+ * been modified, checking the modification time at most once per
+ * {@link #CHECK_INTERVAL}.
+ *
+ * @author Colin Bindi
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2022
+ */
+public class HtmlTemplate {
+	/** Logger used for this class. */
+	private static final Logger log = LogManager.getLogger();
+
+	/** How often a cached template checks whether its file changed in milliseconds. */
+	public static final long CHECK_INTERVAL = 1000;
+
+	/** Map of each template path to its compiled template. */
+	private static final Map<Path, HtmlTemplate> cache = new ConcurrentHashMap<>();
+
+	/** The template file. */
+	private final Path path;
+
+	/** The modification time of the file when it was compiled. */
+	private final FileTime modified;
+
+	/** The literal text before, between, and after the variables. */
+	private final String[] literals;
+
+	/** The variable names, one fewer than the literals. */
+	private final String[] names;
+
+	/** The next time to check whether the file changed in milliseconds. */
+	private volatile long nextCheck;
+
+	/**
+	 * Reads and compiles a template.
+	 *
+	 * @param path the template file
+	 * @throws IOException if unable to read the file
+	 */
+	private HtmlTemplate(Path path) throws IOException {
+		this.path = path;
+		this.modified = Files.getLastModifiedTime(path);
+
+		String text = Files.readString(path, UTF_8);
+		List<String> literals = new ArrayList<>();
+		List<String> names = new ArrayList<>();
+		int start = 0;
+		int open;
+
+		while ((open = text.indexOf("${", start)) >= 0) {
+			int close = text.indexOf('}', open + 2);
+
+			if (close < 0) {
+				break;
+			}
+
+			literals.add(text.substring(start, open));
+			names.add(text.substring(open + 2, close));
+			start = close + 1;
+		}
+
+		literals.add(text.substring(start));
+
+		this.literals = literals.toArray(String[]::new);
+		this.names = names.toArray(String[]::new);
+		this.nextCheck = System.currentTimeMillis() + CHECK_INTERVAL;
+	}
+
+	/**
+	 * Returns the compiled template for a file, compiling it if it is not cached
+	 * or its file has changed.
+	 *
+	 * @param path the template file
+	 * @return the compiled template
+	 * @throws IOException if unable to read the file
+	 */
+	public static HtmlTemplate get(Path path) throws IOException {
+		HtmlTemplate template = cache.get(path);
+
+		if (template == null || template.changed()) {
+			template = new HtmlTemplate(path);
+			cache.put(path, template);
+			log.debug("Compiled {} with {} variables.", path, template.names.length);
+		}
+
+		return template;
+	}
+
+	/**
+	 * Compiles every HTML template in a directory ahead of the first request.
+	 *
+	 * @param directory the directory of templates
+	 * @throws IOException if unable to read a template
+	 */
+	public static void preload(Path directory) throws IOException {
+		try (DirectoryStream<Path> listing = Files.newDirectoryStream(directory, "*.html")) {
+			for (Path path : listing) {
+				get(path);
+			}
+		}
+	}
+
+	/**
+	 * Writes the template, replacing each variable that has a value.
+	 *
+	 * @param out the writer to render into
+	 * @param values map of variable names to values
+	 */
+	public void render(PrintWriter out, Map<String, String> values) {
+		out.write(literals[0]);
+
+		for (int i = 0; i < names.length; i++) {
+			String value = values.get(names[i]);
+
+			if (value != null) {
+				out.write(value);
+			}
+			else {
+				out.write("${");
+				out.write(names[i]);
+				out.write('}');
+			}
+
+			out.write(literals[i + 1]);
+		}
+	}
+
+	/**
+	 * Writes the template with every variable unchanged.
+	 *
+	 * @param out the writer to render into
+	 */
+	public void render(PrintWriter out) {
+		render(out, Map.of());
+	}
+
+	/**
+	 * Determines whether the template file was modified after it was compiled,
+	 * checking at most once per {@link #CHECK_INTERVAL}.
+	 *
+	 * @return {@code true} if the template should be compiled again
+	 */
+	private boolean changed() {
+		long now = System.currentTimeMillis();
+
+		if (now < nextCheck) {
+			return false;
+		}
+
+		nextCheck = now + CHECK_INTERVAL;
+
+		try {
+			return !Files.getLastModifiedTime(path).equals(modified);
+		}
+		catch (IOException e) {
+			// keep serving the compiled template if the file is briefly missing
+			return false;
+		}
+	}
+}
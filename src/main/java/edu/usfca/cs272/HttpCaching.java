@@ -0,0 +1,111 @@
+package edu.usfca.cs272;
+
+import java.security.SecureRandom;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Adds validators to responses derived from the index, so browsers and proxies
+ * can revalidate a page they already have instead of downloading it again.
+ * Each entity tag combines the index generation with whatever else the page
+ * depends on, so a tag stays valid exactly as long as the index is unchanged.
+ * The generation restarts with every server, so each tag also includes a
+ * random value chosen when the server starts, and no tag from an earlier
+ * server ever matches.
+ *
+ * Responses are marked {@code private, no-cache}: they may be stored, but only
+ * by the browser, and only used after revalidating with the server.
+ *
+ * @see ThreadSafeInvertedIndex#getGeneration()
+ *
+ * @author Colin Bindi
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2022
+ */
+public class HttpCaching {
+	/** The cache control sent with every tagged response. */
+	public static final String CACHE_CONTROL = "private, no-cache";
+
+	/** The random value that distinguishes the tags of this server from earlier ones. */
+	private static final long EPOCH = new SecureRandom().nextLong();
+
+	/** Prevents instantiating this class of static methods. */
+	private HttpCaching() {
+	}
+
+	/**
+	 * Creates an entity tag from the index generation and the other values the
+	 * response depends on.
+	 *
+	 * @param weak true if responses with the same tag are equivalent but not
+	 *   necessarily identical
+	 * @param generation the index generation
+	 * @param parts the other values the response depends on
+	 * @return the quoted entity tag
+	 */
+	public static String tag(boolean weak, long generation, Object... parts) {
+		StringBuilder key = new StringBuilder().append(EPOCH).append('\0');
+
+		for (Object part : parts) {
+			key.append(part).append('\0');
+		}
+
+		return (weak ? "W/\"" : "\"") + Long.toHexString(generation) + "-" + Long.toHexString(UrlSeenSet.fingerprint(key.toString())) + "\"";
+	}
+
+	/**
+	 * Sets the entity tag and cache control of a response, and answers with 304
+	 * Not Modified if the request already has a response with the same tag.
+	 *
+	 * @param request the request
+	 * @param response the response
+	 * @param tag the quoted entity tag of the response
+	 * @return {@code true} if the response was sent and the caller should stop
+	 */
+	public static boolean notModified(HttpServletRequest request, HttpServletResponse response, String tag) {
+		response.setHeader("ETag", tag);
+		response.setHeader("Cache-Control", CACHE_CONTROL);
+
+		String header = request.getHeader("If-None-Match");
+
+		if (header == null || !matches(header, tag)) {
+			return false;
+		}
+
+		response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+		return true;
+	}
+
+	/**
+	 * Determines whether an If-None-Match header lists a tag, using the weak
+	 * comparison that header requires.
+	 *
+	 * @param header the If-None-Match header
+	 * @param tag the quoted entity tag
+	 * @return {@code true} if the header lists the tag or is {@code *}
+	 */
+	private static boolean matches(String header, String tag) {
+		String opaque = opaque(tag);
+
+		for (String candidate : header.split(",")) {
+			candidate = candidate.strip();
+
+			if (candidate.equals("*") || opaque(candidate).equals(opaque)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Removes the weak prefix from an entity tag.
+	 *
+	 * @param tag the entity tag
+	 * @return the quoted tag without a weak prefix
+	 */
+	private static String opaque(String tag) {
+		return tag.startsWith("W/") ? tag.substring(2) : tag;
+	}
+}
@@ -2,23 +2,38 @@ package edu.usfca.cs272;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.net.InetSocketAddress;
 import java.net.MalformedURLException;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
 import java.net.URL;
 import java.net.URLConnection;
 import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.function.Predicate;
 
 import javax.net.SocketFactory;
 import javax.net.ssl.SSLSocketFactory;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
 /**
  * An alternative to using {@link Socket} connections instead of a
  * {@link URLConnection} to fetch the headers and content from a URL on the web.
@@ -27,6 +42,84 @@ import javax.net.ssl.SSLSocketFactory;
  * @version Spring 2022
  */
 public class HttpsFetcher {
+	/** Logger used for this class. */
+	private static final Logger log = LogManager.getLogger();
+
+	/** The default time to wait for a connection in milliseconds. */
+	public static final int DEFAULT_CONNECT_TIMEOUT = 10000;
+
+	/** The default time to wait for each read from a connection in milliseconds. */
+	public static final int DEFAULT_READ_TIMEOUT = 30000;
+
+	/** The default largest body that is read, in bytes. */
+	public static final long DEFAULT_MAX_BODY = 10 * 1024 * 1024;
+
+	/** The time to wait for a connection in milliseconds. */
+	private static volatile int connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+
+	/** The time to wait for each read from a connection in milliseconds. */
+	private static volatile int readTimeout = DEFAULT_READ_TIMEOUT;
+
+	/** The largest body that is read, in bytes. */
+	private static volatile long maxBody = DEFAULT_MAX_BODY;
+
+	/** How long an unused connection is kept open in milliseconds. */
+	public static final long IDLE_TIMEOUT = 15000;
+
+	/** The number of unused connections kept open per host. */
+	public static final int MAX_IDLE = 4;
+
+	/** The largest unwanted body that is read and discarded to keep a connection open. */
+	private static final long MAX_DRAIN = 64 * 1024;
+
+	/** Map of each protocol, host, and port to its unused open connections. */
+	private static final Map<String, ConcurrentLinkedDeque<Connection>> pool = new ConcurrentHashMap<>();
+
+	/** The last time idle connections were evicted from every host. */
+	private static volatile long lastEviction = System.currentTimeMillis();
+
+	/**
+	 * Sets the limits used for every later connection and response. A body
+	 * larger than the maximum is not stored; reading it stops as soon as the
+	 * limit is passed and the connection is closed.
+	 *
+	 * @param connect the time to wait for a connection in milliseconds, or 0 to wait forever
+	 * @param read the time to wait for each read in milliseconds, or 0 to wait forever
+	 * @param body the largest body that is read, in bytes
+	 */
+	public static void setLimits(int connect, int read, long body) {
+		connectTimeout = Math.max(connect, 0);
+		readTimeout = Math.max(read, 0);
+		maxBody = Math.max(body, 0);
+	}
+
+	/**
+	 * Gets the time to wait for a connection.
+	 *
+	 * @return the time in milliseconds, or 0 to wait forever
+	 */
+	public static int getConnectTimeout() {
+		return connectTimeout;
+	}
+
+	/**
+	 * Gets the time to wait for each read from a connection.
+	 *
+	 * @return the time in milliseconds, or 0 to wait forever
+	 */
+	public static int getReadTimeout() {
+		return readTimeout;
+	}
+
+	/**
+	 * Gets the largest body that is read.
+	 *
+	 * @return the number of bytes
+	 */
+	public static long getMaxBody() {
+		return maxBody;
+	}
+
 	/**
 	 * Fetches the headers and content for the specified URL. The content is
 	 * placed as a list of all the lines fetched under the "Content" key.
@@ -72,7 +165,9 @@ public class HttpsFetcher {
 
 	/**
 	 * Uses a {@link Socket} to open a connection to the web server associated
-	 * with the provided URL. Supports HTTP and HTTPS connections.
+	 * with the provided URL. Supports HTTP and HTTPS connections. The host is
+	 * resolved through the shared {@link DnsCache}, and the connect and read
+	 * timeouts set by {@link #setLimits(int, int, long)} are applied.
 	 *
 	 * @param url the url to connect
 	 * @return a socket connection for that url
@@ -96,10 +191,29 @@ public class HttpsFetcher {
 		int port = url.getPort() < 0 ? defaultPort : url.getPort();
 		//System.out.println("port: "+port);
 
-		SocketFactory factory = https ? SSLSocketFactory.getDefault() : SocketFactory.getDefault();
-		//System.out.println("factory: "+factory);
-		//System.out.println("Created socket: "+factory.createSocket(host, port));
-		return factory.createSocket(host, port);
+		// connect to the cached address, then layer TLS using the host name
+		Socket socket = SocketFactory.getDefault().createSocket();
+
+		try {
+			socket.connect(new InetSocketAddress(DnsCache.getShared().resolve(host), port), connectTimeout);
+			socket.setSoTimeout(readTimeout);
+		}
+		catch (IOException e) {
+			socket.close();
+			throw e;
+		}
+
+		if (https) {
+			try {
+				return ((SSLSocketFactory) SSLSocketFactory.getDefault()).createSocket(socket, host, port, true);
+			}
+			catch (IOException e) {
+				socket.close();
+				throw e;
+			}
+		}
+
+		return socket;
 	}
 
 	/**
@@ -110,12 +224,48 @@ public class HttpsFetcher {
 	 * @throws IOException if unable to write request to socket
 	 */
 	public static void printGetRequest(PrintWriter writer, URL url) throws IOException {
+		printGetRequest(writer, url, false);
+	}
+
+	/**
+	 * Writes a simple HTTP GET request to the provided socket writer, optionally
+	 * asking the server to keep the connection open afterwards.
+	 *
+	 * @param writer a writer created from a socket connection
+	 * @param url the url to fetch via the socket connection
+	 * @param keepAlive whether to ask to keep the connection open
+	 * @throws IOException if unable to write request to socket
+	 */
+	public static void printGetRequest(PrintWriter writer, URL url, boolean keepAlive) throws IOException {
+		printGetRequest(writer, url, keepAlive, Map.of());
+	}
+
+	/**
+	 * Writes a simple HTTP GET request with additional headers to the provided
+	 * socket writer. Headers whose value contains a line break are skipped.
+	 *
+	 * @param writer a writer created from a socket connection
+	 * @param url the url to fetch via the socket connection
+	 * @param keepAlive whether to ask to keep the connection open
+	 * @param extra additional header names and values to send
+	 * @throws IOException if unable to write request to socket
+	 */
+	public static void printGetRequest(PrintWriter writer, URL url, boolean keepAlive, Map<String, String> extra) throws IOException {
 		String host = url.getHost();
 		String resource = url.getFile().isEmpty() ? "/" : url.getFile();
 
 		writer.printf("GET %s HTTP/1.1\r\n", resource);
 		writer.printf("Host: %s\r\n", host);
-		writer.printf("Connection: close\r\n");
+		writer.printf("Connection: %s\r\n", keepAlive ? "keep-alive" : "close");
+
+		for (var header : extra.entrySet()) {
+			String value = header.getValue();
+
+			if (value != null && value.indexOf('\r') < 0 && value.indexOf('\n') < 0) {
+				writer.printf("%s: %s\r\n", header.getKey(), value);
+			}
+		}
+
 		writer.printf("\r\n");
 		writer.flush();
 	}
@@ -149,4 +299,530 @@ public class HttpsFetcher {
 
 		return results;
 	}
+
+	/**
+	 * Fetches the resource at the URL over a pooled HTTP/1.1 keep-alive
+	 * connection. The body is framed using the "Transfer-Encoding" or
+	 * "Content-Length" headers, so the connection can be reused afterwards.
+	 * Header names are stored in their canonical capitalization (for example,
+	 * "Content-Type").
+	 *
+	 * If the body is not wanted, it is discarded (or the connection is closed if
+	 * the body is large) instead of being stored. If the body is wanted but
+	 * larger than the maximum size, reading stops as soon as that is known and
+	 * the body is {@code null}.
+	 *
+	 * @param url the url to fetch
+	 * @param wanted decides from the headers whether the body should be read
+	 * @return the headers and, if wanted, the body of the response
+	 * @throws IOException if unable to fetch the response
+	 */
+	public static Response get(URL url, Predicate<Map<String, List<String>>> wanted) throws IOException {
+		return get(url, Map.of(), wanted);
+	}
+
+	/**
+	 * Fetches the resource at the URL like {@link #get(URL, Predicate)}, sending
+	 * additional request headers such as "If-None-Match".
+	 *
+	 * @param url the url to fetch
+	 * @param extra additional header names and values to send
+	 * @param wanted decides from the headers whether the body should be read
+	 * @return the headers and, if wanted, the body of the response
+	 * @throws IOException if unable to fetch the response
+	 */
+	public static Response get(URL url, Map<String, String> extra, Predicate<Map<String, List<String>>> wanted) throws IOException {
+		Connection connection = acquire(url);
+
+		try {
+			return connection.get(url, extra, wanted);
+		}
+		catch (IOException e) {
+			connection.close();
+
+			if (!connection.reused || e instanceof SocketTimeoutException) {
+				throw e;
+			}
+
+			// the server may have closed an idle connection; retry once on a new one
+			connection = new Connection(url);
+
+			try {
+				return connection.get(url, extra, wanted);
+			}
+			catch (IOException retry) {
+				connection.close();
+				throw retry;
+			}
+		}
+	}
+
+	/**
+	 * Takes an unused open connection for the URL's host from the pool, or opens
+	 * a new connection if there is none.
+	 *
+	 * @param url the url to connect
+	 * @return a connection for that url
+	 * @throws IOException if an I/O error occurs when creating the socket
+	 */
+	private static Connection acquire(URL url) throws IOException {
+		long now = System.currentTimeMillis();
+
+		if (now - lastEviction > IDLE_TIMEOUT) {
+			lastEviction = now;
+			pool.values().forEach(idle -> evict(idle, now));
+		}
+
+		ConcurrentLinkedDeque<Connection> idle = pool.get(key(url));
+		Connection connection;
+
+		while (idle != null && (connection = idle.pollFirst()) != null) {
+			if (now - connection.lastUsed < IDLE_TIMEOUT && !connection.socket.isClosed()) {
+				connection.reused = true;
+				return connection;
+			}
+			connection.close();
+		}
+
+		return new Connection(url);
+	}
+
+	/**
+	 * Returns a connection to the pool if it can be reused, or closes it.
+	 *
+	 * @param connection the connection to release
+	 */
+	private static void release(Connection connection) {
+		ConcurrentLinkedDeque<Connection> idle = pool.computeIfAbsent(connection.key, key -> new ConcurrentLinkedDeque<>());
+		connection.lastUsed = System.currentTimeMillis();
+		idle.offerFirst(connection);
+
+		while (idle.size() > MAX_IDLE) {
+			Connection oldest = idle.pollLast();
+
+			if (oldest != null) {
+				oldest.close();
+			}
+		}
+	}
+
+	/**
+	 * Closes and removes the connections that have been unused for too long.
+	 *
+	 * @param idle the unused connections for a host
+	 * @param now the current time in milliseconds
+	 */
+	private static void evict(ConcurrentLinkedDeque<Connection> idle, long now) {
+		Iterator<Connection> iterator = idle.iterator();
+
+		while (iterator.hasNext()) {
+			Connection connection = iterator.next();
+
+			if (now - connection.lastUsed >= IDLE_TIMEOUT && idle.remove(connection)) {
+				connection.close();
+			}
+		}
+	}
+
+	/**
+	 * Closes every unused pooled connection.
+	 */
+	public static void closeIdle() {
+		pool.values().forEach(idle -> evict(idle, Long.MAX_VALUE));
+	}
+
+	/**
+	 * Returns the pool key for a URL, made of its protocol, host, and port.
+	 *
+	 * @param url the url
+	 * @return the pool key
+	 */
+	private static String key(URL url) {
+		return url.getProtocol().toLowerCase() + "://" + url.getHost().toLowerCase() + ":" + (url.getPort() < 0 ? url.getDefaultPort() : url.getPort());
+	}
+
+	/**
+	 * Returns the canonical capitalization of a header name, where the first
+	 * letter of every dash-separated part is uppercase.
+	 *
+	 * @param name the header name
+	 * @return the canonical header name
+	 */
+	public static String canonical(String name) {
+		char[] chars = name.toLowerCase().toCharArray();
+		boolean upper = true;
+
+		for (int i = 0; i < chars.length; i++) {
+			if (upper) {
+				chars[i] = Character.toUpperCase(chars[i]);
+			}
+			upper = chars[i] == '-';
+		}
+
+		return new String(chars);
+	}
+
+	/**
+	 * Reads a single header line of ISO-8859-1 text without the line ending.
+	 *
+	 * @param input the socket input
+	 * @return the line read, or {@code null} at the end of the stream
+	 * @throws IOException if unable to read from socket
+	 */
+	private static String readLine(InputStream input) throws IOException {
+		StringBuilder builder = new StringBuilder();
+		int c;
+
+		while ((c = input.read()) >= 0 && c != '\n') {
+			if (c != '\r') {
+				builder.append((char) c);
+			}
+		}
+
+		return c < 0 && builder.isEmpty() ? null : builder.toString();
+	}
+
+	/**
+	 * Reads exactly the number of bytes requested.
+	 *
+	 * @param input the socket input
+	 * @param output where to store the bytes, or {@code null} to discard them
+	 * @param length the number of bytes to read
+	 * @throws TooLargeException if storing the bytes would pass the maximum body size
+	 * @throws IOException if unable to read from socket or the stream ends early
+	 */
+	private static void readFully(InputStream input, ByteArrayOutputStream output, long length) throws IOException {
+		byte[] buffer = new byte[8192];
+
+		if (output != null && output.size() + length > maxBody) {
+			throw new TooLargeException();
+		}
+
+		while (length > 0) {
+			int read = input.read(buffer, 0, (int) Math.min(buffer.length, length));
+
+			if (read < 0) {
+				throw new EOFException("Connection closed before the end of the body");
+			}
+
+			if (output != null) {
+				output.write(buffer, 0, read);
+			}
+			length -= read;
+		}
+	}
+
+	/**
+	 * Reads until the end of the input.
+	 *
+	 * @param input the socket input
+	 * @param output where to store the bytes
+	 * @throws TooLargeException if storing the bytes would pass the maximum body size
+	 * @throws IOException if unable to read from socket
+	 */
+	private static void readToEnd(InputStream input, ByteArrayOutputStream output) throws IOException {
+		byte[] buffer = new byte[8192];
+		int read;
+
+		while ((read = input.read(buffer)) >= 0) {
+			if (output.size() + read > maxBody) {
+				throw new TooLargeException();
+			}
+
+			output.write(buffer, 0, read);
+		}
+	}
+
+	/**
+	 * Thrown when a body is larger than the maximum size, so reading can stop
+	 * early.
+	 */
+	private static class TooLargeException extends IOException {
+		/** ID used for serialization, which we are not using. */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Initializes the exception.
+		 */
+		public TooLargeException() {
+			this(maxBody);
+		}
+
+		/**
+		 * Initializes the exception for a different limit.
+		 *
+		 * @param limit the number of bytes the body passed
+		 */
+		public TooLargeException(long limit) {
+			super("The body is larger than " + limit + " bytes");
+		}
+	}
+
+	/**
+	 * The headers and body of a response fetched over a pooled connection.
+	 */
+	public static class Response {
+		/** The response headers, with the status line under the {@code null} key. */
+		private final Map<String, List<String>> headers;
+
+		/** The response body, or {@code null} if it was not wanted or was too large. */
+		private final byte[] body;
+
+		/**
+		 * Initializes a response.
+		 *
+		 * @param headers the response headers
+		 * @param body the response body
+		 */
+		public Response(Map<String, List<String>> headers, byte[] body) {
+			this.headers = headers;
+			this.body = body;
+		}
+
+		/**
+		 * Gets the headers
+		 *
+		 * @return the response headers
+		 */
+		public Map<String, List<String>> getHeaders() {
+			return headers;
+		}
+
+		/**
+		 * Gets the body
+		 *
+		 * @return the response body, or {@code null} if it was not wanted or was too large
+		 */
+		public byte[] getBody() {
+			return body;
+		}
+	}
+
+	/**
+	 * An open socket connection to a single host that can send several requests
+	 * one after another.
+	 */
+	private static class Connection {
+		/** The pool key of the host. */
+		private final String key;
+
+		/** The socket. */
+		private final Socket socket;
+
+		/** The buffered socket input. */
+		private final InputStream input;
+
+		/** The socket output. */
+		private final PrintWriter output;
+
+		/** The last time this connection finished a request. */
+		private long lastUsed;
+
+		/** Whether this connection was taken from the pool. */
+		private boolean reused;
+
+		/**
+		 * Opens a new connection.
+		 *
+		 * @param url the url to connect
+		 * @throws IOException if an I/O error occurs when creating the socket
+		 */
+		public Connection(URL url) throws IOException {
+			this.key = key(url);
+			this.socket = openConnection(url);
+			this.input = new BufferedInputStream(socket.getInputStream());
+			this.output = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.ISO_8859_1));
+			this.lastUsed = System.currentTimeMillis();
+			this.reused = false;
+		}
+
+		/**
+		 * Sends a request and reads its response, then returns this connection to
+		 * the pool or closes it.
+		 *
+		 * @param url the url to fetch
+		 * @param extra additional header names and values to send
+		 * @param wanted decides from the headers whether the body should be read
+		 * @return the response
+		 * @throws IOException if unable to fetch the response
+		 */
+		public Response get(URL url, Map<String, String> extra, Predicate<Map<String, List<String>>> wanted) throws IOException {
+			printGetRequest(output, url, true, extra);
+
+			String status = readLine(input);
+
+			if (status == null || status.isBlank()) {
+				throw new EOFException("Connection closed before the status line");
+			}
+
+			Map<String, List<String>> headers = new HashMap<>();
+			headers.put(null, List.of(status));
+
+			String line;
+
+			while ((line = readLine(input)) != null && !line.isBlank()) {
+				String[] split = line.split(":\\s*", 2);
+
+				if (split.length == 2) {
+					headers.computeIfAbsent(canonical(split[0].strip()), name -> new ArrayList<>()).add(split[1].strip());
+				}
+			}
+
+			boolean keepAlive = status.startsWith("HTTP/1.1") ? !has(headers, "Connection", "close") : has(headers, "Connection", "keep-alive");
+			boolean store = wanted.test(headers);
+			ByteArrayOutputStream body = store ? new ByteArrayOutputStream() : null;
+			int code = HtmlFetcher.getStatusCode(headers);
+
+			try {
+				if (code / 100 == 1 || code == 204 || code == 304) {
+					// no body
+				}
+				else if (has(headers, "Transfer-Encoding", "chunked")) {
+					readChunked(body);
+				}
+				else if (headers.containsKey("Content-Length")) {
+					long length = contentLength(headers);
+
+					if (store || length <= MAX_DRAIN) {
+						readFully(input, body, length);
+					}
+					else {
+						keepAlive = false;
+					}
+				}
+				else {
+					// no framing, so the body ends when the server closes the connection
+					if (store) {
+						readToEnd(input, body);
+					}
+					keepAlive = false;
+				}
+			}
+			catch (TooLargeException e) {
+				log.debug("Skipping the body of {}: {}", url, e.getMessage());
+				close();
+				return new Response(headers, null);
+			}
+
+			if (keepAlive) {
+				release(this);
+			}
+			else {
+				close();
+			}
+
+			return new Response(headers, store ? body.toByteArray() : null);
+		}
+
+		/**
+		 * Parses the "Content-Length" header, closing this connection if it is
+		 * malformed since the end of the body cannot be found.
+		 *
+		 * @param headers the response headers
+		 * @return the non-negative content length
+		 * @throws IOException if the header is not a non-negative number
+		 */
+		private long contentLength(Map<String, List<String>> headers) throws IOException {
+			String value = headers.get("Content-Length").get(0).strip();
+
+			try {
+				long length = Long.parseLong(value);
+
+				if (length >= 0) {
+					return length;
+				}
+			}
+			catch (NumberFormatException e) {
+				// handled below with negative lengths
+			}
+
+			close();
+			throw new IOException("Malformed Content-Length: " + value);
+		}
+
+		/**
+		 * Reads a body sent with chunked transfer encoding. A body that is not
+		 * stored is only drained up to the same total as an unwanted body with a
+		 * length, after which the connection cannot be reused.
+		 *
+		 * @param body where to store the body, or {@code null} to discard it
+		 * @throws TooLargeException if the body is too large to store or drain
+		 * @throws IOException if unable to read from socket or the chunks are malformed
+		 */
+		private void readChunked(ByteArrayOutputStream body) throws IOException {
+			long drained = 0;
+
+			while (true) {
+				String line = readLine(input);
+
+				if (line == null) {
+					throw new EOFException("Connection closed before the last chunk");
+				}
+
+				long size;
+
+				try {
+					size = Long.parseLong(line.split(";", 2)[0].strip(), 16);
+				}
+				catch (NumberFormatException e) {
+					throw new IOException("Malformed chunk size: " + line);
+				}
+
+				if (size < 0) {
+					throw new IOException("Malformed chunk size: " + line);
+				}
+
+				if (size == 0) {
+					// skip any trailer headers up to the final blank line
+					while ((line = readLine(input)) != null && !line.isBlank()) {
+						continue;
+					}
+					return;
+				}
+
+				if (body == null) {
+					drained += size;
+
+					if (drained > MAX_DRAIN) {
+						throw new TooLargeException(MAX_DRAIN);
+					}
+				}
+
+				readFully(input, body, size);
+				readLine(input);
+			}
+		}
+
+		/**
+		 * Closes the socket, ignoring any errors.
+		 */
+		public void close() {
+			try {
+				socket.close();
+			}
+			catch (IOException e) {
+				// nothing more can be done with a broken connection
+			}
+		}
+	}
+
+	/**
+	 * Determines whether any value of a header contains the given token
+	 * (case-insensitive).
+	 *
+	 * @param headers the headers
+	 * @param name the canonical header name
+	 * @param token the token to look for
+	 * @return {@code true} if the header contains the token
+	 */
+	private static boolean has(Map<String, List<String>> headers, String name, String token) {
+		if (headers.containsKey(name)) {
+			for (String value : headers.get(name)) {
+				if (value.toLowerCase().contains(token)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
 }
\ No newline at end of file
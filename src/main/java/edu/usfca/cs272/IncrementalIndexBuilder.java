@@ -0,0 +1,210 @@
+package edu.usfca.cs272;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Rebuilds an inverted index saved by a previous run, re-parsing only the text
+ * files that were added, changed, or deleted since then. Changes are detected
+ * using an {@link IndexManifest} stored next to the saved index. A file whose
+ * size and modification time are unchanged is never read; otherwise its
+ * content hash decides whether it is parsed again.
+ *
+ * @see IndexManifest
+ * @see InvertedIndexBuilder
+ *
+ * @author Colin Bindi
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2022
+ */
+public class IncrementalIndexBuilder {
+	/** Logger used for this class. */
+	private static final Logger log = LogManager.getLogger();
+
+	/**
+	 * Parses a single changed text file into the index.
+	 */
+	@FunctionalInterface
+	private interface FileParser {
+		/**
+		 * Parses the file into the index, then runs the callback if the file was
+		 * parsed successfully. The parse may finish after this method returns.
+		 *
+		 * @param path the text file to parse
+		 * @param parsed the callback to run once the file is in the index
+		 * @throws IOException if an I/O error occurs
+		 */
+		void parse(Path path, Runnable parsed) throws IOException;
+	}
+
+	/**
+	 * Returns the default manifest location for a saved index, which is the
+	 * index file name with a ".manifest" suffix in the same directory.
+	 *
+	 * @param indexPath the saved index
+	 * @return the default manifest location
+	 */
+	public static Path manifestPath(Path indexPath) {
+		return indexPath.resolveSibling(indexPath.getFileName() + ".manifest");
+	}
+
+	/**
+	 * Loads the saved index and manifest if both exist, then brings the index up
+	 * to date with the text files found at the start path.
+	 *
+	 * @param start the initial path to traverse
+	 * @param index the index to load into and update
+	 * @param indexPath the saved index
+	 * @param manifestPath the saved manifest
+	 * @return the updated manifest, which should be written after the index
+	 * @throws IOException if an I/O error occurs
+	 */
+	public static IndexManifest build(Path start, InvertedIndex index, Path indexPath, Path manifestPath) throws IOException {
+		IndexManifest manifest = load(index, indexPath, manifestPath);
+		update(start, index, manifest, (path, parsed) -> {
+			InvertedIndexBuilder.parseFile(path, index);
+			parsed.run();
+		});
+		return manifest;
+	}
+
+	/**
+	 * Loads the saved index and manifest if both exist, then brings the index up
+	 * to date with the text files found at the start path. Changed files are
+	 * parsed using the work queue.
+	 *
+	 * @param start the initial path to traverse
+	 * @param index the index to load into and update
+	 * @param indexPath the saved index
+	 * @param manifestPath the saved manifest
+	 * @param workQueue the work queue
+	 * @return the updated manifest, which should be written after the index
+	 * @throws IOException if an I/O error occurs
+	 */
+	public static IndexManifest build(Path start, ThreadSafeInvertedIndex index, Path indexPath, Path manifestPath, WorkQueue workQueue) throws IOException {
+		IndexManifest manifest = load(index, indexPath, manifestPath);
+		update(start, index, manifest, (path, parsed) -> workQueue.execute(new ThreadSafeInvertedIndexBuilder.Task(path, index, parsed)));
+		workQueue.finish();
+		return manifest;
+	}
+
+	/**
+	 * Loads the saved index and manifest. If either is missing, returns an empty
+	 * manifest so every file is treated as new.
+	 *
+	 * @param index the index to load into
+	 * @param indexPath the saved index
+	 * @param manifestPath the saved manifest
+	 * @return the saved manifest or an empty manifest
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static IndexManifest load(InvertedIndex index, Path indexPath, Path manifestPath) throws IOException {
+		if (Files.isRegularFile(indexPath) && Files.isRegularFile(manifestPath)) {
+			IndexManifest manifest = IndexManifest.read(manifestPath);
+			SimpleJsonReader.readNestedMap(indexPath, index);
+			log.debug("Loaded {} locations from {}.", manifest.size(), manifestPath);
+			return manifest;
+		}
+
+		return new IndexManifest();
+	}
+
+	/**
+	 * Compares the text files at the start path with the manifest, removing the
+	 * postings of deleted and changed files and re-parsing changed files.
+	 *
+	 * @param start the initial path to traverse
+	 * @param index the index to update
+	 * @param manifest the manifest to update
+	 * @param parser how to parse a changed file
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static void update(Path start, InvertedIndex index, IndexManifest manifest, FileParser parser) throws IOException {
+		Set<String> found = new HashSet<>();
+
+		if (Files.isDirectory(start)) {
+			traverseDirectory(start, index, manifest, parser, found);
+		}
+		else {
+			updateFile(start, index, manifest, parser, found);
+		}
+
+		for (String location : new ArrayList<>(manifest.getLocations())) {
+			if (!found.contains(location)) {
+				index.removeLocation(location);
+				manifest.remove(location);
+				log.debug("Removed deleted location {}.", location);
+			}
+		}
+	}
+
+	/**
+	 * Traverses through the directory and its sub-directories, updating every
+	 * text file found.
+	 *
+	 * @param directory the directory to traverse
+	 * @param index the index to update
+	 * @param manifest the manifest to update
+	 * @param parser how to parse a changed file
+	 * @param found the locations seen so far
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static void traverseDirectory(Path directory, InvertedIndex index, IndexManifest manifest, FileParser parser, Set<String> found) throws IOException {
+		try (DirectoryStream<Path> listing = Files.newDirectoryStream(directory)) {
+			for (Path path : listing) {
+				if (Files.isDirectory(path)) {
+					traverseDirectory(path, index, manifest, parser, found);
+				}
+				else if (InvertedIndexBuilder.isTextFile(path)) {
+					updateFile(path, index, manifest, parser, found);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Re-parses a single text file if it is new or its content changed. The new
+	 * state of a re-parsed file is only recorded once it is parsed, so a file
+	 * that fails to parse is treated as new by the next run.
+	 *
+	 * @param path the text file
+	 * @param index the index to update
+	 * @param manifest the manifest to update
+	 * @param parser how to parse a changed file
+	 * @param found the locations seen so far
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static void updateFile(Path path, InvertedIndex index, IndexManifest manifest, FileParser parser, Set<String> found) throws IOException {
+		String location = path.toString();
+		found.add(location);
+
+		BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+		IndexManifest.Entry previous = manifest.get(location);
+
+		if (previous != null && previous.matches(attributes)) {
+			return;
+		}
+
+		String hash = IndexManifest.hash(path);
+		IndexManifest.Entry entry = new IndexManifest.Entry(attributes.size(), attributes.lastModifiedTime().toMillis(), hash);
+
+		if (previous != null && previous.getHash().equals(hash)) {
+			manifest.put(location, entry);
+			return;
+		}
+
+		manifest.remove(location);
+		index.removeLocation(location);
+		parser.parse(path, () -> manifest.put(location, entry));
+		log.debug("Re-parsed changed location {}.", location);
+	}
+}
@@ -0,0 +1,218 @@
+package edu.usfca.cs272;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records the size, modification time, and content hash of every text file in
+ * a saved inverted index so a later run can tell which files changed.
+ *
+ * The manifest is stored as one tab-separated line per location.
+ *
+ * @author Colin Bindi
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2022
+ */
+public class IndexManifest {
+	/**
+	 * Map of each location to its recorded file state, which worker threads
+	 * update as their files are parsed
+	 */
+	private final Map<String, Entry> entries;
+
+	/**
+	 * Creates an empty manifest
+	 */
+	public IndexManifest() {
+		entries = new ConcurrentHashMap<String, Entry>();
+	}
+
+	/**
+	 * Reads a manifest from file.
+	 *
+	 * @param path the manifest file
+	 * @return the manifest read
+	 * @throws IOException if an I/O error occurs or a line is malformed
+	 */
+	public static IndexManifest read(Path path) throws IOException {
+		IndexManifest manifest = new IndexManifest();
+
+		try (BufferedReader reader = Files.newBufferedReader(path, UTF_8)) {
+			String line = null;
+
+			while ((line = reader.readLine()) != null) {
+				if (line.isBlank()) {
+					continue;
+				}
+
+				String[] split = line.split("\t");
+
+				if (split.length != 4) {
+					throw new IOException("Malformed manifest line: " + line);
+				}
+
+				try {
+					manifest.put(split[0], new Entry(Long.parseLong(split[1]), Long.parseLong(split[2]), split[3]));
+				}
+				catch (NumberFormatException e) {
+					throw new IOException("Malformed manifest line: " + line);
+				}
+			}
+		}
+
+		return manifest;
+	}
+
+	/**
+	 * Writes this manifest to file.
+	 *
+	 * @param path the manifest file
+	 * @throws IOException if an I/O error occurs
+	 */
+	public void write(Path path) throws IOException {
+		try (BufferedWriter writer = Files.newBufferedWriter(path, UTF_8)) {
+			for (var entry : entries.entrySet()) {
+				writer.write(entry.getKey());
+				writer.write('\t');
+				writer.write(Long.toString(entry.getValue().size));
+				writer.write('\t');
+				writer.write(Long.toString(entry.getValue().modified));
+				writer.write('\t');
+				writer.write(entry.getValue().hash);
+				writer.write('\n');
+			}
+		}
+	}
+
+	/**
+	 * Gets the recorded state of a location.
+	 *
+	 * @param location the location to lookup
+	 * @return the recorded state or {@code null} if the location is not recorded
+	 */
+	public Entry get(String location) {
+		return entries.get(location);
+	}
+
+	/**
+	 * Records the state of a location.
+	 *
+	 * @param location the location
+	 * @param entry the file state
+	 */
+	public void put(String location, Entry entry) {
+		entries.put(location, entry);
+	}
+
+	/**
+	 * Removes the recorded state of a location.
+	 *
+	 * @param location the location to remove
+	 */
+	public void remove(String location) {
+		entries.remove(location);
+	}
+
+	/**
+	 * Returns an unmodifiable view of the recorded locations.
+	 *
+	 * @return an unmodifiable view of the recorded locations
+	 */
+	public Collection<String> getLocations() {
+		return Collections.unmodifiableSet(entries.keySet());
+	}
+
+	/**
+	 * Returns the number of recorded locations.
+	 *
+	 * @return the number of recorded locations
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Computes the SHA-256 hash of a file's contents.
+	 *
+	 * @param path the file to hash
+	 * @return the hash as lowercase hexadecimal
+	 * @throws IOException if an I/O error occurs
+	 */
+	public static String hash(Path path) throws IOException {
+		try (InputStream input = Files.newInputStream(path)) {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			byte[] buffer = new byte[8192];
+			int read;
+
+			while ((read = input.read(buffer)) > 0) {
+				digest.update(buffer, 0, read);
+			}
+
+			return HexFormat.of().formatHex(digest.digest());
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IOException("SHA-256 is not available", e);
+		}
+	}
+
+	/**
+	 * The recorded size, modification time, and content hash of a file.
+	 */
+	public static class Entry {
+		/** The size in bytes. */
+		private final long size;
+
+		/** The last modified time in milliseconds. */
+		private final long modified;
+
+		/** The SHA-256 content hash. */
+		private final String hash;
+
+		/**
+		 * Initializes a file state.
+		 *
+		 * @param size the size in bytes
+		 * @param modified the last modified time in milliseconds
+		 * @param hash the content hash
+		 */
+		public Entry(long size, long modified, String hash) {
+			this.size = size;
+			this.modified = modified;
+			this.hash = hash;
+		}
+
+		/**
+		 * Determines whether the file attributes still match this state without
+		 * reading the file.
+		 *
+		 * @param attributes the current file attributes
+		 * @return {@code true} if the size and modification time are unchanged
+		 */
+		public boolean matches(BasicFileAttributes attributes) {
+			return size == attributes.size() && modified == attributes.lastModifiedTime().toMillis();
+		}
+
+		/**
+		 * Gets the content hash
+		 *
+		 * @return the content hash
+		 */
+		public String getHash() {
+			return hash;
+		}
+	}
+}
@@ -4,17 +4,15 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.nio.file.Files;
+import java.net.URLEncoder;
 import java.nio.file.Path;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
 
 import org.apache.commons.text.StringEscapeUtils;
-import org.apache.commons.text.StringSubstitutor;
 
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServlet;
@@ -23,7 +21,12 @@ import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
 
 /**
- * Servlet to GET handle requests to /index.
+ * Servlet to GET handle requests to /index. The index is shown one page of
+ * stems at a time, starting after the stem in the "after" parameter, so a
+ * large index is never rendered all at once. Each stem lists at most
+ * {@link #MAX_LOCATIONS} locations and links to the rest, which are paged the
+ * same way with the "word" parameter. Each page is read under the index read
+ * lock, but written to the response after the lock is released.
  */
 public class IndexServlet extends HttpServlet {
 	/** ID used for serialization, which we are not using. */
@@ -39,6 +42,15 @@ public class IndexServlet extends HttpServlet {
 	 */
 	public WorkQueue workQueue;
 	
+	/** The number of stems on a page if no limit is given. */
+	public static final int DEFAULT_LIMIT = 100;
+	
+	/** The most stems allowed on a page. */
+	public static final int MAX_LIMIT = 1000;
+	
+	/** The most locations listed for each stem on a page. */
+	public static final int MAX_LOCATIONS = 20;
+	
 	/** Location of the HTML template for this servlet. */
 	private static final Path INDEX = Path.of("src", "main", "resources", "index.html");
 	
@@ -63,11 +75,13 @@ public class IndexServlet extends HttpServlet {
 	 * If a URL was included as a parameter in the GET request, safely fetch and
 	 * display the HTTP headers of that URL.
 	 */
-	@SuppressWarnings("unchecked")
 	@Override
 	protected void doGet(HttpServletRequest request,
 			HttpServletResponse response) throws ServletException, IOException {
 		
+		response.setContentType("text/html;charset=UTF-8");
+		response.setStatus(HttpServletResponse.SC_OK);
+		
 		HttpSession session = request.getSession(true);
 		
 		if (session.isNew()) {
@@ -85,24 +99,30 @@ public class IndexServlet extends HttpServlet {
 		
 		Map<String, String> values = new HashMap<>();
 		
-		ArrayList<String> inputList = (ArrayList<String>) session.getAttribute("input");
+		SearchHistory history = SearchHistory.get(session);
 		
-		values.put("index", index.toWeb());
+		String word = request.getParameter("word");
+		String after = request.getParameter("after");
+		int limit = limit(request.getParameter("limit"), DEFAULT_LIMIT, MAX_LIMIT);
+		// the uptime is left out of the tag, so a revalidated page keeps the uptime it was rendered with
+		String tag = HttpCaching.tag(true, index.getGeneration(), history.total(), lastVisit, word, after, limit);
+		
+		if (HttpCaching.notModified(request, response, tag)) {
+			return;
+		}
+		
+		values.put("index", word == null ? browse(index, after, limit) : browse(index, word, after, limit));
 		
 		Duration searchDuration = Duration.between(WebServer.serverUptime(), LocalDateTime.now());
 		
 		values.put("stats", "<br>Server Uptime: "+String.format("%02d:%02d:%02d", searchDuration.toHours(), searchDuration.toMinutesPart(), searchDuration.toSecondsPart())+
 				"&ensp;|&ensp;Words Stored: "+index.size()+
-				"&ensp;|&ensp;Queries Conducted: "+(inputList != null ? Integer.toString(inputList.size()) : "0")+
+				"&ensp;|&ensp;Queries Conducted: "+history.total()+
 				"&ensp;|&ensp;Last Visit: "+(lastVisit == null ? "" : lastVisit.format(DateTimeFormatter.ofPattern("EEEE, MMMM dd, yyyy 'at' HH:mm a"))));
 		
-		out.print(new StringSubstitutor(values).replace(Files.readString(INDEX, UTF_8)));
-		
-		response.setContentType("text/html;charset=UTF-8");
-		response.setStatus(HttpServletResponse.SC_OK);
+		HtmlTemplate.get(INDEX).render(out, values);
 	}
 	
-	@SuppressWarnings("unchecked")
 	@Override
 	protected void doPost(HttpServletRequest request, 
 			HttpServletResponse response) throws ServletException, IOException {
@@ -120,7 +140,7 @@ public class IndexServlet extends HttpServlet {
 			lastVisit = (LocalDateTime) session.getAttribute("time");
 		}
 		
-		ArrayList<String> inputList = (ArrayList<String>) session.getAttribute("input");
+		SearchHistory history = SearchHistory.get(session);
 		
 		PrintWriter out = response.getWriter();
 		
@@ -130,11 +150,11 @@ public class IndexServlet extends HttpServlet {
 		
 		values.put("stats", "<br>Server Uptime: "+String.format("%02d:%02d:%02d", searchDuration.toHours(), searchDuration.toMinutesPart(), searchDuration.toSecondsPart())+
 				"&ensp;|&ensp;Words Stored: "+index.size()+
-				"&ensp;|&ensp;Queries Conducted: "+(inputList != null ? Integer.toString(inputList.size()) : "0")+
+				"&ensp;|&ensp;Queries Conducted: "+history.total()+
 				"&ensp;|&ensp;Last Visit: "+(lastVisit == null ? "" : lastVisit.format(DateTimeFormatter.ofPattern("EEEE, MMMM dd, yyyy 'at' HH:mm a"))));
 		
 		if (request.getParameter("options") != null) {
-			out.print(Files.readString(OPTIONS, UTF_8));
+			HtmlTemplate.get(OPTIONS).render(out);
 			return;
 		}
 		
@@ -146,23 +166,94 @@ public class IndexServlet extends HttpServlet {
 			word = StringEscapeUtils.escapeHtml4(word);
 			
 			if (index.contains(word)) {
-				StringBuilder builder = new StringBuilder();
-				
-				builder.append("<strong>Stem:</strong> "+word+"<br>");
-				for (String location : index.getLocations(word)) {
-					builder.append("<a href=\""+location+"\">"+location+"</a><strong> - ");
-					builder.append("Positions: </strong>"+index.getIndices(word, location).size());
-					builder.append("<br>");
-				}
-				
-				values.put("index", builder.toString());
+				values.put("index", browse(index, word, null, DEFAULT_LIMIT));
 				
-				out.print(new StringSubstitutor(values).replace(Files.readString(INDEX, UTF_8)));
+				HtmlTemplate.get(INDEX).render(out, values);
 			} else {
 				values.put("index", "This word is not in the Inverted Index");
 				
-				out.print(new StringSubstitutor(values).replace(Files.readString(INDEX, UTF_8)));
+				HtmlTemplate.get(INDEX).render(out, values);
 			}
 		}
 	}
+	
+	/**
+	 * Builds HTML for one page of the index with links to the first and next
+	 * pages.
+	 * 
+	 * @param index the inverted index
+	 * @param after the last stem of the previous page, or {@code null} for the
+	 *   first page
+	 * @param limit the most stems on the page
+	 * @return the HTML
+	 */
+	public static String browse(ThreadSafeInvertedIndex index, String after, int limit) {
+		StringBuilder builder = new StringBuilder();
+		String next = index.toWeb(builder, after, limit, MAX_LOCATIONS);
+		links(builder, "/index", after, next, limit);
+		return builder.toString();
+	}
+	
+	/**
+	 * Builds HTML for one page of the locations of a stem with links to the
+	 * first and next pages.
+	 * 
+	 * @param index the inverted index
+	 * @param word the stem
+	 * @param after the last location of the previous page, or {@code null} for
+	 *   the first page
+	 * @param limit the most locations on the page
+	 * @return the HTML
+	 */
+	public static String browse(ThreadSafeInvertedIndex index, String word, String after, int limit) {
+		StringBuilder builder = new StringBuilder();
+		String next = index.stemToWeb(builder, word, after, limit);
+		links(builder, "/index?word=" + URLEncoder.encode(word, UTF_8), after, next, limit);
+		return builder.toString();
+	}
+	
+	/**
+	 * Parses the number of entries on a page.
+	 * 
+	 * @param value the "limit" parameter
+	 * @param backup the limit to use if the parameter is missing or invalid
+	 * @param max the most entries allowed on a page
+	 * @return the limit from 1 to the maximum
+	 */
+	static int limit(String value, int backup, int max) {
+		try {
+			return Math.max(1, Math.min(Integer.parseInt(value), max));
+		}
+		catch (NumberFormatException e) {
+			return backup;
+		}
+	}
+	
+	/**
+	 * Appends links to the first page, if this is not the first page, and to
+	 * the next page, if there is one.
+	 * 
+	 * @param builder the builder to append the links to
+	 * @param path the path of the pages, which may already have a query
+	 * @param after the cursor of this page, or {@code null} for the first page
+	 * @param next the cursor of the next page, or {@code null} if this is the
+	 *   last page
+	 * @param limit the most entries on a page
+	 */
+	static void links(StringBuilder builder, String path, String after, String next, int limit) {
+		String separator = path.indexOf('?') < 0 ? "?" : "&amp;";
+		
+		if (after != null) {
+			builder.append("<a href=\"").append(path).append(separator).append("limit=").append(limit).append("\">First Page</a>");
+		}
+		
+		if (after != null && next != null) {
+			builder.append("&ensp;|&ensp;");
+		}
+		
+		if (next != null) {
+			builder.append("<a href=\"").append(path).append(separator).append("after=").append(URLEncoder.encode(next, UTF_8));
+			builder.append("&amp;limit=").append(limit).append("\">Next Page</a>");
+		}
+	}
 }
\ No newline at end of file
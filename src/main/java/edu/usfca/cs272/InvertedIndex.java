@@ -1,18 +1,21 @@
 package edu.usfca.cs272;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 import java.io.IOException;
+import java.net.URLEncoder;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
-import java.util.Map.Entry;
 
 /**
  * Class responsible for storing information about data structure
@@ -32,12 +35,19 @@ public class InvertedIndex {
 	 */
 	private final TreeMap<String, Integer> counts;
 	
+	/**
+	 * Forward index from each location to the words found there, so that a
+	 * location can be removed without scanning every word in the index
+	 */
+	private final HashMap<String, HashSet<String>> forward;
+	
 	/**
 	 * Constructor that creates a new TreeMap
 	 */
 	public InvertedIndex() {
 		elements = new TreeMap<String, TreeMap<String, TreeSet<Integer>>>();
 		counts = new TreeMap<String, Integer>();
+		forward = new HashMap<String, HashSet<String>>();
 	}
 
 	/**
@@ -49,7 +59,11 @@ public class InvertedIndex {
 	 */
 	public void add(String word, String location, int index) {
 		elements.putIfAbsent(word, new TreeMap<>());
-		elements.get(word).putIfAbsent(location, new TreeSet<>());
+		
+		if (elements.get(word).putIfAbsent(location, new TreeSet<>()) == null) {
+			forward.putIfAbsent(location, new HashSet<>());
+			forward.get(location).add(word);
+		}
 		
 		if (elements.get(word).get(location).add(index)) {
 			counts.putIfAbsent(location, 0);
@@ -99,6 +113,50 @@ public class InvertedIndex {
 				this.counts.put(countMap.getKey(), countMap.getValue());
 			}
 		}
+		
+		for (var forwardMap : other.forward.entrySet()) {
+			this.forward.putIfAbsent(forwardMap.getKey(), new HashSet<>());
+			this.forward.get(forwardMap.getKey()).addAll(forwardMap.getValue());
+		}
+	}
+	
+	/**
+	 * Removes a location and all of its word positions from the index. Only the
+	 * words found at that location are visited.
+	 *
+	 * @param location the location to remove
+	 * @return {@code true} if the location was stored in the index
+	 */
+	public boolean removeLocation(String location) {
+		HashSet<String> words = forward.remove(location);
+		
+		if (words == null) {
+			return false;
+		}
+		
+		for (String word : words) {
+			TreeMap<String, TreeSet<Integer>> locations = elements.get(word);
+			locations.remove(location);
+			
+			if (locations.isEmpty()) {
+				elements.remove(word);
+			}
+		}
+		
+		counts.remove(location);
+		return true;
+	}
+	
+	/**
+	 * Replaces everything stored for a location with the contents of another
+	 * index, such as a local index built from a changed file or re-crawled page.
+	 *
+	 * @param other the index containing only the new contents of the location
+	 * @param location the location to replace
+	 */
+	public void replaceLocation(InvertedIndex other, String location) {
+		removeLocation(location);
+		addAll(other);
 	}
 	
 	/**
@@ -108,15 +166,7 @@ public class InvertedIndex {
 	 * @return list the list of result objects
 	 */
 	public ArrayList<Result> exactSearch(Set<String> queries) {
-		ArrayList<Result> list = new ArrayList<>();
-		
-		Map<String, Result> lookup = new HashMap<String, Result>();
-			
-		for (String stem : queries) {
-			if (elements.containsKey(stem)) {
-				addLocations(stem, lookup, list);
-			}
-		}
+		ArrayList<Result> list = collect(queries, true);
 
 		Collections.sort(list);
 
@@ -130,21 +180,40 @@ public class InvertedIndex {
 	 * @return list the list of result objects
 	 */
 	public ArrayList<Result> partialSearch(Set<String> queries) {
+		ArrayList<Result> list = collect(queries, false);
+
+		Collections.sort(list);
+
+		return list;
+	}
+	
+	/**
+	 * Finds the unsorted results of an exact or partial search.
+	 * 
+	 * @param queries the set of stems in a query line
+	 * @param exactSearch true if exact search or false for partial search
+	 * @return list the unsorted list of result objects
+	 */
+	private ArrayList<Result> collect(Set<String> queries, boolean exactSearch) {
 		ArrayList<Result> list = new ArrayList<>();
 		
 		Map<String, Result> lookup = new HashMap<String, Result>();
 			
 		for (String stem : queries) {
-			for (String word : elements.tailMap(stem).keySet()) {
-				if (!word.startsWith(stem)) {
-					break;
+			if (exactSearch) {
+				if (elements.containsKey(stem)) {
+					addLocations(stem, lookup, list);
+				}
+			} else {
+				for (String word : elements.tailMap(stem).keySet()) {
+					if (!word.startsWith(stem)) {
+						break;
+					}
+					addLocations(word, lookup, list);
 				}
-				addLocations(word, lookup, list);
 			}
 		}
 
-		Collections.sort(list);
-
 		return list;
 	}
 	
@@ -186,6 +255,42 @@ public class InvertedIndex {
 		return list;
 	}
 	
+	/**
+	 * Searches an exact query line or a partial query line, but only sorts the
+	 * results on one page. The best {@code offset + limit} results are kept in a
+	 * bounded heap while the rest are discarded, so a request for the first few
+	 * results does not sort every match.
+	 * 
+	 * @param queries the set of stems in a query line
+	 * @param exactSearch true if exact search or false for partial search
+	 * @param offset the number of best results to skip
+	 * @param limit the maximum number of results on the page
+	 * @param page the list to add the sorted results on the page to
+	 * @return the total number of results
+	 */
+	public int search(Set<String> queries, boolean exactSearch, int offset, int limit, List<Result> page) {
+		ArrayList<Result> list = collect(queries, exactSearch);
+		int wanted = (int) Math.min((long) Math.max(offset, 0) + Math.max(limit, 0), list.size());
+		
+		PriorityQueue<Result> best = new PriorityQueue<>(Math.max(wanted, 1), Collections.reverseOrder());
+		
+		for (Result result : list) {
+			if (best.size() < wanted) {
+				best.add(result);
+			} else if (wanted > 0 && result.compareTo(best.peek()) < 0) {
+				best.poll();
+				best.add(result);
+			}
+		}
+		
+		ArrayList<Result> sorted = new ArrayList<>(best);
+		Collections.sort(sorted);
+		
+		page.addAll(sorted.subList(Math.min(Math.max(offset, 0), sorted.size()), sorted.size()));
+		
+		return list.size();
+	}
+	
 	/**
 	 * Searches the locations for a partial match
 	 * 
@@ -207,6 +312,15 @@ public class InvertedIndex {
 		return list;
 	}
 	
+	/**
+	 * Returns an unmodifiable view of the locations stored in the index.
+	 *
+	 * @return an unmodifiable view of the locations stored in the index
+	 */
+	public Collection<String> getLocations() {
+		return Collections.unmodifiableSet(counts.keySet());
+	}
+	
 	/**
 	 * Returns an unmodifiable view of the words stored in the index.
 	 *
@@ -254,55 +368,126 @@ public class InvertedIndex {
 	}
 	
 	/**
-	 * Builds HTML to output
+	 * Builds HTML for one page of the index, listing each stem after the cursor
+	 * with the number of positions at each of its first locations. Stems with
+	 * more locations link to the rest of them, listed by
+	 * {@link #stemToWeb(StringBuilder, String, String, int)}, so a page never
+	 * holds more than the limit times the locations per stem.
 	 *
-	 * @return the built HTML
-	 * @throws IOException if an I/O error occurs
+	 * @param builder the builder to append the HTML to
+	 * @param after the last stem of the previous page, or {@code null} to start
+	 *   at the first stem
+	 * @param limit the most stems on the page
+	 * @param locations the most locations listed for each stem
+	 * @return the last stem on the page if more stems follow, or {@code null} if
+	 *   this is the last page
 	 */
-	public String toWeb() throws IOException {
-		StringBuilder builder = new StringBuilder();
+	public String toWeb(StringBuilder builder, String after, int limit, int locations) {
+		var stems = after == null ? elements : elements.tailMap(after, false);
+		int count = 0;
+		String last = null;
 		
-		Iterator<Entry<String, TreeMap<String, TreeSet<Integer>>>> iterator = elements.entrySet().iterator();
-		
-		while (iterator.hasNext()) {
-			var entry = iterator.next();
-			
-			Iterator<Entry<String, TreeSet<Integer>>> innerIterator = entry.getValue().entrySet().iterator();
+		for (var entry : stems.entrySet()) {
+			if (count == limit) {
+				return last;
+			}
 			
-			builder.append("<strong>Stem:</strong> "+entry.getKey()+"<br>");
+			builder.append("<strong>Stem:</strong> ").append(entry.getKey()).append("<br>");
+			String location = null;
+			int shown = 0;
 			
-			while (innerIterator.hasNext()) {
-				var innerEntry = innerIterator.next();
-				builder.append("<a href=\""+innerEntry.getKey()+"\">"+innerEntry.getKey()+"</a><strong> - ");
-				builder.append("Positions: </strong>"+innerEntry.getValue().size());
+			for (var innerEntry : entry.getValue().entrySet()) {
+				if (shown == locations) {
+					builder.append("<a href=\"/index?word=").append(URLEncoder.encode(entry.getKey(), UTF_8));
+					builder.append("&amp;after=").append(URLEncoder.encode(location, UTF_8)).append("\">");
+					builder.append("&hellip; and ").append(entry.getValue().size() - shown).append(" more locations</a><br>");
+					break;
+				}
+				
+				builder.append("<a href=\"").append(innerEntry.getKey()).append("\">").append(innerEntry.getKey()).append("</a><strong> - ");
+				builder.append("Positions: </strong>").append(innerEntry.getValue().size());
 				builder.append("<br>");
+				location = innerEntry.getKey();
+				shown++;
 			}
 			
 			builder.append("<br>");
+			last = entry.getKey();
+			count++;
 		}
 		
-		return builder.toString();
+		return null;
 	}
 	
 	/**
-	 * Builds HTML to output
+	 * Builds HTML for one page of the locations of a stem, listing each location
+	 * after the cursor with its number of positions.
 	 * 
-	 * @return the built HTML
-	 * @throws IOException if an I/O error occurs
+	 * @param builder the builder to append the HTML to
+	 * @param stem the stem to list the locations of
+	 * @param after the last location of the previous page, or {@code null} to
+	 *   start at the first location
+	 * @param limit the most locations on the page
+	 * @return the last location on the page if more locations follow, or
+	 *   {@code null} if this is the last page or the stem is not in the index
 	 */
-	public String wordCountToWeb() throws IOException {
-		StringBuilder builder = new StringBuilder();
+	public String stemToWeb(StringBuilder builder, String stem, String after, int limit) {
+		var stemLocations = elements.get(stem);
 		
-		Iterator<Entry<String, Integer>> iterator = counts.entrySet().iterator();
+		if (stemLocations == null) {
+			return null;
+		}
+		
+		var locations = after == null ? stemLocations : stemLocations.tailMap(after, false);
+		int count = 0;
+		String last = null;
+		
+		builder.append("<strong>Stem:</strong> ").append(stem).append("<br>");
 		
-		while (iterator.hasNext()) {
-			var entry = iterator.next();
-			builder.append("<a href=\""+entry.getKey()+"\">"+entry.getKey()+"</a>");
-			builder.append("<strong> - Word Count: </strong>"+Integer.toString(entry.getValue()));
+		for (var entry : locations.entrySet()) {
+			if (count == limit) {
+				return last;
+			}
+			
+			builder.append("<a href=\"").append(entry.getKey()).append("\">").append(entry.getKey()).append("</a><strong> - ");
+			builder.append("Positions: </strong>").append(entry.getValue().size());
 			builder.append("<br>");
+			last = entry.getKey();
+			count++;
 		}
 		
-		return builder.toString();
+		return null;
+	}
+	
+	/**
+	 * Builds HTML for one page of the word counts, listing each location after
+	 * the cursor with its word count.
+	 * 
+	 * @param builder the builder to append the HTML to
+	 * @param after the last location of the previous page, or {@code null} to
+	 *   start at the first location
+	 * @param limit the most locations on the page
+	 * @return the last location on the page if more locations follow, or
+	 *   {@code null} if this is the last page
+	 */
+	public String wordCountToWeb(StringBuilder builder, String after, int limit) {
+		var locations = after == null ? counts : counts.tailMap(after, false);
+		int count = 0;
+		String last = null;
+		
+		for (var entry : locations.entrySet()) {
+			if (count == limit) {
+				return last;
+			}
+			
+			builder.append("<a href=\"").append(entry.getKey()).append("\">").append(entry.getKey()).append("</a>");
+			builder.append("<strong> - Word Count: </strong>").append(entry.getValue());
+			builder.append("<br>");
+			last = entry.getKey();
+			count++;
+		}
+		
+		return null;
 	}
 	
 	/**
@@ -329,10 +514,10 @@ public class InvertedIndex {
 	 * Gets the word count for a location.
 	 *
 	 * @param location the location to lookup
-	 * @return the word count
+	 * @return the word count, or 0 if the location is not in the index
 	 */
 	public int getWordCount(String location) {
-		return counts.get(location);
+		return counts.getOrDefault(location, 0);
 	}
 	
 	/**
@@ -429,6 +614,9 @@ public class InvertedIndex {
 		/** The normalized text file path. */
 		private final String location;
 		
+		/** The word count of the location when the result was created */
+		private final int count;
+		
 		/** The word match count */
 		private int matches;
 		
@@ -440,6 +628,7 @@ public class InvertedIndex {
 		 */
 		public Result(String path) {
 			this.location = path;
+			this.count = counts.getOrDefault(path, 0);
 		}
 		
 		/**
@@ -457,7 +646,7 @@ public class InvertedIndex {
 		 * @return count the number of words in the path
 		 */
 		public int getCount() {
-			return counts.get(location);
+			return count;
 		}
 		
 		/**
@@ -485,7 +674,7 @@ public class InvertedIndex {
 		 */
 		private void update(String stem) {
 			this.matches += elements.get(stem).get(location).size();
-			this.score = Double.valueOf(matches) / counts.get(location);
+			this.score = Double.valueOf(matches) / count;
 		}
 		
 		@Override
@@ -1,7 +1,6 @@
 package edu.usfca.cs272;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
-import static opennlp.tools.stemmer.snowball.SnowballStemmer.ALGORITHM.ENGLISH;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -10,7 +9,6 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 
 import opennlp.tools.stemmer.Stemmer;
-import opennlp.tools.stemmer.snowball.SnowballStemmer;
 
 /**
  * This class demonstrates how to use a {@link DirectoryStream} to create a
@@ -66,7 +64,7 @@ public class InvertedIndexBuilder {
 	public static void parseFile(Path start, InvertedIndex elements) throws IOException {
 		String location = start.toString();
 		
-		Stemmer stemmer = new SnowballStemmer(ENGLISH);
+		Stemmer stemmer = StemmingService.stemmer();
 		
 		try (BufferedReader reader = Files.newBufferedReader(start, UTF_8)) {
 			String line = null;
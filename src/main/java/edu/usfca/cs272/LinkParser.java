@@ -5,8 +5,6 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.ArrayList;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Parses URL links from the anchor tags within HTML text.
@@ -29,37 +27,137 @@ public class LinkParser {
 	 * @param html the raw html associated with the base url
 	 * @return list of all valid http(s) links in the order they were found
 	 *
-	 * @see Pattern#compile(String)
-	 * @see Matcher#find()
-	 * @see Matcher#group(int)
+	 * @see HtmlScanner
 	 * @see #normalize(URL)
 	 * @see #isHttp(URL)
 	 */
 	public static ArrayList<URL> getValidLinks(URL base, String html) {
 		ArrayList<URL> links = new ArrayList<URL>();
-		String regex = "(?i)<a[^>]*?(?=href)href\\s*=\\s*\"([^\"]*)\"[\\s\\S]*?>";
-		Pattern pattern = Pattern.compile(regex);
-		Matcher matcher = pattern.matcher(html);
-		
-		while (matcher.find()) {
-			try {
-				String group = matcher.group(matcher.groupCount());
-
-				URL absolute = new URL(base, group);
-				
-				if (isHttp(absolute)) {
-					absolute = normalize(absolute);
-					links.add(absolute);
+		int start = 0;
+		int end = -1;
+		int failed = -1;
+		int open;
+
+		while ((open = html.indexOf('<', start)) >= 0) {
+			start = open + 1;
+
+			if (start >= html.length() || (html.charAt(start) != 'a' && html.charAt(start) != 'A')) {
+				continue;
+			}
+
+			if (end < start) {
+				end = html.indexOf('>', start);
+
+				if (end < 0) {
+					break;
 				}
-			} catch (MalformedURLException e) {
-				System.out.println("There was a malformed URL.");
-			} catch (URISyntaxException e) {
-				System.out.println("There was a URI syntax problem.");
 			}
+
+			if (end == failed) {
+				// an earlier tag with the same end already tried every href before it
+				continue;
+			}
+
+			int[] value = findHref(html, start + 1, end);
+
+			if (value == null) {
+				failed = end;
+				continue;
+			}
+
+			int close = html.indexOf('>', value[1] + 1);
+
+			if (close < 0) {
+				break;
+			}
+
+			URL absolute = toValidLink(base, html.substring(value[0], value[1]));
+
+			if (absolute != null) {
+				links.add(absolute);
+			}
+
+			start = close + 1;
 		}
 		return links;
 	}
 
+	/**
+	 * Finds the double-quoted value of the first href attribute that appears
+	 * before the end of the tag, trying each "href" in turn until one is
+	 * followed by an equals sign and a quoted value.
+	 *
+	 * @param html the raw html
+	 * @param from the index just after the tag name
+	 * @param end the index of the first closing bracket after the tag name
+	 * @return the start and end index of the value, or {@code null} if not found
+	 */
+	private static int[] findHref(String html, int from, int end) {
+		for (int i = from; i + 4 <= end; i++) {
+			if (!html.regionMatches(true, i, "href", 0, 4)) {
+				continue;
+			}
+
+			int j = skipSpace(html, i + 4);
+
+			if (j >= html.length() || html.charAt(j) != '=') {
+				continue;
+			}
+
+			j = skipSpace(html, j + 1);
+
+			if (j >= html.length() || html.charAt(j) != '"') {
+				continue;
+			}
+
+			int quote = html.indexOf('"', j + 1);
+
+			// without a closing quote no later href can have one either
+			return quote < 0 ? null : new int[] { j + 1, quote };
+		}
+
+		return null;
+	}
+
+	/**
+	 * Skips any whitespace.
+	 *
+	 * @param html the raw html
+	 * @param i the index to start from
+	 * @return the index of the first character that is not whitespace
+	 */
+	private static int skipSpace(String html, int i) {
+		while (i < html.length() && HtmlCleaner.isSpace(html.charAt(i))) {
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * Converts a single href value into an absolute, normalized HTTP(S) link.
+	 *
+	 * @param base the base url used to convert relative links to absolute
+	 * @param href the value of the href attribute
+	 * @return the normalized link, or {@code null} if the link is malformed or
+	 *         does not use the HTTP/S protocol
+	 *
+	 * @see #getValidLinks(URL, String)
+	 */
+	public static URL toValidLink(URL base, String href) {
+		try {
+			URL absolute = new URL(base, href);
+
+			if (isHttp(absolute)) {
+				return normalize(absolute);
+			}
+		} catch (MalformedURLException e) {
+			System.out.println("There was a malformed URL.");
+		} catch (URISyntaxException e) {
+			System.out.println("There was a URI syntax problem.");
+		}
+		return null;
+	}
+
 	/**
 	 * Removes the fragment component of a URL (if present), and properly encodes
 	 * the query string (if necessary).
@@ -81,6 +179,6 @@ public class LinkParser {
 	 * @return true if the URL uses the HTTP or HTTPS protocol
 	 */
 	public static boolean isHttp(URL url) {
-		return url.getProtocol().matches("(?i)https?");
+		return url.getProtocol().equalsIgnoreCase("http") || url.getProtocol().equalsIgnoreCase("https");
 	}
 }
\ No newline at end of file
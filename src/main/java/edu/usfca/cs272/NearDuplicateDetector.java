@@ -0,0 +1,306 @@
+package edu.usfca.cs272;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Detects crawled pages that are nearly identical to a page already indexed,
+ * such as print views or the same page under different query strings. Each
+ * page is reduced to a 64-bit SimHash of its overlapping three-word shingles,
+ * and two pages are near duplicates if their SimHashes differ in at most a
+ * few bits.
+ *
+ * To avoid comparing every pair of pages, the SimHash is split into four
+ * 16-bit bands and pages are only compared with pages sharing at least one
+ * band. Two SimHashes that differ in at most three bits always share a band,
+ * so no near duplicate within the threshold is missed.
+ *
+ * @author Colin Bindi
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2022
+ */
+public class NearDuplicateDetector {
+	/** The default maximum number of differing bits between near duplicates. */
+	public static final int DEFAULT_THRESHOLD = 3;
+
+	/** The number of words in each shingle. */
+	public static final int SHINGLE_SIZE = 3;
+
+	/**
+	 * The fewest shingles a page needs before it is compared with others. The
+	 * SimHash of a short page changes too much with a single word to be useful.
+	 */
+	public static final int MIN_SHINGLES = 50;
+
+	/** The number of bands the SimHash is split into. */
+	private static final int BANDS = 4;
+
+	/** The maximum number of differing bits between near duplicates. */
+	private final int threshold;
+
+	/** Map of each band number and value to the pages with that band. */
+	private final Map<Integer, List<Entry>> bands;
+
+	/** Map of each remembered page to its SimHash. */
+	private final Map<String, Long> signatures;
+
+	/** The number of pages skipped as near duplicates. */
+	private final AtomicLong duplicates;
+
+	/** The number of characters of html skipped. */
+	private final AtomicLong characters;
+
+	/** The number of words not indexed. */
+	private final AtomicLong words;
+
+	/**
+	 * Initializes an empty detector with the default threshold.
+	 */
+	public NearDuplicateDetector() {
+		this(DEFAULT_THRESHOLD);
+	}
+
+	/**
+	 * Initializes an empty detector.
+	 *
+	 * @param threshold the maximum number of differing bits between near
+	 *   duplicates, from 0 to 3
+	 * @throws IllegalArgumentException if the threshold is out of range
+	 */
+	public NearDuplicateDetector(int threshold) {
+		if (threshold < 0 || threshold >= BANDS) {
+			throw new IllegalArgumentException("The threshold must be between 0 and " + (BANDS - 1) + ".");
+		}
+
+		this.threshold = threshold;
+		this.bands = new HashMap<>();
+		this.signatures = new HashMap<>();
+		this.duplicates = new AtomicLong();
+		this.characters = new AtomicLong();
+		this.words = new AtomicLong();
+	}
+
+	/**
+	 * Finds an earlier page that is a near duplicate of this one. If there is
+	 * none, the page is remembered so later pages are compared with it; if there
+	 * is one, the page is counted as skipped. A page is never a duplicate of
+	 * itself, so a page crawled again is not skipped, and its new SimHash
+	 * replaces the one remembered before.
+	 *
+	 * @param location the normalized link of the page
+	 * @param simHash the SimHash of the page
+	 * @param length the number of characters of html on the page
+	 * @param count the number of words on the page
+	 * @return the link of the earlier page, or {@code null} if the page is not a
+	 *   near duplicate
+	 *
+	 * @see SimHash
+	 */
+	public synchronized String check(String location, SimHash simHash, int length, int count) {
+		remove(location);
+
+		if (simHash.size() < MIN_SHINGLES) {
+			return null;
+		}
+
+		long value = simHash.value();
+
+		for (int band = 0; band < BANDS; band++) {
+			for (Entry entry : bands.getOrDefault(key(value, band), List.of())) {
+				if (Long.bitCount(entry.value ^ value) <= threshold && !entry.location.equals(location)) {
+					duplicates.incrementAndGet();
+					characters.addAndGet(length);
+					words.addAndGet(count);
+					return entry.location;
+				}
+			}
+		}
+
+		Entry entry = new Entry(location, value);
+
+		for (int band = 0; band < BANDS; band++) {
+			bands.computeIfAbsent(key(value, band), key -> new ArrayList<>()).add(entry);
+		}
+
+		signatures.put(location, value);
+		return null;
+	}
+
+	/**
+	 * Forgets a page, so later pages are no longer compared with it.
+	 *
+	 * @param location the normalized link of the page
+	 */
+	public synchronized void remove(String location) {
+		Long value = signatures.remove(location);
+
+		if (value == null) {
+			return;
+		}
+
+		for (int band = 0; band < BANDS; band++) {
+			int key = key(value, band);
+			List<Entry> entries = bands.get(key);
+			entries.removeIf(entry -> entry.location.equals(location));
+
+			if (entries.isEmpty()) {
+				bands.remove(key);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of pages skipped as near duplicates.
+	 *
+	 * @return the number of pages skipped
+	 */
+	public long getDuplicates() {
+		return duplicates.get();
+	}
+
+	/**
+	 * Returns the number of characters of html on the pages skipped.
+	 *
+	 * @return the number of characters skipped
+	 */
+	public long getCharacters() {
+		return characters.get();
+	}
+
+	/**
+	 * Returns the number of words on the pages skipped, which were not added to
+	 * the index.
+	 *
+	 * @return the number of words not indexed
+	 */
+	public long getWords() {
+		return words.get();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Skipped %d near-duplicate pages (%d characters, %d words).", getDuplicates(), getCharacters(), getWords());
+	}
+
+	/**
+	 * Combines a band number and the bits of that band into a key.
+	 *
+	 * @param value the SimHash
+	 * @param band the band number
+	 * @return the key
+	 */
+	private static int key(long value, int band) {
+		return band << 16 | (int) (value >>> (band * 16)) & 0xFFFF;
+	}
+
+	/**
+	 * A page remembered by the detector.
+	 */
+	private static class Entry {
+		/** The normalized link of the page. */
+		private final String location;
+
+		/** The SimHash of the page. */
+		private final long value;
+
+		/**
+		 * Initializes an entry.
+		 *
+		 * @param location the normalized link of the page
+		 * @param value the SimHash of the page
+		 */
+		public Entry(String location, long value) {
+			this.location = location;
+			this.value = value;
+		}
+	}
+
+	/**
+	 * Computes the SimHash of a page one word at a time. Each shingle of
+	 * consecutive words is hashed to 64 bits, and each bit of the result is set
+	 * if more shingles have that bit set than not. Not thread-safe; use one per
+	 * page.
+	 */
+	public static class SimHash {
+		/** The number of shingles with each bit set, minus the number without. */
+		private final int[] votes;
+
+		/** The hashes of the most recent words, oldest first. */
+		private final long[] recent;
+
+		/** The number of words added. */
+		private int count;
+
+		/**
+		 * Initializes an empty SimHash.
+		 */
+		public SimHash() {
+			this.votes = new int[64];
+			this.recent = new long[SHINGLE_SIZE];
+			this.count = 0;
+		}
+
+		/**
+		 * Adds the next word on the page.
+		 *
+		 * @param word the word, usually stemmed
+		 */
+		public void add(String word) {
+			System.arraycopy(recent, 1, recent, 0, SHINGLE_SIZE - 1);
+			recent[SHINGLE_SIZE - 1] = UrlSeenSet.fingerprint(word);
+			count++;
+
+			if (count < SHINGLE_SIZE) {
+				return;
+			}
+
+			long hash = 0;
+
+			for (long part : recent) {
+				hash = UrlSeenSet.mix(Long.rotateLeft(hash, 21) ^ part);
+			}
+
+			for (int bit = 0; bit < 64; bit++) {
+				votes[bit] += (hash >>> bit & 1) == 1 ? 1 : -1;
+			}
+		}
+
+		/**
+		 * Returns the number of shingles added.
+		 *
+		 * @return the number of shingles
+		 */
+		public int size() {
+			return Math.max(0, count - SHINGLE_SIZE + 1);
+		}
+
+		/**
+		 * Returns the number of words added.
+		 *
+		 * @return the number of words
+		 */
+		public int words() {
+			return count;
+		}
+
+		/**
+		 * Returns the SimHash of the words added so far.
+		 *
+		 * @return the SimHash
+		 */
+		public long value() {
+			long value = 0;
+
+			for (int bit = 0; bit < 64; bit++) {
+				if (votes[bit] > 0) {
+					value |= 1L << bit;
+				}
+			}
+
+			return value;
+		}
+	}
+}
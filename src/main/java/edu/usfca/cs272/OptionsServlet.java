@@ -1,19 +1,14 @@
 package edu.usfca.cs272;
 
-import static java.nio.charset.StandardCharsets.UTF_8;
-
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
 
-import org.apache.commons.text.StringSubstitutor;
 
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServlet;
@@ -91,7 +86,6 @@ public class OptionsServlet extends HttpServlet {
 	 * If a URL was included as a parameter in the GET request, safely fetch and
 	 * display the HTTP headers of that URL.
 	 */
-	@SuppressWarnings("unchecked")
 	@Override
 	protected void doGet(HttpServletRequest request,
 			HttpServletResponse response) throws ServletException, IOException {
@@ -109,11 +103,7 @@ public class OptionsServlet extends HttpServlet {
 			lastVisit = (LocalDateTime) session.getAttribute("time");
 		}
 		
-		ArrayList<String> inputList = (ArrayList<String>) session.getAttribute("input");
-		
-		if (inputList == null) {
-			inputList = new ArrayList<>();
-		}
+		SearchHistory history = SearchHistory.get(session);
 		
 		PrintWriter out = response.getWriter();
 		
@@ -125,16 +115,15 @@ public class OptionsServlet extends HttpServlet {
 		
 		values.put("stats", "<br>Server Uptime: "+String.format("%02d:%02d:%02d", searchDuration.toHours(), searchDuration.toMinutesPart(), searchDuration.toSecondsPart())+
 				"&ensp;|&ensp;Words Stored: "+index.size()+
-				"&ensp;|&ensp;Queries Conducted: "+(inputList != null ? Integer.toString(inputList.size()) : "0")+
+				"&ensp;|&ensp;Queries Conducted: "+history.total()+
 				"&ensp;|&ensp;Last Visit: "+(lastVisit == null ? "" : lastVisit.format(DateTimeFormatter.ofPattern("EEEE, MMMM dd, yyyy 'at' HH:mm a"))));
 		
-		out.print(new StringSubstitutor(values).replace(Files.readString(OPTIONS, UTF_8)));
+		HtmlTemplate.get(OPTIONS).render(out, values);
 		
 		response.setContentType("text/html;charset=UTF-8");
 		response.setStatus(HttpServletResponse.SC_OK);
 	}
 	
-	@SuppressWarnings("unchecked")
 	@Override
 	protected void doPost(HttpServletRequest request, 
 			HttpServletResponse response) throws ServletException, IOException {
@@ -152,11 +141,7 @@ public class OptionsServlet extends HttpServlet {
 			lastVisit = (LocalDateTime) session.getAttribute("time");
 		}
 		
-		ArrayList<String> inputList = (ArrayList<String>) session.getAttribute("input");
-		
-		if (inputList == null) {
-			inputList = new ArrayList<>();
-		}
+		SearchHistory history = SearchHistory.get(session);
 		
 		PrintWriter out = response.getWriter();
 		
@@ -168,74 +153,72 @@ public class OptionsServlet extends HttpServlet {
 		
 		values.put("stats", "<br>Server Uptime: "+String.format("%02d:%02d:%02d", searchDuration.toHours(), searchDuration.toMinutesPart(), searchDuration.toSecondsPart())+
 				"&ensp;|&ensp;Words Stored: "+index.size()+
-				"&ensp;|&ensp;Queries Conducted: "+(inputList != null ? Integer.toString(inputList.size()) : "0")+
+				"&ensp;|&ensp;Queries Conducted: "+history.total()+
 				"&ensp;|&ensp;Last Visit: "+(lastVisit == null ? "" : lastVisit.format(DateTimeFormatter.ofPattern("EEEE, MMMM dd, yyyy 'at' HH:mm a"))));
 		
 		if (request.getParameter("options") != null) {
-			out.print(Files.readString(OPTIONS, UTF_8));
+			HtmlTemplate.get(OPTIONS).render(out);
 		}
 		
 		if (request.getParameter("search") != null) {
-			out.print(new StringSubstitutor(values).replace(Files.readString(RESULTS, UTF_8)));
+			HtmlTemplate.get(RESULTS).render(out, values);
 		}
 		
 		if (request.getParameter("private") != null) {
 			values.put("stats", "<br>Server Uptime: "+String.format("%02d:%02d:%02d", searchDuration.toHours(), searchDuration.toMinutesPart(), searchDuration.toSecondsPart())+
 					"&ensp;|&ensp;Words Stored: "+index.size()+
-					"&ensp;|&ensp;Queries Conducted: "+(inputList != null ? Integer.toString(inputList.size()) : "0"));
+					"&ensp;|&ensp;Queries Conducted: "+history.total());
 			
-			out.print(new StringSubstitutor(values).replace(Files.readString(PRIVATE, UTF_8)));
+			HtmlTemplate.get(PRIVATE).render(out, values);
 		}
 		
 		if (request.getParameter("exact") != null) {
-			out.print(new StringSubstitutor(values).replace(Files.readString(EXACT, UTF_8)));
+			HtmlTemplate.get(EXACT).render(out, values);
 		}
 		
 		if (request.getParameter("reverse") != null) {
-			out.print(new StringSubstitutor(values).replace(Files.readString(REVERSE, UTF_8)));
+			HtmlTemplate.get(REVERSE).render(out, values);
 		}
 		
 		if (request.getParameter("quick") != null) {
-			out.print(new StringSubstitutor(values).replace(Files.readString(QUICK, UTF_8)));
+			HtmlTemplate.get(QUICK).render(out, values);
 		}
 		
 		if (request.getParameter("history") != null) {
 			StringBuilder builder = new StringBuilder();
 			
-			if (inputList != null && !inputList.isEmpty()) {
-				int i = 1;
-				for (String search : inputList) {
-					builder.append("<strong>"+i+".</strong> "+search+"<br>");
-					i++;
-				}
+			int i = 1;
+			for (String search : history.recent()) {
+				builder.append("<strong>"+i+".</strong> "+search+"<br>");
+				i++;
 			}
 			
 			values.put("history", builder.toString());
 			
-			out.print(new StringSubstitutor(values).replace(Files.readString(HISTORY, UTF_8)));
+			HtmlTemplate.get(HISTORY).render(out, values);
 		}
 		
 		if (request.getParameter("new") != null) {
 			values.put("build", "");
-			out.print(new StringSubstitutor(values).replace(Files.readString(SEED, UTF_8)));
+			HtmlTemplate.get(SEED).render(out, values);
 		}
 		
 		if (request.getParameter("index") != null) {
-			values.put("index", index.toWeb());
-			out.print(new StringSubstitutor(values).replace(Files.readString(INDEX, UTF_8)));
+			values.put("index", IndexServlet.browse(index, null, IndexServlet.DEFAULT_LIMIT));
+			HtmlTemplate.get(INDEX).render(out, values);
 		}
 		
 		if (request.getParameter("location") != null) {
-			values.put("counts", index.wordCountToWeb());
-			out.print(new StringSubstitutor(values).replace(Files.readString(COUNTS, UTF_8)));
+			values.put("counts", CountServlet.browse(index, null, CountServlet.DEFAULT_LIMIT));
+			HtmlTemplate.get(COUNTS).render(out, values);
 		}
 		
 		if (request.getParameter("reset") != null) {
-			out.print(new StringSubstitutor(values).replace(Files.readString(RESET, UTF_8)));
+			HtmlTemplate.get(RESET).render(out, values);
 		}
 		
 		if (request.getParameter("shutdown") != null) {
-			out.print(new StringSubstitutor(values).replace(Files.readString(SHUTDOWN, UTF_8)));
+			HtmlTemplate.get(SHUTDOWN).render(out, values);
 		}
 		
 		out.flush();
@@ -0,0 +1,188 @@
+package edu.usfca.cs272;
+
+import java.net.URL;
+import java.util.List;
+
+/**
+ * Contains data for each page crawled
+ *
+ * @author Colin Bindi
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2022
+ */
+public class Page {
+	/** The normalized text file path. */
+	private final String location;
+	
+	/** The snippet. */
+	private volatile String snippet;
+	
+	/** The title. */
+	private volatile String title;
+	
+	/** The length. */
+	private final String length;
+	
+	/** The timestamp. */
+	private final String timestamp;
+	
+	/** The "ETag" response header, or {@code null} if there was none. */
+	private volatile String etag;
+	
+	/** The "Last-Modified" response header, or {@code null} if there was none. */
+	private volatile String lastModified;
+	
+	/** The fingerprint of the html. */
+	private volatile long hash;
+	
+	/** The links found on the page, or {@code null} if unknown. */
+	private volatile List<URL> links;
+	
+	/**
+	 * Data from each page is stored
+	 * 
+	 * @param location the location
+	 * @param snippet the snippet
+	 * @param title the title
+	 * @param length the length
+	 * @param timestamp the timestamp
+	 */
+	public Page(String location, String snippet, String title, String length, String timestamp) {
+		this.location = location;
+		this.snippet = snippet;
+		this.title = title;
+		this.length = length;
+		this.timestamp = timestamp;
+	}
+	
+	/**
+	 * Gets the location
+	 * 
+	 * @return location the location
+	 */
+	public String getLocation() {
+		return location;
+	}
+	
+	/**
+	 * Gets the snippet
+	 * 
+	 * @return snippet the snippet
+	 */
+	public String getSnippet() {
+		return snippet;
+	}
+	
+	/**
+	 * Gets the title
+	 * 
+	 * @return title the title
+	 */
+	public String getTitle() {
+		return title;
+	}
+	
+	/**
+	 * Sets the snippet
+	 * @param snippet the snippet
+	 */
+	public void setSnippet(String snippet) {
+		this.snippet = snippet;
+	}
+	
+	/**
+	 * Sets the title
+	 * @param title the title
+	 */
+	public void setTitle(String title) {
+		this.title = title;
+	}
+	
+	/**
+	 * Gets the length
+	 * 
+	 * @return length the length
+	 */
+	public String getLength() {
+		return length;
+	}
+	
+	/**
+	 * Gets the timestamp
+	 * 
+	 * @return timestamp the timestamp
+	 */
+	public String getTimeStamp() {
+		return timestamp;
+	}
+	
+	/**
+	 * Gets the "ETag" response header
+	 * 
+	 * @return the etag or {@code null} if there was none
+	 */
+	public String getEtag() {
+		return etag;
+	}
+	
+	/**
+	 * Sets the "ETag" response header
+	 * @param etag the etag
+	 */
+	public void setEtag(String etag) {
+		this.etag = etag;
+	}
+	
+	/**
+	 * Gets the "Last-Modified" response header
+	 * 
+	 * @return the last modified date or {@code null} if there was none
+	 */
+	public String getLastModified() {
+		return lastModified;
+	}
+	
+	/**
+	 * Sets the "Last-Modified" response header
+	 * @param lastModified the last modified date
+	 */
+	public void setLastModified(String lastModified) {
+		this.lastModified = lastModified;
+	}
+	
+	/**
+	 * Gets the fingerprint of the html
+	 * 
+	 * @return the fingerprint
+	 * 
+	 * @see UrlSeenSet#fingerprint(String)
+	 */
+	public long getHash() {
+		return hash;
+	}
+	
+	/**
+	 * Sets the fingerprint of the html
+	 * @param hash the fingerprint
+	 */
+	public void setHash(long hash) {
+		this.hash = hash;
+	}
+	
+	/**
+	 * Gets the links found on the page
+	 * 
+	 * @return the links or {@code null} if unknown
+	 */
+	public List<URL> getLinks() {
+		return links;
+	}
+	
+	/**
+	 * Sets the links found on the page
+	 * @param links the links
+	 */
+	public void setLinks(List<URL> links) {
+		this.links = links;
+	}
+}
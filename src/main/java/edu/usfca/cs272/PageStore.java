@@ -0,0 +1,211 @@
+package edu.usfca.cs272;
+
+import java.net.URL;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A concurrent store of the pages crawled, keyed by their normalized link.
+ * Pages can be read and written from any number of threads without locking.
+ *
+ * The store is bounded by both the number of pages and their approximate size
+ * in memory. When either bound is passed, the pages stored longest ago are
+ * removed first. Their words stay in the index and they are still found by
+ * searches, but their results are shown by link alone, without a title,
+ * snippet, length, or time stamp.
+ *
+ * @author Colin Bindi
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2022
+ */
+public class PageStore {
+	/** The default maximum number of pages. */
+	public static final int DEFAULT_MAX_PAGES = 100000;
+
+	/** The default maximum approximate size of the pages in bytes. */
+	public static final long DEFAULT_MAX_BYTES = 64 * 1024 * 1024;
+
+	/** The store used by the crawlers and servlets. */
+	private static volatile PageStore shared = new PageStore(DEFAULT_MAX_PAGES, DEFAULT_MAX_BYTES);
+
+	/** The maximum number of pages. */
+	private final int maxPages;
+
+	/** The maximum approximate size of the pages in bytes. */
+	private final long maxBytes;
+
+	/** Map of each normalized link to its page. */
+	private final Map<String, Page> pages;
+
+	/** The pages in the order they were stored, including some no longer stored. */
+	private final Queue<Page> order;
+
+	/** The number of pages in the order queue. */
+	private final AtomicInteger queued;
+
+	/** The approximate size of the pages stored in bytes. */
+	private final AtomicLong bytes;
+
+	/**
+	 * Initializes an empty store.
+	 *
+	 * @param maxPages the maximum number of pages
+	 * @param maxBytes the maximum approximate size of the pages in bytes
+	 */
+	public PageStore(int maxPages, long maxBytes) {
+		this.maxPages = Math.max(maxPages, 1);
+		this.maxBytes = Math.max(maxBytes, 1);
+		this.pages = new ConcurrentHashMap<>();
+		this.order = new ConcurrentLinkedQueue<>();
+		this.queued = new AtomicInteger();
+		this.bytes = new AtomicLong();
+	}
+
+	/**
+	 * Gets the store used by the crawlers and servlets.
+	 *
+	 * @return the shared store
+	 */
+	public static PageStore getShared() {
+		return shared;
+	}
+
+	/**
+	 * Replaces the store used by the crawlers and servlets, for example to use
+	 * different bounds.
+	 *
+	 * @param store the new shared store
+	 */
+	public static void setShared(PageStore store) {
+		shared = store;
+	}
+
+	/**
+	 * Gets a page.
+	 *
+	 * @param location the normalized link
+	 * @return the page or {@code null} if it is not stored
+	 */
+	public Page get(String location) {
+		return pages.get(location);
+	}
+
+	/**
+	 * Stores a page, replacing any page with the same link, then removes the
+	 * oldest pages if the store is over its bounds.
+	 *
+	 * @param page the page
+	 */
+	public void put(Page page) {
+		Page previous = pages.put(page.getLocation(), page);
+		bytes.addAndGet(size(page) - (previous == null ? 0 : size(previous)));
+
+		order.offer(page);
+
+		if (queued.incrementAndGet() > 2 * Math.max(pages.size(), 16)) {
+			compact();
+		}
+
+		while (pages.size() > maxPages || bytes.get() > maxBytes) {
+			Page oldest = order.poll();
+
+			if (oldest == null) {
+				break;
+			}
+
+			queued.decrementAndGet();
+
+			if (pages.remove(oldest.getLocation(), oldest)) {
+				bytes.addAndGet(-size(oldest));
+			}
+		}
+	}
+
+	/**
+	 * Removes a page.
+	 *
+	 * @param location the normalized link
+	 * @return the removed page or {@code null} if it was not stored
+	 */
+	public Page remove(String location) {
+		Page removed = pages.remove(location);
+
+		if (removed != null) {
+			bytes.addAndGet(-size(removed));
+		}
+
+		return removed;
+	}
+
+	/**
+	 * Returns an unmodifiable view of the pages stored, which reflects later
+	 * changes and can be iterated while pages are stored.
+	 *
+	 * @return the pages
+	 */
+	public Collection<Page> values() {
+		return Collections.unmodifiableCollection(pages.values());
+	}
+
+	/**
+	 * Returns the number of pages stored.
+	 *
+	 * @return the number of pages
+	 */
+	public int size() {
+		return pages.size();
+	}
+
+	/**
+	 * Returns the approximate size of the pages stored.
+	 *
+	 * @return the size in bytes
+	 */
+	public long bytes() {
+		return bytes.get();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d pages (about %d bytes)", size(), bytes());
+	}
+
+	/**
+	 * Drops the pages no longer stored from the order queue, so replaced and
+	 * removed pages do not accumulate there.
+	 */
+	private synchronized void compact() {
+		order.removeIf(page -> pages.get(page.getLocation()) != page);
+		queued.set(order.size());
+	}
+
+	/**
+	 * Estimates the memory used by a page: its strings at two bytes per
+	 * character, its links at a rough average, and a fixed overhead.
+	 *
+	 * @param page the page
+	 * @return the approximate size in bytes
+	 */
+	private static long size(Page page) {
+		long size = 128;
+
+		for (String field : new String[] { page.getLocation(), page.getSnippet(), page.getTitle(), page.getLength(),
+				page.getTimeStamp(), page.getEtag(), page.getLastModified() }) {
+			size += field == null ? 0 : 40 + 2L * field.length();
+		}
+
+		if (page.getLinks() != null) {
+			for (URL link : page.getLinks()) {
+				size += 200 + 2L * link.toString().length();
+			}
+		}
+
+		return size;
+	}
+}
@@ -1,23 +1,16 @@
 package edu.usfca.cs272;
 
-import static java.nio.charset.StandardCharsets.UTF_8;
-
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Set;
-import java.util.TreeMap;
-import java.util.TreeSet;
 
-import org.apache.commons.text.StringSubstitutor;
+import org.apache.commons.text.StringEscapeUtils;
+
 
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServlet;
@@ -26,7 +19,11 @@ import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
 
 /**
- * Servlet to GET handle requests to /popular.
+ * Servlet to GET handle requests to /popular. Shows the most popular searches
+ * of the session and the queries trending across every session.
+ *
+ * @see SearchHistory
+ * @see TrendingQueries
  */
 public class PopularServlet extends HttpServlet {
 	/** ID used for serialization, which we are not using. */
@@ -69,7 +66,6 @@ public class PopularServlet extends HttpServlet {
 	 * If a URL was included as a parameter in the GET request, safely fetch and
 	 * display the HTTP headers of that URL.
 	 */
-	@SuppressWarnings("unchecked")
 	@Override
 	protected void doGet(HttpServletRequest request,
 			HttpServletResponse response) throws ServletException, IOException {
@@ -91,69 +87,32 @@ public class PopularServlet extends HttpServlet {
 			
 		StringBuilder builder = new StringBuilder();
 		
-		Map<Integer, Set<String>> map = new TreeMap<>(Collections.reverseOrder());
-		
-		ArrayList<String> inputList = (ArrayList<String>) session.getAttribute("input");
+		SearchHistory history = SearchHistory.get(session);
 		
-		if (inputList == null) {
-			inputList = new ArrayList<>();
-		}
-		
-		ArrayList<String> list = new ArrayList<String>();
-		list.addAll(inputList);
-		
-		if (list != null && !list.isEmpty()) {
-			for (String str : list) {
-				if (str.contains(" - ")) {
-					String[] split = str.split(" - ");
-					if (split[1] != null) {
-						Collections.replaceAll(list, str, split[1]);
-					} else {
-						Collections.replaceAll(list, str, "");
-					}
-				}
-			}
-			
-		    for (String str : list) {
-		    	if (map.get(Collections.frequency(list, str)) == null) {
-		    		map.put(Collections.frequency(list, str), new TreeSet<>());
-		    	}
-		    	map.get(Collections.frequency(list, str)).add(str);
-		    }
-		    
-		    int i = 1;
-	    	for (var entry : map.entrySet()) {
-	    		if (i > 5) {
-	    			break;
-	    		}
-		    	for (String str : entry.getValue()) {
-		    		if (i > 5) {
-		    			break;
-		    		}
-		    		builder.append("<strong>"+i+".</strong> "+str+"<br>");
-		    		i++;
-		    	}
-	    	}
+		int i = 1;
+		for (String query : history.popular(5)) {
+			builder.append("<strong>"+i+".</strong> "+query+"<br>");
+			i++;
 		}
 		
 		Map<String, String> values = new HashMap<>();
 		
 		values.put("pop", builder.toString());
+		values.put("trending", trending(5));
 		
 		Duration searchDuration = Duration.between(WebServer.serverUptime(), LocalDateTime.now());
 		
 		values.put("stats", "<br>Server Uptime: "+String.format("%02d:%02d:%02d", searchDuration.toHours(), searchDuration.toMinutesPart(), searchDuration.toSecondsPart())+
 				"&ensp;|&ensp;Words Stored: "+index.size()+
-				"&ensp;|&ensp;Queries Conducted: "+(inputList != null ? Integer.toString(inputList.size()) : "0")+
+				"&ensp;|&ensp;Queries Conducted: "+history.total()+
 				"&ensp;|&ensp;Last Visit: "+(lastVisit == null ? "" : lastVisit.format(DateTimeFormatter.ofPattern("EEEE, MMMM dd, yyyy 'at' HH:mm a"))));
 		
-		out.print(new StringSubstitutor(values).replace(Files.readString(POPULAR, UTF_8)));
+		HtmlTemplate.get(POPULAR).render(out, values);
 
 		response.setContentType("text/html;charset=UTF-8");
 		response.setStatus(HttpServletResponse.SC_OK);
 	}
 	
-	@SuppressWarnings("unchecked")
 	@Override
 	protected void doPost(HttpServletRequest request, 
 			HttpServletResponse response) throws ServletException, IOException {
@@ -171,11 +130,7 @@ public class PopularServlet extends HttpServlet {
 			lastVisit = (LocalDateTime) session.getAttribute("time");
 		}
 		
-		ArrayList<String> inputList = (ArrayList<String>) session.getAttribute("input");
-		
-		if (inputList == null) {
-			inputList = new ArrayList<>();
-		}
+		SearchHistory history = SearchHistory.get(session);
 		
 		PrintWriter out = response.getWriter();
 		
@@ -185,24 +140,40 @@ public class PopularServlet extends HttpServlet {
 		
 		values.put("stats", "<br>Server Uptime: "+String.format("%02d:%02d:%02d", searchDuration.toHours(), searchDuration.toMinutesPart(), searchDuration.toSecondsPart())+
 				"&ensp;|&ensp;Words Stored: "+index.size()+
-				"&ensp;|&ensp;Queries Conducted: "+(inputList != null ? Integer.toString(inputList.size()) : "0")+
+				"&ensp;|&ensp;Queries Conducted: "+history.total()+
 				"&ensp;|&ensp;Last Visit: "+(lastVisit == null ? "" : lastVisit.format(DateTimeFormatter.ofPattern("EEEE, MMMM dd, yyyy 'at' HH:mm a"))));
 		
 		if (request.getParameter("options") != null) {
-			out.print(Files.readString(OPTIONS, UTF_8));
+			HtmlTemplate.get(OPTIONS).render(out);
 		}
 
 		if (request.getParameter("history") != null) {
 			StringBuilder builder = new StringBuilder();
-			if (inputList != null && !inputList.isEmpty()) {
-				int i = 1;
-				for (String search : inputList) {
-					builder.append(i+". "+search+"<br>");
-					i++;
-				}
+			int i = 1;
+			for (String search : history.recent()) {
+				builder.append(i+". "+search+"<br>");
+				i++;
 			}
 			values.put("history", builder.toString());
-			out.print(new StringSubstitutor(values).replace(Files.readString(HISTORY, UTF_8)));
+			HtmlTemplate.get(HISTORY).render(out, values);
 		}
 	}
-}
\ No newline at end of file
+	
+	/**
+	 * Builds HTML for the queries trending across every session.
+	 * 
+	 * @param limit the most queries shown
+	 * @return the HTML
+	 */
+	public static String trending(int limit) {
+		StringBuilder builder = new StringBuilder();
+		
+		int i = 1;
+		for (TrendingQueries.Trend trend : TrendingQueries.getShared().top(limit)) {
+			builder.append("<strong>"+i+".</strong> "+StringEscapeUtils.escapeHtml4(trend.getQuery())+"<br>");
+			i++;
+		}
+		
+		return builder.toString();
+	}
+}
@@ -0,0 +1,255 @@
+package edu.usfca.cs272;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.usfca.cs272.InvertedIndex.Result;
+
+/**
+ * Caches the results of recent searches so repeated queries do not search the
+ * index again. Searches are keyed by their stems and whether they are exact,
+ * so queries that only differ in word order, case, or repeated words share an
+ * entry. The least recently used search is removed once the cache is full.
+ *
+ * Each entry remembers the generation of the index it was found at, and is
+ * searched again if the index has changed since.
+ *
+ * @see ThreadSafeInvertedIndex#getGeneration()
+ *
+ * @author Colin Bindi
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2022
+ */
+public class QueryCache {
+	/** The default maximum number of searches cached. */
+	public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+	/** The cache used by the servlets. */
+	private static volatile QueryCache shared = new QueryCache(DEFAULT_MAX_ENTRIES);
+
+	/** The maximum number of searches cached. */
+	private final int maxEntries;
+
+	/** Map of each search key to its results, from least to most recently used. */
+	private final LinkedHashMap<String, Entry> entries;
+
+	/** The number of searches answered from the cache. */
+	private final AtomicLong hits;
+
+	/** The number of searches that had to search the index. */
+	private final AtomicLong misses;
+
+	/** The total time spent answering hits in nanoseconds. */
+	private final AtomicLong hitTime;
+
+	/** The total time spent answering misses in nanoseconds. */
+	private final AtomicLong missTime;
+
+	/**
+	 * Initializes an empty cache.
+	 *
+	 * @param maxEntries the maximum number of searches cached
+	 */
+	public QueryCache(int maxEntries) {
+		this.maxEntries = Math.max(maxEntries, 1);
+		this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+			/** ID used for serialization, which we are not using. */
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				return size() > QueryCache.this.maxEntries;
+			}
+		};
+		this.hits = new AtomicLong();
+		this.misses = new AtomicLong();
+		this.hitTime = new AtomicLong();
+		this.missTime = new AtomicLong();
+	}
+
+	/**
+	 * Gets the cache used by the servlets.
+	 *
+	 * @return the shared cache
+	 */
+	public static QueryCache getShared() {
+		return shared;
+	}
+
+	/**
+	 * Replaces the cache used by the servlets, for example to use a different
+	 * size.
+	 *
+	 * @param cache the new shared cache
+	 */
+	public static void setShared(QueryCache cache) {
+		shared = cache;
+	}
+
+	/**
+	 * Returns the results of a search, searching the index only if the search is
+	 * not cached or the index changed since it was cached. The results are
+	 * shared with other requests and cannot be modified; copy them first to
+	 * reorder them.
+	 *
+	 * @param index the index to search
+	 * @param stems the stems in the query
+	 * @param exact true if exact search or false for partial search
+	 * @return the unmodifiable sorted results
+	 */
+	public List<Result> search(ThreadSafeInvertedIndex index, Set<String> stems, boolean exact) {
+		long start = System.nanoTime();
+		String key = key(stems, exact);
+		long generation = index.getGeneration();
+		Entry entry;
+
+		synchronized (entries) {
+			entry = entries.get(key);
+		}
+
+		if (entry != null && entry.index == index && entry.generation == generation) {
+			hits.incrementAndGet();
+			hitTime.addAndGet(System.nanoTime() - start);
+			return entry.results;
+		}
+
+		// the generation is read before searching, so a change made during the
+		// search makes the entry stale instead of hiding the change
+		entry = new Entry(index, generation, Collections.unmodifiableList(index.search(stems, exact)));
+
+		synchronized (entries) {
+			entries.put(key, entry);
+		}
+
+		misses.incrementAndGet();
+		missTime.addAndGet(System.nanoTime() - start);
+		return entry.results;
+	}
+
+	/**
+	 * Removes every cached search.
+	 */
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+	/**
+	 * Returns the number of searches cached.
+	 *
+	 * @return the number of searches
+	 */
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	/**
+	 * Returns the number of searches answered from the cache.
+	 *
+	 * @return the number of hits
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Returns the number of searches that had to search the index.
+	 *
+	 * @return the number of misses
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Returns the fraction of searches answered from the cache.
+	 *
+	 * @return the hit ratio from 0 to 1, or 0 if there were no searches
+	 */
+	public double getHitRatio() {
+		long hits = getHits();
+		long total = hits + getMisses();
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+	/**
+	 * Returns the average time to answer a search from the cache.
+	 *
+	 * @return the average time in nanoseconds, or 0 if there were no hits
+	 */
+	public long getAverageHitTime() {
+		long hits = getHits();
+		return hits == 0 ? 0 : hitTime.get() / hits;
+	}
+
+	/**
+	 * Returns the average time to answer a search that was not cached,
+	 * including searching the index.
+	 *
+	 * @return the average time in nanoseconds, or 0 if there were no misses
+	 */
+	public long getAverageMissTime() {
+		long misses = getMisses();
+		return misses == 0 ? 0 : missTime.get() / misses;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Query Cache: %d searches, %.1f%% hits, %.3f ms per hit, %.3f ms per miss", size(),
+				getHitRatio() * 100, getAverageHitTime() / 1e6, getAverageMissTime() / 1e6);
+	}
+
+	/**
+	 * Combines the stems and search type into a key. The stems are sorted, so
+	 * the same stems always give the same key.
+	 *
+	 * @param stems the stems in the query
+	 * @param exact true if exact search or false for partial search
+	 * @return the key
+	 */
+	private static String key(Set<String> stems, boolean exact) {
+		StringBuilder builder = new StringBuilder(exact ? "e" : "p");
+
+		for (String stem : stems instanceof SortedSet ? stems : new TreeSet<>(stems)) {
+			builder.append(' ').append(stem);
+		}
+
+		return builder.toString();
+	}
+
+	/**
+	 * The results of a search and the index generation they were found at.
+	 */
+	private static class Entry {
+		/** The index searched. */
+		private final ThreadSafeInvertedIndex index;
+
+		/** The generation of the index when it was searched. */
+		private final long generation;
+
+		/** The unmodifiable sorted results. */
+		private final List<Result> results;
+
+		/**
+		 * Initializes an entry.
+		 *
+		 * @param index the index searched
+		 * @param generation the generation of the index when it was searched
+		 * @param results the unmodifiable sorted results
+		 */
+		public Entry(ThreadSafeInvertedIndex index, long generation, List<Result> results) {
+			this.index = index;
+			this.generation = generation;
+			this.results = results;
+		}
+	}
+}
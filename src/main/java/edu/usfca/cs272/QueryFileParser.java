@@ -1,7 +1,6 @@
 package edu.usfca.cs272;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
-import static opennlp.tools.stemmer.snowball.SnowballStemmer.ALGORITHM.ENGLISH;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -13,7 +12,6 @@ import java.util.TreeMap;
 
 import edu.usfca.cs272.InvertedIndex.Result;
 import opennlp.tools.stemmer.Stemmer;
-import opennlp.tools.stemmer.snowball.SnowballStemmer;
 
 /**
  * Class responsible for parsing the query and creating the results of a search
@@ -44,7 +42,7 @@ public class QueryFileParser implements QueryFileParserInterface {
 	
 	@Override
 	public void parseFile(Path path, boolean exact) throws IOException {
-		Stemmer stemmer = new SnowballStemmer(ENGLISH);
+		Stemmer stemmer = StemmingService.stemmer();
 		
 		try (BufferedReader reader = Files.newBufferedReader(path, UTF_8)) {
 			String line = null;
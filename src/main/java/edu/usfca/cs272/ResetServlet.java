@@ -1,20 +1,15 @@
 package edu.usfca.cs272;
 
-import static java.nio.charset.StandardCharsets.UTF_8;
-
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
 
 import org.apache.commons.text.StringEscapeUtils;
-import org.apache.commons.text.StringSubstitutor;
 
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServlet;
@@ -63,7 +58,6 @@ public class ResetServlet extends HttpServlet {
 	 * If a URL was included as a parameter in the GET request, safely fetch and
 	 * display the HTTP headers of that URL.
 	 */
-	@SuppressWarnings("unchecked")
 	@Override
 	protected void doGet(HttpServletRequest request,
 			HttpServletResponse response) throws ServletException, IOException {
@@ -81,11 +75,7 @@ public class ResetServlet extends HttpServlet {
 			lastVisit = (LocalDateTime) session.getAttribute("time");
 		}
 		
-		ArrayList<String> inputList = (ArrayList<String>) session.getAttribute("input");
-		
-		if (inputList == null) {
-			inputList = new ArrayList<>();
-		}
+		SearchHistory history = SearchHistory.get(session);
 		
 		PrintWriter out = response.getWriter();
 		
@@ -97,16 +87,15 @@ public class ResetServlet extends HttpServlet {
 		
 		values.put("stats", "<br>Server Uptime: "+String.format("%02d:%02d:%02d", searchDuration.toHours(), searchDuration.toMinutesPart(), searchDuration.toSecondsPart())+
 				"&ensp;|&ensp;Words Stored: "+index.size()+
-				"&ensp;|&ensp;Queries Conducted: "+(inputList != null ? Integer.toString(inputList.size()) : "0")+
+				"&ensp;|&ensp;Queries Conducted: "+history.total()+
 				"&ensp;|&ensp;Last Visit: "+(lastVisit == null ? "" : lastVisit.format(DateTimeFormatter.ofPattern("EEEE, MMMM dd, yyyy 'at' HH:mm a"))));
 		
-		out.print(new StringSubstitutor(values).replace(Files.readString(RESET, UTF_8)));
+		HtmlTemplate.get(RESET).render(out, values);
 		
 		response.setContentType("text/html;charset=UTF-8");
 		response.setStatus(HttpServletResponse.SC_OK);
 	}
 	
-	@SuppressWarnings("unchecked")
 	@Override
 	protected void doPost(HttpServletRequest request, 
 			HttpServletResponse response) throws ServletException, IOException {
@@ -124,11 +113,7 @@ public class ResetServlet extends HttpServlet {
 			lastVisit = (LocalDateTime) session.getAttribute("time");
 		}
 		
-		ArrayList<String> inputList = (ArrayList<String>) session.getAttribute("input");
-		
-		if (inputList == null) {
-			inputList = new ArrayList<>();
-		}
+		SearchHistory history = SearchHistory.get(session);
 		
 		PrintWriter out = response.getWriter();
 		
@@ -138,11 +123,11 @@ public class ResetServlet extends HttpServlet {
 		
 		values.put("stats", "<br>Server Uptime: "+String.format("%02d:%02d:%02d", searchDuration.toHours(), searchDuration.toMinutesPart(), searchDuration.toSecondsPart())+
 				"&ensp;|&ensp;Words Stored: "+index.size()+
-				"&ensp;|&ensp;Queries Conducted: "+(inputList != null ? Integer.toString(inputList.size()) : "0")+
+				"&ensp;|&ensp;Queries Conducted: "+history.total()+
 				"&ensp;|&ensp;Last Visit: "+(lastVisit == null ? "" : lastVisit.format(DateTimeFormatter.ofPattern("EEEE, MMMM dd, yyyy 'at' HH:mm a"))));
 		
 		if (request.getParameter("options") != null) {
-			out.print(Files.readString(OPTIONS, UTF_8));
+			HtmlTemplate.get(OPTIONS).render(out);
 		}
 		
 		if (request.getParameter("reset") != null) {
@@ -152,15 +137,26 @@ public class ResetServlet extends HttpServlet {
 			
 			password = StringEscapeUtils.escapeHtml4(password);
 			
-			if (password.equals("password")) {
+			String location = request.getParameter("location");
+			
+			if (password.equals("password") && location != null && !location.isBlank()) {
+				location = location.strip();
+				
+				if (index.removeLocation(location)) {
+					WebCrawler.removePage(location);
+					values.put("text", "Removed " + StringEscapeUtils.escapeHtml4(location) + " from the index");
+				} else {
+					values.put("text", "This location is not in the Inverted Index");
+				}
+			} else if (password.equals("password")) {
 				values.put("text", "Metadata has been reset");
-				session.setAttribute("input", new ArrayList<String>());
+				history.clear();
 				session.setAttribute("time", null);
 			} else {
 				values.put("text", "Incorrect Password");
 			}
 			
-			out.print(new StringSubstitutor(values).replace(Files.readString(RESET, UTF_8)));
+			HtmlTemplate.get(RESET).render(out, values);
 		}
 		response.setContentType("text/html;charset=UTF-8");
 		response.setStatus(HttpServletResponse.SC_OK);
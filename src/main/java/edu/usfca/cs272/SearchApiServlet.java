@@ -0,0 +1,175 @@
+package edu.usfca.cs272;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.text.StringEscapeUtils;
+
+import edu.usfca.cs272.InvertedIndex.Result;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Servlet to GET handle requests to /api/search. Returns one page of search
+ * results as JSON for programmatic clients, for example
+ * {@code /api/search?query=java&exact=false&offset=10&limit=10}. Only the
+ * results on the requested page are sorted, and they are written straight into
+ * the response as they are read. Responses carry an entity tag for the index
+ * generation and parameters, so clients can revalidate a page of results. The
+ * tag is weak, since the titles and snippets come from the page store and may
+ * be dropped when pages are evicted without the index changing.
+ *
+ * @author Colin Bindi
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2022
+ */
+public class SearchApiServlet extends HttpServlet {
+	/** ID used for serialization, which we are not using. */
+	private static final long serialVersionUID = 1L;
+
+	/** The number of results on a page if no limit is given. */
+	public static final int DEFAULT_LIMIT = 10;
+
+	/** The most results allowed on a page. */
+	public static final int MAX_LIMIT = 100;
+
+	/**
+	 * The inverted index.
+	 */
+	public ThreadSafeInvertedIndex index;
+
+	/**
+	 * The work queue.
+	 */
+	public WorkQueue workQueue;
+
+	/**
+	 * Servlet Constructor
+	 *
+	 * @param index the inverted index
+	 * @param workQueue the work queue
+	 */
+	public SearchApiServlet(ThreadSafeInvertedIndex index, WorkQueue workQueue) {
+		this.index = index;
+		this.workQueue = workQueue;
+	}
+
+	/**
+	 * Searches the index for the "query" parameter and writes the results from
+	 * "offset" to "offset + limit" as JSON. The search is partial unless "exact"
+	 * is {@code true}. Results whose page is no longer stored are written without
+	 * a title, snippet, length, or time stamp.
+	 */
+	@Override
+	protected void doGet(HttpServletRequest request,
+			HttpServletResponse response) throws ServletException, IOException {
+
+		response.setContentType("application/json;charset=UTF-8");
+		response.setStatus(HttpServletResponse.SC_OK);
+
+		String query = request.getParameter("query");
+		query = query == null ? "" : query;
+
+		boolean exact = Boolean.parseBoolean(request.getParameter("exact"));
+
+		int offset;
+		int limit;
+
+		try {
+			offset = parse(request.getParameter("offset"), 0);
+			limit = Math.min(parse(request.getParameter("limit"), DEFAULT_LIMIT), MAX_LIMIT);
+		} catch (NumberFormatException e) {
+			response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+			response.getWriter().write("{\"error\":\"The offset and limit must be non-negative integers.\"}");
+			return;
+		}
+
+		String tag = HttpCaching.tag(true, index.getGeneration(), query, exact, offset, limit);
+
+		if (HttpCaching.notModified(request, response, tag)) {
+			return;
+		}
+
+		List<Result> page = new ArrayList<>(limit);
+		int total = index.search(StemmingService.getShared().uniqueStems(query), exact, offset, limit, page);
+
+		PrintWriter out = response.getWriter();
+
+		out.write("{\"query\":");
+		string(out, query);
+		out.write(",\"exact\":" + exact);
+		out.write(",\"offset\":" + offset);
+		out.write(",\"limit\":" + limit);
+		out.write(",\"total\":" + total);
+		out.write(",\"results\":[");
+
+		for (int i = 0; i < page.size(); i++) {
+			Result result = page.get(i);
+			Page stored = PageStore.getShared().get(result.getLocation());
+
+			out.write(i == 0 ? "{" : ",{");
+			out.write("\"location\":");
+			string(out, result.getLocation());
+			out.write(",\"score\":" + result.getScore());
+			out.write(",\"matches\":" + result.getMatches());
+
+			if (stored != null) {
+				out.write(",\"title\":");
+				string(out, stored.getTitle());
+				out.write(",\"snippet\":");
+				string(out, stored.getSnippet());
+				out.write(",\"length\":");
+				string(out, stored.getLength());
+				out.write(",\"timestamp\":");
+				string(out, stored.getTimeStamp());
+			}
+
+			out.write('}');
+		}
+
+		out.write("]}");
+		out.flush();
+	}
+
+	/**
+	 * Parses a non-negative integer parameter.
+	 *
+	 * @param value the parameter value
+	 * @param backup the value to use if the parameter is missing or blank
+	 * @return the parsed value
+	 * @throws NumberFormatException if the value is not a non-negative integer
+	 */
+	private static int parse(String value, int backup) throws NumberFormatException {
+		if (value == null || value.isBlank()) {
+			return backup;
+		}
+
+		int parsed = Integer.parseInt(value.strip());
+
+		if (parsed < 0) {
+			throw new NumberFormatException(value);
+		}
+
+		return parsed;
+	}
+
+	/**
+	 * Writes a value as a JSON string, or {@code null} if there is none.
+	 *
+	 * @param out the writer to use
+	 * @param value the value to write
+	 */
+	static void string(PrintWriter out, String value) {
+		if (value == null) {
+			out.write("null");
+		} else {
+			out.write('"');
+			out.write(StringEscapeUtils.escapeJson(value));
+			out.write('"');
+		}
+	}
+}
@@ -0,0 +1,226 @@
+package edu.usfca.cs272;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import jakarta.servlet.http.HttpSession;
+
+/**
+ * The searches of one session. The most recent searches are kept in a ring
+ * buffer of fixed capacity, and the number of times each retained query was
+ * searched is updated as searches are added and evicted, so the popular
+ * queries are always known without counting the history again.
+ *
+ * @author Colin Bindi
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2022
+ */
+public class SearchHistory implements Serializable {
+	/** ID used for serialization, which we are not using. */
+	private static final long serialVersionUID = 1L;
+
+	/** The session attribute the history is stored under. */
+	public static final String ATTRIBUTE = "history";
+
+	/** The default number of searches kept. */
+	public static final int DEFAULT_CAPACITY = 1000;
+
+	/** The format of the search times. */
+	private static final DateTimeFormatter FORMAT = DateTimeFormatter.ofPattern("EEEE, MMMM dd, yyyy 'at' HH:mm a");
+
+	/** The queries of the retained searches, in a ring starting at {@link #first}. */
+	private final String[] queries;
+
+	/** The times of the retained searches, in the same order as the queries. */
+	private final LocalDateTime[] times;
+
+	/** The position of the oldest retained search. */
+	private int first;
+
+	/** The number of retained searches. */
+	private int size;
+
+	/** The number of searches since the history was created or cleared. */
+	private long total;
+
+	/** Map of each retained query to the number of times it was searched. */
+	private final HashMap<String, Integer> counts;
+
+	/** Map of each count to the queries searched that many times, from most to least. */
+	private final TreeMap<Integer, TreeSet<String>> ranks;
+
+	/**
+	 * Initializes an empty history.
+	 *
+	 * @param capacity the number of searches kept
+	 */
+	public SearchHistory(int capacity) {
+		this.queries = new String[Math.max(capacity, 1)];
+		this.times = new LocalDateTime[queries.length];
+		this.counts = new HashMap<>();
+		this.ranks = new TreeMap<>(Collections.reverseOrder());
+	}
+
+	/**
+	 * Initializes an empty history with the default capacity.
+	 */
+	public SearchHistory() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Gets the history of a session, adding an empty one if there is none yet.
+	 *
+	 * @param session the session
+	 * @return the history of the session
+	 */
+	public static SearchHistory get(HttpSession session) {
+		synchronized (session) {
+			SearchHistory history = (SearchHistory) session.getAttribute(ATTRIBUTE);
+
+			if (history == null) {
+				history = new SearchHistory();
+				session.setAttribute(ATTRIBUTE, history);
+			}
+
+			return history;
+		}
+	}
+
+	/**
+	 * Records a search made now, evicting the oldest search if the history is
+	 * full.
+	 *
+	 * @param query the query searched
+	 */
+	public synchronized void add(String query) {
+		if (size == queries.length) {
+			update(queries[first], -1);
+			queries[first] = query;
+			times[first] = LocalDateTime.now();
+			first = (first + 1) % queries.length;
+		} else {
+			int last = (first + size) % queries.length;
+			queries[last] = query;
+			times[last] = LocalDateTime.now();
+			size++;
+		}
+
+		update(query, 1);
+		total++;
+	}
+
+	/**
+	 * Changes the number of times a query was searched, moving it to its new
+	 * rank.
+	 *
+	 * @param query the query
+	 * @param change the change in its count
+	 */
+	private void update(String query, int change) {
+		int before = counts.getOrDefault(query, 0);
+		int after = before + change;
+
+		if (before > 0) {
+			TreeSet<String> rank = ranks.get(before);
+			rank.remove(query);
+
+			if (rank.isEmpty()) {
+				ranks.remove(before);
+			}
+		}
+
+		if (after > 0) {
+			counts.put(query, after);
+			ranks.computeIfAbsent(after, count -> new TreeSet<>()).add(query);
+		} else {
+			counts.remove(query);
+		}
+	}
+
+	/**
+	 * Returns the retained searches from oldest to newest, each as its time and
+	 * query separated by {@code " - "}.
+	 *
+	 * @return the retained searches
+	 */
+	public synchronized List<String> recent() {
+		List<String> recent = new ArrayList<>(size);
+
+		for (int i = 0; i < size; i++) {
+			int position = (first + i) % queries.length;
+			recent.add(times[position].format(FORMAT) + " - " + queries[position]);
+		}
+
+		return recent;
+	}
+
+	/**
+	 * Returns the most searched of the retained queries, from most to least
+	 * searched and alphabetically among queries searched equally often.
+	 *
+	 * @param limit the most queries returned
+	 * @return the popular queries
+	 */
+	public synchronized List<String> popular(int limit) {
+		List<String> popular = new ArrayList<>(Math.min(limit, counts.size()));
+
+		for (Map.Entry<Integer, TreeSet<String>> rank : ranks.entrySet()) {
+			for (String query : rank.getValue()) {
+				if (popular.size() >= limit) {
+					return popular;
+				}
+
+				popular.add(query);
+			}
+		}
+
+		return popular;
+	}
+
+	/**
+	 * Returns the number of searches since the history was created or cleared,
+	 * including searches no longer retained.
+	 *
+	 * @return the number of searches
+	 */
+	public synchronized long total() {
+		return total;
+	}
+
+	/**
+	 * Returns the number of retained searches.
+	 *
+	 * @return the number of retained searches
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * Removes every search.
+	 */
+	public synchronized void clear() {
+		Arrays.fill(queries, null);
+		Arrays.fill(times, null);
+		first = 0;
+		size = 0;
+		total = 0;
+		counts.clear();
+		ranks.clear();
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("%d searches, %d retained, %d unique", total, size, counts.size());
+	}
+}
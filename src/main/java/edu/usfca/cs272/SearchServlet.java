@@ -0,0 +1,282 @@
+package edu.usfca.cs272;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Formatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.text.StringEscapeUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import edu.usfca.cs272.InvertedIndex.Result;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+
+/**
+ * Servlet to handle search requests. Each search page is the same servlet with
+ * a different template and strategy: whether the search is exact or partial,
+ * the order the results are shown in, whether the search is recorded in the
+ * session history, and how many results are shown.
+ *
+ * Results are rendered into a buffer that each thread reuses, and queries are
+ * stemmed by the shared {@link StemmingService}, so a search allocates little
+ * beyond its results.
+ *
+ * @author Colin Bindi
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2022
+ */
+public class SearchServlet extends HttpServlet {
+	/** ID used for serialization, which we are not using. */
+	private static final long serialVersionUID = 1L;
+
+	/** Logger used for this class. */
+	private static final Logger log = LogManager.getLogger();
+
+	/** The page size that shows every result. */
+	public static final int ALL = Integer.MAX_VALUE;
+
+	/** Location of the HTML template for the options. */
+	private static final Path OPTIONS = Path.of("src", "main", "resources", "options.html");
+
+	/** The format of the visit and search times. */
+	private static final DateTimeFormatter FORMAT = DateTimeFormatter.ofPattern("EEEE, MMMM dd, yyyy 'at' HH:mm a");
+
+	/** The largest buffer a thread keeps between requests. */
+	private static final int MAX_BUFFER = 64 * 1024;
+
+	/** The buffer each thread renders results into, with a formatter writing to it. */
+	private static final ThreadLocal<Formatter> buffer = ThreadLocal.withInitial(() -> new Formatter(new StringBuilder()));
+
+	/**
+	 * The order search results are shown in.
+	 */
+	public enum Order {
+		/** The best results first. */
+		BEST,
+
+		/** The best results last. */
+		WORST
+	}
+
+	/**
+	 * The inverted index.
+	 */
+	public ThreadSafeInvertedIndex index;
+
+	/**
+	 * The work queue.
+	 */
+	public WorkQueue workQueue;
+
+	/** Location of the HTML template for this servlet. */
+	private final Path template;
+
+	/** True if exact search or false for partial search. */
+	private final boolean exact;
+
+	/** The order results are shown in. */
+	private final Order order;
+
+	/** True if searches and visits are recorded in the session and searches count toward trending queries. */
+	private final boolean history;
+
+	/** The most results shown. */
+	private final int pageSize;
+
+	/**
+	 * Servlet Constructor
+	 *
+	 * @param index the inverted index
+	 * @param workQueue the work queue
+	 * @param template the name of the HTML template in the resources directory
+	 * @param exact true if exact search or false for partial search
+	 * @param order the order results are shown in
+	 * @param history true if searches and visits are recorded in the session and
+	 *   searches count toward trending queries
+	 * @param pageSize the most results shown, or {@link #ALL}
+	 */
+	public SearchServlet(ThreadSafeInvertedIndex index, WorkQueue workQueue, String template, boolean exact, Order order,
+			boolean history, int pageSize) {
+		this.index = index;
+		this.workQueue = workQueue;
+		this.template = Path.of("src", "main", "resources", template);
+		this.exact = exact;
+		this.order = order;
+		this.history = history;
+		this.pageSize = Math.max(pageSize, 1);
+	}
+
+	/**
+	 * Displays the search form with the server statistics.
+	 */
+	@Override
+	protected void doGet(HttpServletRequest request,
+			HttpServletResponse response) throws ServletException, IOException {
+
+		response.setContentType("text/html;charset=UTF-8");
+		response.setStatus(HttpServletResponse.SC_OK);
+
+		HttpSession session = request.getSession(true);
+		LocalDateTime lastVisit = lastVisit(session);
+		SearchHistory searches = SearchHistory.get(session);
+
+		Map<String, String> values = new HashMap<>();
+
+		values.put("text", "");
+		values.put("stats", stats(searches, lastVisit).toString());
+
+		HtmlTemplate.get(template).render(response.getWriter(), values);
+	}
+
+	/**
+	 * Searches for the "queries" parameter if "search" is given, or displays the
+	 * options if "options" is given.
+	 */
+	@Override
+	protected void doPost(HttpServletRequest request,
+			HttpServletResponse response) throws ServletException, IOException {
+
+		response.setContentType("text/html;charset=UTF-8");
+		response.setStatus(HttpServletResponse.SC_OK);
+
+		HttpSession session = request.getSession(true);
+		LocalDateTime lastVisit = lastVisit(session);
+		SearchHistory searches = SearchHistory.get(session);
+
+		PrintWriter out = response.getWriter();
+
+		if (request.getParameter("options") != null) {
+			HtmlTemplate.get(OPTIONS).render(out);
+		}
+
+		if (request.getParameter("search") != null) {
+			long start = System.nanoTime();
+
+			String queries = request.getParameter("queries");
+
+			queries = queries == null ? "" : queries;
+
+			if (history) {
+				TrendingQueries.getShared().add(queries);
+			}
+
+			queries = StringEscapeUtils.escapeHtml4(queries);
+
+			if (history) {
+				searches.add(queries);
+			}
+
+			List<Result> results = QueryCache.getShared().search(index, StemmingService.getShared().uniqueStems(queries), exact);
+			Formatter formatter = buffer.get();
+			StringBuilder builder = (StringBuilder) formatter.out();
+			builder.setLength(0);
+
+			int shown = 0;
+			int size = Math.min(results.size(), pageSize);
+
+			for (int i = 0; i < size; i++) {
+				Result result = results.get(order == Order.BEST ? i : results.size() - 1 - i);
+				Page page = PageStore.getShared().get(result.getLocation());
+
+				shown++;
+				builder.append("<strong>").append(shown).append(". </strong><a href=\"").append(result.getLocation()).append("\">");
+
+				// a page no longer stored is still indexed, so show it by its link alone
+				if (page != null) {
+					builder.append(page.getTitle()).append("</a><br>");
+					builder.append(page.getSnippet());
+				} else {
+					builder.append(StringEscapeUtils.escapeHtml4(result.getLocation())).append("</a>");
+				}
+
+				builder.append("<br><strong>&bull; Score: </strong>");
+				formatter.format("%.2f", result.getScore());
+				builder.append("<br><strong>&bull; Matches: </strong>").append(result.getMatches());
+
+				if (page != null) {
+					builder.append("<br><strong>&bull; Content Length: </strong>").append(page.getLength());
+					builder.append("<br><strong>&bull; Time Stamp: </strong>").append(page.getTimeStamp());
+				}
+
+				builder.append("<br><br>");
+			}
+
+			Map<String, String> values = new HashMap<>();
+			values.put("text", shown == 0 ? "No matches were found for your search." : builder.toString());
+
+			long elapsed = System.nanoTime() - start;
+
+			StringBuilder stats = stats(searches, lastVisit);
+			stats.append(String.format("<br><br>Search Time: %.3f seconds | Search Results: %d<br>", elapsed / 1e9, shown));
+			stats.append(QueryCache.getShared()).append(" | ").append(StemmingService.getShared()).append("<br>");
+			values.put("stats", stats.toString());
+
+			if (builder.capacity() > MAX_BUFFER) {
+				buffer.remove();
+			}
+
+			log.debug("Searched {} for \"{}\" with {} results in {} ms.", template.getFileName(), queries, shown, elapsed / 1e6);
+
+			HtmlTemplate.get(template).render(out, values);
+		}
+
+		out.flush();
+		response.flushBuffer();
+	}
+
+	/**
+	 * Gets the time of the first visit in this session, recording it now if it
+	 * is not recorded yet. Returns {@code null} if visits are not recorded.
+	 *
+	 * @param session the session
+	 * @return the time of the first visit or {@code null}
+	 */
+	private LocalDateTime lastVisit(HttpSession session) {
+		if (!history) {
+			return null;
+		}
+
+		LocalDateTime lastVisit = (LocalDateTime) session.getAttribute("time");
+
+		if (lastVisit == null) {
+			lastVisit = LocalDateTime.now();
+			session.setAttribute("time", lastVisit);
+		}
+
+		return lastVisit;
+	}
+
+	/**
+	 * Builds the server statistics shown above the results.
+	 *
+	 * @param searches the search history of the session
+	 * @param lastVisit the time of the first visit, or {@code null} if visits
+	 *   are not shown
+	 * @return the statistics
+	 */
+	private StringBuilder stats(SearchHistory searches, LocalDateTime lastVisit) {
+		Duration uptime = Duration.between(WebServer.serverUptime(), LocalDateTime.now());
+
+		StringBuilder stats = new StringBuilder(256);
+		stats.append(String.format("<br>Server Uptime: %02d:%02d:%02d", uptime.toHours(), uptime.toMinutesPart(), uptime.toSecondsPart()));
+		stats.append("&ensp;|&ensp;Words Stored: ").append(index.size());
+		stats.append("&ensp;|&ensp;Queries Conducted: ").append(searches.total());
+
+		if (history) {
+			stats.append("&ensp;|&ensp;Last Visit: ").append(lastVisit == null ? "" : lastVisit.format(FORMAT));
+		}
+
+		return stats;
+	}
+}
@@ -1,20 +1,15 @@
 package edu.usfca.cs272;
 
-import static java.nio.charset.StandardCharsets.UTF_8;
-
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
 
 import org.apache.commons.text.StringEscapeUtils;
-import org.apache.commons.text.StringSubstitutor;
 
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServlet;
@@ -64,7 +59,6 @@ public class SeedServlet extends HttpServlet {
 	 * If a URL was included as a parameter in the GET request, safely fetch and
 	 * display the HTTP headers of that URL.
 	 */
-	@SuppressWarnings("unchecked")
 	@Override
 	protected void doGet(HttpServletRequest request,
 			HttpServletResponse response) throws ServletException, IOException {
@@ -84,7 +78,7 @@ public class SeedServlet extends HttpServlet {
 		
 		PrintWriter out = response.getWriter();
 		
-		ArrayList<String> inputList = (ArrayList<String>) session.getAttribute("input");
+		SearchHistory history = SearchHistory.get(session);
 		
 		Map<String, String> values = new HashMap<>();
 		
@@ -94,16 +88,15 @@ public class SeedServlet extends HttpServlet {
 		
 		values.put("stats", "<br>Server Uptime: "+String.format("%02d:%02d:%02d", searchDuration.toHours(), searchDuration.toMinutesPart(), searchDuration.toSecondsPart())+
 				"&ensp;|&ensp;Words Stored: "+index.size()+
-				"&ensp;|&ensp;Queries Conducted: "+(inputList != null ? Integer.toString(inputList.size()) : "0")+
+				"&ensp;|&ensp;Queries Conducted: "+history.total()+
 				"&ensp;|&ensp;Last Visit: "+(lastVisit == null ? "" : lastVisit.format(DateTimeFormatter.ofPattern("EEEE, MMMM dd, yyyy 'at' HH:mm a"))));
 		
-		out.print(new StringSubstitutor(values).replace(Files.readString(SEED, UTF_8)));
+		HtmlTemplate.get(SEED).render(out, values);
 
 		response.setContentType("text/html;charset=UTF-8");
 		response.setStatus(HttpServletResponse.SC_OK);
 	}
 	
-	@SuppressWarnings("unchecked")
 	@Override
 	protected void doPost(HttpServletRequest request, 
 			HttpServletResponse response) throws ServletException, IOException {
@@ -123,7 +116,7 @@ public class SeedServlet extends HttpServlet {
 		
 		PrintWriter out = response.getWriter();
 		
-		ArrayList<String> inputList = (ArrayList<String>) session.getAttribute("input");
+		SearchHistory history = SearchHistory.get(session);
 		
 		Map<String, String> values = new HashMap<>();
 		
@@ -131,11 +124,11 @@ public class SeedServlet extends HttpServlet {
 		
 		values.put("stats", "<br>Server Uptime: "+String.format("%02d:%02d:%02d", searchDuration.toHours(), searchDuration.toMinutesPart(), searchDuration.toSecondsPart())+
 				"&ensp;|&ensp;Words Stored: "+index.size()+
-				"&ensp;|&ensp;Queries Conducted: "+(inputList != null ? Integer.toString(inputList.size()) : "0")+
+				"&ensp;|&ensp;Queries Conducted: "+history.total()+
 				"&ensp;|&ensp;Last Visit: "+(lastVisit == null ? "" : lastVisit.format(DateTimeFormatter.ofPattern("EEEE, MMMM dd, yyyy 'at' HH:mm a"))));
 		
 		if (request.getParameter("options") != null) {
-			out.print(Files.readString(OPTIONS, UTF_8));
+			HtmlTemplate.get(OPTIONS).render(out);
 		}
 		
 		if (request.getParameter("add") != null) {
@@ -152,12 +145,20 @@ public class SeedServlet extends HttpServlet {
 			
 			max = StringEscapeUtils.escapeHtml4(max);
 			
-			if (!index.containsPath(seed)) {
+			boolean recrawl = request.getParameter("recrawl") != null;
+			
+			if (recrawl || !index.containsPath(seed)) {
 				try {
-					WebCrawler webCrawler = new WebCrawler(index, num, workQueue);
+					WebCrawler webCrawler = new WebCrawler(index, num, workQueue, recrawl);
 					webCrawler.build(seed);
 					workQueue.finish();
-					values.put("build", "The seed URL was added to index.");
+					
+					if (recrawl) {
+						values.put("build", "The seed URL was recrawled: " + webCrawler.getUnchanged() + " of " + webCrawler.getCrawled() + " pages were unchanged"
+								+ (webCrawler.getKept() == 0 ? "." : " and " + webCrawler.getKept() + " could not be fetched and were kept."));
+					} else {
+						values.put("build", "The seed URL was added to index.");
+					}
 				} catch (IOException e) {
 					values.put("build", "Unable to build the inverted index from URL: " + seed.toString());
 				}
@@ -165,7 +166,7 @@ public class SeedServlet extends HttpServlet {
 				values.put("build", "This URL has already been crawled.");
 			}
 			
-			out.print(new StringSubstitutor(values).replace(Files.readString(SEED, UTF_8)));
+			HtmlTemplate.get(SEED).render(out, values);
 		}
 		
 		out.flush();
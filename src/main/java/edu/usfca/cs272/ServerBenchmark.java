@@ -0,0 +1,157 @@
+package edu.usfca.cs272;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A small closed-loop load generator for measuring the throughput and latency
+ * of a running {@link WebServer}. Each client sends a search as soon as its
+ * previous response arrives, for a warm-up period and then a measured period,
+ * and the requests per second and latency percentiles of the measured period
+ * are printed.
+ *
+ * Run against a server started with {@code -server}, with optional arguments
+ * for the base address, the number of clients, the seconds to measure, and the
+ * path to search, for example:
+ *
+ * <pre>
+ * java -cp target/classes:... edu.usfca.cs272.ServerBenchmark http://localhost:8080 64 20 /api/search
+ * </pre>
+ *
+ * @author Colin Bindi
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2022
+ */
+public class ServerBenchmark {
+	/** The seconds to send requests before measuring. */
+	private static final int WARM_UP = 5;
+
+	/** The queries sent, one after another by each client. */
+	private static final List<String> QUERIES = List.of("java", "search engine", "the", "comput", "web server", "index", "data structur", "thread");
+
+	/**
+	 * Sends requests from one client until the deadline, recording the latency
+	 * of each request sent after the start of the measured period.
+	 *
+	 * @param client the HTTP client
+	 * @param base the base address of the server
+	 * @param path the path to search
+	 * @param measure the time to start measuring in nanoseconds
+	 * @param deadline the time to stop in nanoseconds
+	 * @param offset the query to start with
+	 * @return the measured latencies in nanoseconds, negative for failed requests
+	 * @throws InterruptedException if interrupted while waiting for a response
+	 */
+	private static List<Long> run(HttpClient client, String base, String path, long measure, long deadline, int offset)
+			throws InterruptedException {
+		List<Long> latencies = new ArrayList<>();
+		int next = offset;
+
+		while (System.nanoTime() < deadline) {
+			String query = URLEncoder.encode(QUERIES.get(next++ % QUERIES.size()), StandardCharsets.UTF_8);
+			HttpRequest request;
+
+			if (path.startsWith("/api")) {
+				request = HttpRequest.newBuilder(URI.create(base + path + "?query=" + query)).GET().build();
+			}
+			else {
+				request = HttpRequest.newBuilder(URI.create(base + path))
+						.header("Content-Type", "application/x-www-form-urlencoded")
+						.POST(HttpRequest.BodyPublishers.ofString("search=search&queries=" + query)).build();
+			}
+
+			long start = System.nanoTime();
+			boolean ok;
+
+			try {
+				ok = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+			}
+			catch (IOException e) {
+				ok = false;
+			}
+
+			long elapsed = System.nanoTime() - start;
+
+			if (start >= measure) {
+				latencies.add(ok ? elapsed : -elapsed);
+			}
+		}
+
+		return latencies;
+	}
+
+	/**
+	 * Returns a percentile of sorted latencies.
+	 *
+	 * @param sorted the sorted latencies in nanoseconds
+	 * @param percent the percentile from 0 to 100
+	 * @return the latency in milliseconds
+	 */
+	private static double percentile(long[] sorted, double percent) {
+		int index = (int) Math.ceil(percent / 100 * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+	}
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param args the optional base address, number of clients, seconds to
+	 *   measure, and path to search
+	 * @throws Exception if a client fails unexpectedly
+	 */
+	public static void main(String[] args) throws Exception {
+		String base = args.length > 0 ? args[0] : "http://localhost:8080";
+		int clients = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+		int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+		String path = args.length > 3 ? args[3] : "/api/search";
+
+		HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+		ExecutorService pool = Executors.newFixedThreadPool(clients);
+
+		long measure = System.nanoTime() + TimeUnit.SECONDS.toNanos(WARM_UP);
+		long deadline = measure + TimeUnit.SECONDS.toNanos(seconds);
+
+		List<Future<List<Long>>> futures = new ArrayList<>();
+
+		for (int i = 0; i < clients; i++) {
+			int offset = i;
+			futures.add(pool.submit(() -> run(client, base, path, measure, deadline, offset)));
+		}
+
+		List<Long> all = new ArrayList<>();
+
+		for (Future<List<Long>> future : futures) {
+			all.addAll(future.get());
+		}
+
+		pool.shutdown();
+
+		long failed = all.stream().filter(latency -> latency < 0).count();
+		long[] sorted = all.stream().mapToLong(Math::abs).sorted().toArray();
+
+		System.out.printf("%s%s with %d clients for %d seconds%n", base, path, clients, seconds);
+
+		if (sorted.length == 0) {
+			System.out.println("  no requests completed");
+			return;
+		}
+
+		System.out.printf("  %d requests (%d failed), %.1f requests per second%n", sorted.length, failed, sorted.length / (double) seconds);
+		System.out.printf("  latency p50 %.2f ms  p90 %.2f ms  p99 %.2f ms  max %.2f ms  mean %.2f ms%n",
+				percentile(sorted, 50), percentile(sorted, 90), percentile(sorted, 99), sorted[sorted.length - 1] / 1e6,
+				Arrays.stream(sorted).average().orElse(0) / 1e6);
+	}
+}
@@ -0,0 +1,219 @@
+package edu.usfca.cs272;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Reads back the "pretty" JSON produced by {@link SimpleJsonWriter}. Only the
+ * nested map format used by {@link InvertedIndex#toJson(Path)} is supported.
+ * Like the writer, quoted text is not unescaped.
+ *
+ * Warning: This class is not thread-safe. If multiple threads access this class
+ * concurrently, access must be synchronized externally.
+ *
+ * @see SimpleJsonWriter#writeNestedMap(java.util.TreeMap, Path)
+ *
+ * @author Colin Bindi
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2022
+ */
+public class SimpleJsonReader {
+	/** The reader to parse from. */
+	private final Reader reader;
+
+	/** The last character peeked at but not yet consumed, or -2 if none. */
+	private int peeked;
+
+	/**
+	 * Initializes a reader over the provided JSON text.
+	 *
+	 * @param reader the reader to parse from
+	 */
+	private SimpleJsonReader(Reader reader) {
+		this.reader = reader;
+		this.peeked = -2;
+	}
+
+	/**
+	 * Reads a nested map of words to locations to positions and adds every
+	 * position found to the index.
+	 *
+	 * @param path the path of the JSON file to read
+	 * @param index the index to add to
+	 * @throws IOException if an I/O error occurs or the JSON is malformed
+	 */
+	public static void readNestedMap(Path path, InvertedIndex index) throws IOException {
+		try (BufferedReader reader = Files.newBufferedReader(path, UTF_8)) {
+			readNestedMap(reader, index);
+		}
+	}
+
+	/**
+	 * Reads a nested map of words to locations to positions and adds every
+	 * position found to the index.
+	 *
+	 * @param reader the reader to parse from
+	 * @param index the index to add to
+	 * @throws IOException if an I/O error occurs or the JSON is malformed
+	 */
+	public static void readNestedMap(Reader reader, InvertedIndex index) throws IOException {
+		SimpleJsonReader json = new SimpleJsonReader(reader);
+
+		json.expect('{');
+
+		while (json.hasNext('}')) {
+			String word = json.readQuote();
+			json.expect(':');
+			json.expect('{');
+
+			while (json.hasNext('}')) {
+				String location = json.readQuote();
+				json.expect(':');
+				json.expect('[');
+
+				while (json.hasNext(']')) {
+					index.add(word, location, json.readInteger());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Skips whitespace and commas, then checks whether another element follows
+	 * before the closing character. Consumes the closing character if found.
+	 *
+	 * @param close the character closing the current object or array
+	 * @return {@code true} if another element follows
+	 * @throws IOException if an I/O error occurs or the input ends early
+	 */
+	private boolean hasNext(char close) throws IOException {
+		int c = skip();
+
+		while (c == ',') {
+			read();
+			c = skip();
+		}
+
+		if (c == close) {
+			read();
+			return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Consumes the expected character after any whitespace.
+	 *
+	 * @param expected the character to expect
+	 * @throws IOException if an I/O error occurs or a different character is found
+	 */
+	private void expect(char expected) throws IOException {
+		skip();
+		int c = read();
+
+		if (c != expected) {
+			throw new IOException("Expected '" + expected + "' but found " + describe(c));
+		}
+	}
+
+	/**
+	 * Reads a quoted string after any whitespace.
+	 *
+	 * @return the text between the quotes
+	 * @throws IOException if an I/O error occurs or the string is unterminated
+	 */
+	private String readQuote() throws IOException {
+		expect('"');
+		StringBuilder builder = new StringBuilder();
+		int c;
+
+		while ((c = read()) != '"') {
+			if (c < 0) {
+				throw new IOException("Unterminated string in JSON input");
+			}
+			builder.append((char) c);
+		}
+
+		return builder.toString();
+	}
+
+	/**
+	 * Reads an integer after any whitespace.
+	 *
+	 * @return the integer read
+	 * @throws IOException if an I/O error occurs or no integer is found
+	 */
+	private int readInteger() throws IOException {
+		skip();
+		StringBuilder builder = new StringBuilder();
+		int c;
+
+		while ((c = peek()) == '-' || Character.isDigit(c)) {
+			builder.append((char) read());
+		}
+
+		try {
+			return Integer.parseInt(builder.toString());
+		}
+		catch (NumberFormatException e) {
+			throw new IOException("Expected an integer but found " + describe(c));
+		}
+	}
+
+	/**
+	 * Skips whitespace and returns the next character without consuming it.
+	 *
+	 * @return the next non-whitespace character or -1 at the end of input
+	 * @throws IOException if an I/O error occurs
+	 */
+	private int skip() throws IOException {
+		int c;
+
+		while ((c = peek()) >= 0 && Character.isWhitespace(c)) {
+			read();
+		}
+
+		return c;
+	}
+
+	/**
+	 * Returns the next character without consuming it.
+	 *
+	 * @return the next character or -1 at the end of input
+	 * @throws IOException if an I/O error occurs
+	 */
+	private int peek() throws IOException {
+		if (peeked == -2) {
+			peeked = reader.read();
+		}
+		return peeked;
+	}
+
+	/**
+	 * Consumes and returns the next character.
+	 *
+	 * @return the next character or -1 at the end of input
+	 * @throws IOException if an I/O error occurs
+	 */
+	private int read() throws IOException {
+		int c = peek();
+		peeked = -2;
+		return c;
+	}
+
+	/**
+	 * Describes a character for error messages.
+	 *
+	 * @param c the character or -1 for the end of input
+	 * @return a readable description of the character
+	 */
+	private static String describe(int c) {
+		return c < 0 ? "end of input" : "'" + (char) c + "'";
+	}
+}
@@ -0,0 +1,164 @@
+package edu.usfca.cs272;
+
+import static opennlp.tools.stemmer.snowball.SnowballStemmer.ALGORITHM.ENGLISH;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import opennlp.tools.stemmer.Stemmer;
+import opennlp.tools.stemmer.snowball.SnowballStemmer;
+
+/**
+ * Provides stemmers and stems queries without creating a stemmer for every
+ * request. Stemmers are not thread-safe, so each thread reuses its own. The
+ * stems of recent queries are also cached by their raw text, so a popular
+ * query is only parsed and stemmed once.
+ *
+ * @author Colin Bindi
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2022
+ */
+public class StemmingService {
+	/** The default maximum number of queries cached. */
+	public static final int DEFAULT_MAX_QUERIES = 10000;
+
+	/** The stemmer each thread uses. */
+	private static final ThreadLocal<Stemmer> stemmers = ThreadLocal.withInitial(() -> new SnowballStemmer(ENGLISH));
+
+	/** The service used by the servlets. */
+	private static volatile StemmingService shared = new StemmingService(DEFAULT_MAX_QUERIES);
+
+	/** The maximum number of queries cached. */
+	private final int maxQueries;
+
+	/** Map of each raw query to its stems, from least to most recently used. */
+	private final LinkedHashMap<String, SortedSet<String>> queries;
+
+	/** The number of queries answered from the cache. */
+	private final AtomicLong hits;
+
+	/** The number of queries that had to be stemmed. */
+	private final AtomicLong misses;
+
+	/**
+	 * Initializes a service with an empty cache.
+	 *
+	 * @param maxQueries the maximum number of queries cached
+	 */
+	public StemmingService(int maxQueries) {
+		this.maxQueries = Math.max(maxQueries, 1);
+		this.queries = new LinkedHashMap<>(16, 0.75f, true) {
+			/** ID used for serialization, which we are not using. */
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, SortedSet<String>> eldest) {
+				return size() > StemmingService.this.maxQueries;
+			}
+		};
+		this.hits = new AtomicLong();
+		this.misses = new AtomicLong();
+	}
+
+	/**
+	 * Gets the service used by the servlets.
+	 *
+	 * @return the shared service
+	 */
+	public static StemmingService getShared() {
+		return shared;
+	}
+
+	/**
+	 * Replaces the service used by the servlets, for example to cache a
+	 * different number of queries.
+	 *
+	 * @param service the new shared service
+	 */
+	public static void setShared(StemmingService service) {
+		shared = service;
+	}
+
+	/**
+	 * Returns the English stemmer of the calling thread. The stemmer must not be
+	 * passed to another thread.
+	 *
+	 * @return the stemmer
+	 */
+	public static Stemmer stemmer() {
+		return stemmers.get();
+	}
+
+	/**
+	 * Returns the unique, sorted, cleaned, and stemmed words of a query, stemming
+	 * it only if it is not cached.
+	 *
+	 * @param query the raw query
+	 * @return the unmodifiable set of stems, which is shared with other callers
+	 *
+	 * @see TextFileStemmer#uniqueStems(String, Stemmer)
+	 */
+	public Set<String> uniqueStems(String query) {
+		SortedSet<String> stems;
+
+		synchronized (queries) {
+			stems = queries.get(query);
+		}
+
+		if (stems != null) {
+			hits.incrementAndGet();
+			return stems;
+		}
+
+		stems = new TreeSet<>();
+		TextFileStemmer.stemLine(query, stemmer(), stems);
+		stems = Collections.unmodifiableSortedSet(stems);
+
+		synchronized (queries) {
+			queries.put(query, stems);
+		}
+
+		misses.incrementAndGet();
+		return stems;
+	}
+
+	/**
+	 * Returns the number of queries answered from the cache.
+	 *
+	 * @return the number of hits
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Returns the number of queries that had to be stemmed.
+	 *
+	 * @return the number of misses
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Returns the number of queries cached.
+	 *
+	 * @return the number of queries
+	 */
+	public int size() {
+		synchronized (queries) {
+			return queries.size();
+		}
+	}
+
+	@Override
+	public String toString() {
+		long total = getHits() + getMisses();
+		return String.format("Stemming Cache: %d queries, %.1f%% hits", size(), total == 0 ? 0 : 100.0 * getHits() / total);
+	}
+}
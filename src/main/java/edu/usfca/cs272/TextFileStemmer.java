@@ -1,7 +1,6 @@
 package edu.usfca.cs272;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
-import static opennlp.tools.stemmer.snowball.SnowballStemmer.ALGORITHM.ENGLISH;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -73,7 +72,7 @@ public class TextFileStemmer {
 	 * @see #listStems(String, Stemmer)
 	 */
 	public static List<String> listStems(String line) {
-		return listStems(line, new SnowballStemmer(ENGLISH));
+		return listStems(line, StemmingService.stemmer());
 	}
 
 	/**
@@ -91,7 +90,7 @@ public class TextFileStemmer {
 	 */
 	public static List<String> listStems(Path input) throws IOException {
 		
-		Stemmer stemmer = new SnowballStemmer(ENGLISH);
+		Stemmer stemmer = StemmingService.stemmer();
 		
 		List<String> list = new ArrayList<>();
 		
@@ -137,7 +136,7 @@ public class TextFileStemmer {
 	 * @see #uniqueStems(String, Stemmer)
 	 */
 	public static Set<String> uniqueStems(String line) {
-		return uniqueStems(line, new SnowballStemmer(ENGLISH));
+		return uniqueStems(line, StemmingService.stemmer());
 	}
 
 	/**
@@ -155,7 +154,7 @@ public class TextFileStemmer {
 	 */
 	public static Set<String> uniqueStems(Path input) throws IOException {
 		
-		Stemmer stemmer = new SnowballStemmer(ENGLISH);
+		Stemmer stemmer = StemmingService.stemmer();
 		
 		Set<String> set = new TreeSet<>();
 		
@@ -187,7 +186,7 @@ public class TextFileStemmer {
 	 */
 	public static List<Set<String>> listUniqueStems(Path input) throws IOException {
 		
-		Stemmer stemmer = new SnowballStemmer(ENGLISH);
+		Stemmer stemmer = StemmingService.stemmer();
 		
 		try (BufferedReader reader = Files.newBufferedReader(input, UTF_8)) {
 		
@@ -6,6 +6,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A thread-safe version of {@link InvertedIndex} using a read/write lock.
@@ -20,12 +21,29 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 	/** The lock used to protect concurrent access to the underlying set. */
 	private final SimpleReadWriteLock lock;
 
+	/** The number of changes made to the index, used to invalidate cached searches. */
+	private final AtomicLong generation;
+
 	/**
 	 * Initializes a thread-safe indexed set.
 	 */
 	public ThreadSafeInvertedIndex() {
 		super();
 		lock = new SimpleReadWriteLock();
+		generation = new AtomicLong();
+	}
+
+	/**
+	 * Returns the generation of the index, which increases every time the index
+	 * is changed. Search results found at one generation are still correct as
+	 * long as the generation has not changed.
+	 *
+	 * @return the generation
+	 *
+	 * @see QueryCache
+	 */
+	public long getGeneration() {
+		return generation.get();
 	}
 
 	/**
@@ -45,6 +63,7 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 			super.add(word, location, index);
 		}
 		finally {
+			generation.incrementAndGet();
 			lock.writeLock().unlock();
 		}
 	}
@@ -57,6 +76,7 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 			super.addAll(words, location);
 		}
 		finally {
+			generation.incrementAndGet();
 			lock.writeLock().unlock();
 		}
 	}
@@ -69,6 +89,33 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 			super.addAll(index);
 		}
 		finally {
+			generation.incrementAndGet();
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public boolean removeLocation(String location) {
+		lock.writeLock().lock();
+
+		try {
+			return super.removeLocation(location);
+		}
+		finally {
+			generation.incrementAndGet();
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void replaceLocation(InvertedIndex other, String location) {
+		lock.writeLock().lock();
+
+		try {
+			super.replaceLocation(other, location);
+		}
+		finally {
+			generation.incrementAndGet();
 			lock.writeLock().unlock();
 		}
 	}
@@ -97,6 +144,30 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 		}
 	}
 	
+	@Override
+	public int search(Set<String> queries, boolean exactSearch, int offset, int limit, List<Result> page) {
+		lock.readLock().lock();
+
+		try {
+			return super.search(queries, exactSearch, offset, limit, page);
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+	
+	@Override
+	public ArrayList<String> partialLocationSearch(String location) {
+		lock.readLock().lock();
+
+		try {
+			return super.partialLocationSearch(location);
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+	
 	@Override
 	public Collection<String> getWords() {
 		lock.readLock().lock();
@@ -109,6 +180,18 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 		}
 	}
 	
+	@Override
+	public Collection<String> getLocations() {
+		lock.readLock().lock();
+
+		try {
+			return super.getLocations();
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+	
 	@Override
 	public Collection<String> getLocations(String word) {
 		lock.readLock().lock();
@@ -145,6 +228,42 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 		}
 	}
 	
+	@Override
+	public String toWeb(StringBuilder builder, String after, int limit, int locations) {
+		lock.readLock().lock();
+
+		try {
+			return super.toWeb(builder, after, limit, locations);
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public String stemToWeb(StringBuilder builder, String stem, String after, int limit) {
+		lock.readLock().lock();
+
+		try {
+			return super.stemToWeb(builder, stem, after, limit);
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public String wordCountToWeb(StringBuilder builder, String after, int limit) {
+		lock.readLock().lock();
+
+		try {
+			return super.wordCountToWeb(builder, after, limit);
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
 	@Override
 	public void wordCountToJson(Path path) throws IOException {
 		lock.readLock().lock();
@@ -157,6 +276,30 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 		}
 	}
 	
+	@Override
+	public boolean containsPath(String location) {
+		lock.readLock().lock();
+
+		try {
+			return super.containsPath(location);
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+	
+	@Override
+	public int getWordCount(String location) {
+		lock.readLock().lock();
+
+		try {
+			return super.getWordCount(location);
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+	
 	@Override
 	public boolean contains(String word) {
 		lock.readLock().lock();
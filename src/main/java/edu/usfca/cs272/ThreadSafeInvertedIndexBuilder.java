@@ -56,6 +56,9 @@ public class ThreadSafeInvertedIndexBuilder extends InvertedIndexBuilder {
 		
 		/** The inverted index. */
 		private final ThreadSafeInvertedIndex index;
+		
+		/** The callback to run once the file is in the index, or {@code null}. */
+		private final Runnable parsed;
 
 		/**
 		 * Initializes this task.
@@ -64,8 +67,22 @@ public class ThreadSafeInvertedIndexBuilder extends InvertedIndexBuilder {
 		 * @param index the inverted index
 		 */
 		public Task(Path path, ThreadSafeInvertedIndex index) {
+			this(path, index, null);
+		}
+
+		/**
+		 * Initializes this task with a callback that runs only if the file is
+		 * parsed successfully.
+		 *
+		 * @param path the path of a text file
+		 * @param index the inverted index
+		 * @param parsed the callback to run once the file is in the index, or
+		 *   {@code null}
+		 */
+		public Task(Path path, ThreadSafeInvertedIndex index, Runnable parsed) {
 			this.path = path;
 			this.index = index;
+			this.parsed = parsed;
 		}
 
 		@Override
@@ -74,6 +91,10 @@ public class ThreadSafeInvertedIndexBuilder extends InvertedIndexBuilder {
 				InvertedIndex local = new InvertedIndex();
 				InvertedIndexBuilder.parseFile(path, local);
 				index.addAll(local);
+				
+				if (parsed != null) {
+					parsed.run();
+				}
 			} catch (IOException e) {
 				log.debug("IOException error at path: {}.", path);
 			}
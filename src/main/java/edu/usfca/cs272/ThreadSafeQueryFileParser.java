@@ -1,7 +1,6 @@
 package edu.usfca.cs272;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
-import static opennlp.tools.stemmer.snowball.SnowballStemmer.ALGORITHM.ENGLISH;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -13,7 +12,6 @@ import java.util.TreeMap;
 
 import edu.usfca.cs272.InvertedIndex.Result;
 import opennlp.tools.stemmer.Stemmer;
-import opennlp.tools.stemmer.snowball.SnowballStemmer;
 
 /**
  * Class responsible for parsing the query and creating the results of a search
@@ -55,8 +53,7 @@ public class ThreadSafeQueryFileParser implements QueryFileParserInterface {
 			String line = null;
 			
 			while ((line = reader.readLine()) != null) {
-				Stemmer stemmer = new SnowballStemmer(ENGLISH);
-				Task task = new Task(line, exact, stemmer);
+				Task task = new Task(line, exact);
 				workQueue.execute(task);
 			}
 		}
@@ -91,27 +88,21 @@ public class ThreadSafeQueryFileParser implements QueryFileParserInterface {
 		
 		/** True if exact search and false if partial search. */
 		private final boolean exact;
-		
-		/** The stemmer. */
-		private final Stemmer stemmer;
 
 		/**
 		 * Initializes this task.
 		 * 
 		 * @param line a query line
 		 * @param exact true if exact search and false if partial search
-		 * @param stemmer the stemmer
-		 *
 		 */
-		public Task(String line, boolean exact, Stemmer stemmer) {
+		public Task(String line, boolean exact) {
 			this.line = line;
-			this.stemmer = stemmer;
 			this.exact = exact;
 		}
 
 		@Override
 		public void run() {
-			parseLine(line, exact, stemmer);
+			parseLine(line, exact, StemmingService.stemmer());
 		}
 	}
 	
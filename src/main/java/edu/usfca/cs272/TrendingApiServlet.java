@@ -0,0 +1,87 @@
+package edu.usfca.cs272;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+
+import edu.usfca.cs272.TrendingQueries.Trend;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Servlet to GET handle requests to /api/trending. Returns the queries searched
+ * most often across every session as JSON, for example
+ * {@code /api/trending?limit=10}, with the estimated decayed count of each.
+ *
+ * @see TrendingQueries
+ *
+ * @author Colin Bindi
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2022
+ */
+public class TrendingApiServlet extends HttpServlet {
+	/** ID used for serialization, which we are not using. */
+	private static final long serialVersionUID = 1L;
+
+	/** The number of queries returned if no limit is given. */
+	public static final int DEFAULT_LIMIT = 10;
+
+	/** The most queries allowed. */
+	public static final int MAX_LIMIT = 50;
+
+	/**
+	 * The inverted index.
+	 */
+	public ThreadSafeInvertedIndex index;
+
+	/**
+	 * The work queue.
+	 */
+	public WorkQueue workQueue;
+
+	/**
+	 * Servlet Constructor
+	 *
+	 * @param index the inverted index
+	 * @param workQueue the work queue
+	 */
+	public TrendingApiServlet(ThreadSafeInvertedIndex index, WorkQueue workQueue) {
+		this.index = index;
+		this.workQueue = workQueue;
+	}
+
+	/**
+	 * Writes the trending queries as JSON, at most "limit" of them.
+	 */
+	@Override
+	protected void doGet(HttpServletRequest request,
+			HttpServletResponse response) throws ServletException, IOException {
+
+		response.setContentType("application/json;charset=UTF-8");
+		response.setStatus(HttpServletResponse.SC_OK);
+		response.setHeader("Cache-Control", "no-cache");
+
+		int limit = IndexServlet.limit(request.getParameter("limit"), DEFAULT_LIMIT, MAX_LIMIT);
+		List<Trend> trends = TrendingQueries.getShared().top(limit);
+
+		PrintWriter out = response.getWriter();
+
+		out.write("{\"limit\":" + limit);
+		out.write(",\"trending\":[");
+
+		for (int i = 0; i < trends.size(); i++) {
+			Trend trend = trends.get(i);
+
+			out.write(i == 0 ? "{" : ",{");
+			out.write("\"query\":");
+			SearchApiServlet.string(out, trend.getQuery());
+			out.write(",\"score\":" + trend.getScore());
+			out.write('}');
+		}
+
+		out.write("]}");
+		out.flush();
+	}
+}
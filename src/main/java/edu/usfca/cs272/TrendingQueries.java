@@ -0,0 +1,380 @@
+package edu.usfca.cs272;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.regex.Pattern;
+
+/**
+ * Tracks the queries searched most often across every session, in memory that
+ * does not grow with the number of searches. Time is divided into windows, and
+ * each window keeps a Count-Min sketch, which estimates how often any query
+ * was searched in the window, and a Space-Saving summary, which keeps the few
+ * queries most likely to be the most searched. Only the most recent windows
+ * are kept, and each window counts for a fraction of the window after it, so
+ * queries that were popular long ago fade out.
+ *
+ * Counting a search only increments atomic counters in the sketch and updates
+ * one small summary, so searches from different threads rarely wait for each
+ * other.
+ *
+ * @author Colin Bindi
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2022
+ */
+public class TrendingQueries {
+	/** The default number of windows kept. */
+	public static final int DEFAULT_WINDOWS = 6;
+
+	/** The default length of a window in milliseconds. */
+	public static final long DEFAULT_WINDOW_LENGTH = TimeUnit.MINUTES.toMillis(10);
+
+	/** The default weight of a window relative to the window after it. */
+	public static final double DEFAULT_DECAY = 0.5;
+
+	/** The default number of queries each window keeps in its summary. */
+	public static final int DEFAULT_CAPACITY = 64;
+
+	/** The number of rows in each sketch. */
+	public static final int DEPTH = 4;
+
+	/** The number of counters in each row of a sketch. */
+	public static final int WIDTH = 2048;
+
+	/** The longest query tracked, so the summaries stay bounded in memory. */
+	public static final int MAX_QUERY_LENGTH = 100;
+
+	/** Matches runs of whitespace in a query. */
+	private static final Pattern SPACES = Pattern.compile("\\s+");
+
+	/** The tracker used by the servlets. */
+	private static volatile TrendingQueries shared = new TrendingQueries(DEFAULT_WINDOWS, DEFAULT_WINDOW_LENGTH, DEFAULT_DECAY, DEFAULT_CAPACITY);
+
+	/** The windows, each at the position of its number modulo the number of windows. */
+	private final AtomicReferenceArray<Window> windows;
+
+	/** The length of a window in milliseconds. */
+	private final long windowLength;
+
+	/** The weight of a window relative to the window after it. */
+	private final double decay;
+
+	/** The number of queries each window keeps in its summary. */
+	private final int capacity;
+
+	/**
+	 * Initializes a tracker with no searches.
+	 *
+	 * @param windows the number of windows kept
+	 * @param windowLength the length of a window in milliseconds
+	 * @param decay the weight of a window relative to the window after it
+	 * @param capacity the number of queries each window keeps in its summary
+	 */
+	public TrendingQueries(int windows, long windowLength, double decay, int capacity) {
+		this.windows = new AtomicReferenceArray<>(Math.max(windows, 1));
+		this.windowLength = Math.max(windowLength, 1);
+		this.decay = Math.max(0, Math.min(decay, 1));
+		this.capacity = Math.max(capacity, 1);
+	}
+
+	/**
+	 * Gets the tracker used by the servlets.
+	 *
+	 * @return the shared tracker
+	 */
+	public static TrendingQueries getShared() {
+		return shared;
+	}
+
+	/**
+	 * Replaces the tracker used by the servlets, for example to use shorter
+	 * windows.
+	 *
+	 * @param tracker the new shared tracker
+	 */
+	public static void setShared(TrendingQueries tracker) {
+		shared = tracker;
+	}
+
+	/**
+	 * Counts a search. Queries are compared ignoring case and extra whitespace,
+	 * and blank queries are not counted.
+	 *
+	 * @param query the raw query
+	 */
+	public void add(String query) {
+		String key = normalize(query);
+
+		if (key.isEmpty()) {
+			return;
+		}
+
+		window(System.currentTimeMillis() / windowLength).add(key);
+	}
+
+	/**
+	 * Returns the queries with the highest decayed counts over the recent
+	 * windows, from highest to lowest and alphabetically among equal counts.
+	 * Counts are estimates and never lower than the true counts.
+	 *
+	 * @param limit the most queries returned
+	 * @return the trending queries
+	 */
+	public List<Trend> top(int limit) {
+		long now = System.currentTimeMillis() / windowLength;
+		List<Window> recent = new ArrayList<>(windows.length());
+		Set<String> candidates = new HashSet<>();
+
+		for (int i = 0; i < windows.length(); i++) {
+			Window window = windows.get(i);
+
+			if (window != null && now - window.number >= 0 && now - window.number < windows.length()) {
+				recent.add(window);
+				window.candidates(candidates);
+			}
+		}
+
+		List<Trend> trends = new ArrayList<>(candidates.size());
+
+		for (String query : candidates) {
+			long hash = UrlSeenSet.fingerprint(query);
+			double score = 0;
+
+			for (Window window : recent) {
+				score += window.estimate(query, hash) * Math.pow(decay, now - window.number);
+			}
+
+			trends.add(new Trend(query, score));
+		}
+
+		trends.sort(Comparator.comparingDouble(Trend::getScore).reversed().thenComparing(Trend::getQuery));
+		return trends.subList(0, Math.min(Math.max(limit, 0), trends.size()));
+	}
+
+	/**
+	 * Gets the window with a number, replacing the older window at its position
+	 * if needed.
+	 *
+	 * @param number the window number
+	 * @return the window
+	 */
+	private Window window(long number) {
+		int position = (int) Math.floorMod(number, (long) windows.length());
+		Window window = windows.get(position);
+
+		while (window == null || window.number < number) {
+			Window fresh = new Window(number, capacity);
+
+			if (windows.compareAndSet(position, window, fresh)) {
+				return fresh;
+			}
+
+			window = windows.get(position);
+		}
+
+		return window;
+	}
+
+	/**
+	 * Lowercases a query, collapses its whitespace, and shortens it to the
+	 * longest query tracked.
+	 *
+	 * @param query the raw query
+	 * @return the normalized query, which is empty if the query is blank
+	 */
+	private static String normalize(String query) {
+		if (query == null) {
+			return "";
+		}
+
+		String key = SPACES.matcher(query.strip()).replaceAll(" ").toLowerCase(Locale.ROOT);
+		return key.length() > MAX_QUERY_LENGTH ? key.substring(0, MAX_QUERY_LENGTH) : key;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Trending: %d windows of %d minutes", windows.length(), TimeUnit.MILLISECONDS.toMinutes(windowLength));
+	}
+
+	/**
+	 * A trending query and its decayed count.
+	 */
+	public static class Trend {
+		/** The normalized query. */
+		private final String query;
+
+		/** The estimated decayed count. */
+		private final double score;
+
+		/**
+		 * Initializes a trend.
+		 *
+		 * @param query the normalized query
+		 * @param score the estimated decayed count
+		 */
+		public Trend(String query, double score) {
+			this.query = query;
+			this.score = score;
+		}
+
+		/**
+		 * Returns the normalized query.
+		 *
+		 * @return the query
+		 */
+		public String getQuery() {
+			return query;
+		}
+
+		/**
+		 * Returns the estimated decayed count.
+		 *
+		 * @return the score
+		 */
+		public double getScore() {
+			return score;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s (%.2f)", query, score);
+		}
+	}
+
+	/**
+	 * The searches counted during one window of time.
+	 */
+	private static class Window {
+		/** The window number, which is the time divided by the window length. */
+		private final long number;
+
+		/** The Count-Min sketch, with each row after the one before. */
+		private final AtomicLongArray sketch;
+
+		/** The Space-Saving summary of each monitored query to its count. */
+		private final HashMap<String, Counter> summary;
+
+		/** The most queries monitored by the summary. */
+		private final int capacity;
+
+		/**
+		 * Initializes an empty window.
+		 *
+		 * @param number the window number
+		 * @param capacity the most queries monitored by the summary
+		 */
+		public Window(long number, int capacity) {
+			this.number = number;
+			this.sketch = new AtomicLongArray(DEPTH * WIDTH);
+			this.summary = new HashMap<>();
+			this.capacity = capacity;
+		}
+
+		/**
+		 * Counts a search in the sketch and the summary. A query not monitored by a
+		 * full summary replaces the query with the lowest count, taking over that
+		 * count plus one, as Space-Saving does.
+		 *
+		 * @param query the normalized query
+		 */
+		public void add(String query) {
+			long hash = UrlSeenSet.fingerprint(query);
+
+			for (int row = 0; row < DEPTH; row++) {
+				sketch.incrementAndGet(cell(hash, row));
+			}
+
+			synchronized (summary) {
+				Counter counter = summary.get(query);
+
+				if (counter != null) {
+					counter.count++;
+				} else if (summary.size() < capacity) {
+					summary.put(query, new Counter(1));
+				} else {
+					Map.Entry<String, Counter> lowest = null;
+
+					for (Map.Entry<String, Counter> entry : summary.entrySet()) {
+						if (lowest == null || entry.getValue().count < lowest.getValue().count) {
+							lowest = entry;
+						}
+					}
+
+					summary.remove(lowest.getKey());
+					summary.put(query, new Counter(lowest.getValue().count + 1));
+				}
+			}
+		}
+
+		/**
+		 * Estimates how often a query was searched in this window. Both the sketch
+		 * and the summary can only overestimate, so the lower of the two is used.
+		 *
+		 * @param query the normalized query
+		 * @param hash the fingerprint of the query
+		 * @return the estimated count
+		 */
+		public long estimate(String query, long hash) {
+			long estimate = Long.MAX_VALUE;
+
+			for (int row = 0; row < DEPTH; row++) {
+				estimate = Math.min(estimate, sketch.get(cell(hash, row)));
+			}
+
+			synchronized (summary) {
+				Counter counter = summary.get(query);
+				return counter == null ? estimate : Math.min(estimate, counter.count);
+			}
+		}
+
+		/**
+		 * Adds the queries monitored by the summary to a set.
+		 *
+		 * @param candidates the set to add to
+		 */
+		public void candidates(Set<String> candidates) {
+			synchronized (summary) {
+				candidates.addAll(summary.keySet());
+			}
+		}
+
+		/**
+		 * Returns the position of a counter in the sketch, deriving the hash of
+		 * each row from the two halves of the fingerprint.
+		 *
+		 * @param hash the fingerprint of the query
+		 * @param row the row of the sketch
+		 * @return the position in the sketch
+		 */
+		private static int cell(long hash, int row) {
+			int first = (int) hash;
+			int second = (int) (hash >>> 32) | 1;
+			return row * WIDTH + Math.floorMod(first + row * second, WIDTH);
+		}
+	}
+
+	/**
+	 * The count of a query monitored by a summary.
+	 */
+	private static class Counter {
+		/** The count, which may include searches of the query it replaced. */
+		private long count;
+
+		/**
+		 * Initializes a counter.
+		 *
+		 * @param count the initial count
+		 */
+		public Counter(long count) {
+			this.count = count;
+		}
+	}
+}
@@ -0,0 +1,521 @@
+package edu.usfca.cs272;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A concurrent set of the links seen by the crawler. Instead of storing
+ * {@link URL} objects, whose {@code equals} and {@code hashCode} may resolve
+ * host names, each link is reduced to a 64-bit fingerprint of its normalized
+ * string form. The fingerprints are kept in primitive open-addressing tables
+ * of longs, about 11 to 21 bytes per link, spread over many segments with
+ * their own locks so threads adding links rarely wait for each other.
+ *
+ * For very large crawls the fingerprints can be replaced by a Bloom filter:
+ * memory then stays at about ten bits per expected link, at the cost of
+ * occasionally treating a new link as seen (or, when two threads add the same
+ * new link at the same moment, both as new). The filter is not placed in front
+ * of the fingerprints, since a link the filter has not seen must still be
+ * added to the table, and checking the filter costs more than one probe of
+ * the table.
+ *
+ * Two different links share a fingerprint with a probability of about
+ * {@code n^2 / 2^65} for {@code n} links, which is negligible even for
+ * millions of links.
+ *
+ * @author Colin Bindi
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2022
+ */
+public class UrlSeenSet {
+	/** The default false positive rate of the Bloom filter. */
+	public static final double DEFAULT_FALSE_POSITIVES = 0.01;
+
+	/** The number of bits of a fingerprint used to choose its segment. */
+	private static final int SEGMENT_BITS = 6;
+
+	/** The segments holding the fingerprints, or {@code null} if only the Bloom filter is used. */
+	private final FingerprintTable[] segments;
+
+	/** The Bloom filter, or {@code null} if the fingerprints are used. */
+	private final BloomFilter bloom;
+
+	/**
+	 * Initializes an empty set of fingerprints.
+	 */
+	public UrlSeenSet() {
+		this(0);
+	}
+
+	/**
+	 * Initializes an empty set of fingerprints sized for the expected number of
+	 * links, which grows if more are added.
+	 *
+	 * @param expected the expected number of links
+	 */
+	public UrlSeenSet(int expected) {
+		this(segments(expected), null);
+	}
+
+	/**
+	 * Initializes an empty set that only uses a Bloom filter sized for the
+	 * expected number of links, so new links are sometimes treated as seen.
+	 *
+	 * @param expected the expected number of links
+	 * @param falsePositives the false positive rate of the Bloom filter
+	 */
+	public UrlSeenSet(int expected, double falsePositives) {
+		this(null, new BloomFilter(Math.max(expected, 1), falsePositives));
+	}
+
+	/**
+	 * Initializes a set from its parts.
+	 *
+	 * @param segments the segments holding the fingerprints, or {@code null} if only the Bloom filter is used
+	 * @param bloom the Bloom filter, or {@code null} if the fingerprints are used
+	 */
+	private UrlSeenSet(FingerprintTable[] segments, BloomFilter bloom) {
+		this.segments = segments;
+		this.bloom = bloom;
+	}
+
+	/**
+	 * Creates the empty segments for the expected number of links.
+	 *
+	 * @param expected the expected number of links
+	 * @return the segments
+	 */
+	private static FingerprintTable[] segments(int expected) {
+		FingerprintTable[] segments = new FingerprintTable[1 << SEGMENT_BITS];
+
+		for (int i = 0; i < segments.length; i++) {
+			segments[i] = new FingerprintTable(Math.max(expected, 0) >>> SEGMENT_BITS);
+		}
+
+		return segments;
+	}
+
+	/**
+	 * Writes this set to a binary file. Links added while writing may or may not
+	 * be included.
+	 *
+	 * @param path the file to write
+	 * @throws IOException if an I/O error occurs
+	 *
+	 * @see #read(Path)
+	 */
+	public void write(Path path) throws IOException {
+		try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+			output.writeBoolean(segments != null);
+
+			if (segments != null) {
+				long[][] copies = new long[segments.length][];
+				int count = 0;
+
+				for (int i = 0; i < segments.length; i++) {
+					copies[i] = segments[i].toArray();
+					count += copies[i].length;
+				}
+
+				output.writeInt(count);
+
+				for (long[] copy : copies) {
+					for (long fingerprint : copy) {
+						output.writeLong(fingerprint);
+					}
+				}
+			}
+
+			output.writeBoolean(bloom != null);
+
+			if (bloom != null) {
+				output.writeLong(bloom.size);
+				output.writeInt(bloom.hashes);
+
+				for (int i = 0; i < bloom.bits.length(); i++) {
+					output.writeLong(bloom.bits.get(i));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads a set written by {@link #write(Path)}. A file holding both the
+	 * fingerprints and a Bloom filter, as written by earlier versions, is read as
+	 * the fingerprints alone.
+	 *
+	 * @param path the file to read
+	 * @return the set read
+	 * @throws IOException if an I/O error occurs or the file is malformed
+	 */
+	public static UrlSeenSet read(Path path) throws IOException {
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+			if (input.readBoolean()) {
+				int count = input.readInt();
+
+				if (count < 0) {
+					throw new IOException("Malformed fingerprints in " + path);
+				}
+
+				FingerprintTable[] segments = segments(count);
+
+				for (int i = 0; i < count; i++) {
+					long fingerprint = input.readLong();
+					segments[segment(fingerprint)].add(fingerprint);
+				}
+
+				return new UrlSeenSet(segments, null);
+			}
+
+			if (input.readBoolean()) {
+				long size = input.readLong();
+				int hashes = input.readInt();
+
+				if (size <= 0 || size % 64 != 0 || size / 64 > Integer.MAX_VALUE || hashes <= 0) {
+					throw new IOException("Malformed Bloom filter in " + path);
+				}
+
+				AtomicLongArray bits = new AtomicLongArray((int) (size / 64));
+
+				for (int i = 0; i < bits.length(); i++) {
+					bits.set(i, input.readLong());
+				}
+
+				return new UrlSeenSet(null, new BloomFilter(bits, size, hashes));
+			}
+
+			throw new IOException("Empty seen set in " + path);
+		}
+	}
+
+	/**
+	 * Adds a link if it has not been seen.
+	 *
+	 * @param url the normalized link
+	 * @return {@code true} if the link had not been seen
+	 */
+	public boolean add(URL url) {
+		return add(url.toString());
+	}
+
+	/**
+	 * Adds a link if it has not been seen.
+	 *
+	 * @param url the normalized link
+	 * @return {@code true} if the link had not been seen
+	 */
+	public boolean add(String url) {
+		long fingerprint = fingerprint(url);
+
+		if (segments == null) {
+			return !bloom.put(fingerprint);
+		}
+
+		return segments[segment(fingerprint)].add(fingerprint);
+	}
+
+	/**
+	 * Determines whether a link has been seen.
+	 *
+	 * @param url the normalized link
+	 * @return {@code true} if the link has been seen
+	 */
+	public boolean contains(String url) {
+		long fingerprint = fingerprint(url);
+
+		if (segments == null) {
+			return bloom.mightContain(fingerprint);
+		}
+
+		return segments[segment(fingerprint)].contains(fingerprint);
+	}
+
+	/**
+	 * Returns the number of links seen.
+	 *
+	 * @return the number of links seen, or -1 if only the Bloom filter is used
+	 */
+	public int size() {
+		if (segments == null) {
+			return -1;
+		}
+
+		int size = 0;
+
+		for (FingerprintTable segment : segments) {
+			size += segment.size();
+		}
+
+		return size;
+	}
+
+	/**
+	 * Chooses the segment of a fingerprint from its highest bits, leaving the
+	 * lower bits to choose its slot in the segment.
+	 *
+	 * @param fingerprint the fingerprint
+	 * @return the segment
+	 */
+	private static int segment(long fingerprint) {
+		return (int) (fingerprint >>> (64 - SEGMENT_BITS));
+	}
+
+	/**
+	 * Computes the 64-bit fingerprint of a link, using FNV-1a over the characters
+	 * followed by the MurmurHash3 finalizer to spread the bits.
+	 *
+	 * @param url the normalized link
+	 * @return the fingerprint
+	 */
+	public static long fingerprint(String url) {
+		long hash = 0xcbf29ce484222325L;
+
+		for (int i = 0; i < url.length(); i++) {
+			hash ^= url.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+
+		return mix(hash);
+	}
+
+	/**
+	 * The MurmurHash3 64-bit finalizer.
+	 *
+	 * @param hash the value to mix
+	 * @return the mixed value
+	 */
+	static long mix(long hash) {
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+
+	/**
+	 * A set of fingerprints in an open-addressing table of longs with linear
+	 * probing, which doubles once it is three quarters full. Zero marks an empty
+	 * slot, so the zero fingerprint is tracked separately.
+	 */
+	private static class FingerprintTable {
+		/** The slots, each a fingerprint or zero if empty. */
+		private long[] slots;
+
+		/** The number of fingerprints in the slots. */
+		private int size;
+
+		/** Whether the zero fingerprint was added. */
+		private boolean zero;
+
+		/**
+		 * Initializes an empty table.
+		 *
+		 * @param expected the expected number of fingerprints
+		 */
+		public FingerprintTable(int expected) {
+			int capacity = 16;
+
+			while (capacity < Integer.highestOneBit(Integer.MAX_VALUE) && capacity * 3L < expected * 4L) {
+				capacity <<= 1;
+			}
+
+			this.slots = new long[capacity];
+		}
+
+		/**
+		 * Adds a fingerprint if it is not in the table.
+		 *
+		 * @param fingerprint the fingerprint
+		 * @return {@code true} if the fingerprint was not in the table
+		 */
+		public synchronized boolean add(long fingerprint) {
+			if (fingerprint == 0) {
+				boolean added = !zero;
+				zero = true;
+				return added;
+			}
+
+			int slot = find(slots, fingerprint);
+
+			if (slots[slot] == fingerprint) {
+				return false;
+			}
+
+			slots[slot] = fingerprint;
+			size++;
+
+			if (size * 4L > slots.length * 3L) {
+				grow();
+			}
+
+			return true;
+		}
+
+		/**
+		 * Determines whether a fingerprint is in the table.
+		 *
+		 * @param fingerprint the fingerprint
+		 * @return {@code true} if the fingerprint is in the table
+		 */
+		public synchronized boolean contains(long fingerprint) {
+			return fingerprint == 0 ? zero : slots[find(slots, fingerprint)] == fingerprint;
+		}
+
+		/**
+		 * Returns the number of fingerprints in the table.
+		 *
+		 * @return the number of fingerprints
+		 */
+		public synchronized int size() {
+			return zero ? size + 1 : size;
+		}
+
+		/**
+		 * Copies the fingerprints in the table.
+		 *
+		 * @return the fingerprints
+		 */
+		public synchronized long[] toArray() {
+			long[] copy = new long[size()];
+			int i = 0;
+
+			if (zero) {
+				copy[i++] = 0;
+			}
+
+			for (long fingerprint : slots) {
+				if (fingerprint != 0) {
+					copy[i++] = fingerprint;
+				}
+			}
+
+			return copy;
+		}
+
+		/**
+		 * Doubles the number of slots, moving every fingerprint.
+		 */
+		private void grow() {
+			long[] larger = new long[slots.length * 2];
+
+			for (long fingerprint : slots) {
+				if (fingerprint != 0) {
+					larger[find(larger, fingerprint)] = fingerprint;
+				}
+			}
+
+			slots = larger;
+		}
+
+		/**
+		 * Finds the slot holding a fingerprint, or the empty slot where it belongs.
+		 *
+		 * @param slots the slots to search, which must have an empty slot
+		 * @param fingerprint the nonzero fingerprint
+		 * @return the slot
+		 */
+		private static int find(long[] slots, long fingerprint) {
+			int mask = slots.length - 1;
+			int slot = (int) fingerprint & mask;
+
+			while (slots[slot] != 0 && slots[slot] != fingerprint) {
+				slot = (slot + 1) & mask;
+			}
+
+			return slot;
+		}
+	}
+
+	/**
+	 * A lock-free Bloom filter over fingerprints, using double hashing to choose
+	 * the bits.
+	 */
+	private static class BloomFilter {
+		/** The bits, packed into longs. */
+		private final AtomicLongArray bits;
+
+		/** The number of bits. */
+		private final long size;
+
+		/** The number of bits set per fingerprint. */
+		private final int hashes;
+
+		/**
+		 * Initializes an empty filter.
+		 *
+		 * @param expected the expected number of fingerprints
+		 * @param falsePositives the false positive rate at the expected size
+		 */
+		public BloomFilter(int expected, double falsePositives) {
+			double rate = Math.min(Math.max(falsePositives, 1e-9), 0.5);
+			long optimal = (long) Math.ceil(-expected * Math.log(rate) / (Math.log(2) * Math.log(2)));
+			this.size = Math.max(64, (optimal + 63) / 64 * 64);
+			this.bits = new AtomicLongArray((int) (size / 64));
+			this.hashes = Math.max(1, (int) Math.round((double) size / expected * Math.log(2)));
+		}
+
+		/**
+		 * Initializes a filter from its bits.
+		 *
+		 * @param bits the bits, packed into longs
+		 * @param size the number of bits
+		 * @param hashes the number of bits set per fingerprint
+		 */
+		public BloomFilter(AtomicLongArray bits, long size, int hashes) {
+			this.bits = bits;
+			this.size = size;
+			this.hashes = hashes;
+		}
+
+		/**
+		 * Sets the bits of a fingerprint.
+		 *
+		 * @param fingerprint the fingerprint
+		 * @return {@code true} if every bit was already set
+		 */
+		public boolean put(long fingerprint) {
+			long step = mix(fingerprint ^ 0x9e3779b97f4a7c15L) | 1;
+			boolean present = true;
+
+			for (int i = 0; i < hashes; i++) {
+				long bit = Long.remainderUnsigned(fingerprint + i * step, size);
+				long mask = 1L << bit;
+				int index = (int) (bit >>> 6);
+
+				if ((bits.getAndAccumulate(index, mask, (a, b) -> a | b) & mask) == 0) {
+					present = false;
+				}
+			}
+
+			return present;
+		}
+
+		/**
+		 * Checks the bits of a fingerprint.
+		 *
+		 * @param fingerprint the fingerprint
+		 * @return {@code false} if the fingerprint was definitely never added
+		 */
+		public boolean mightContain(long fingerprint) {
+			long step = mix(fingerprint ^ 0x9e3779b97f4a7c15L) | 1;
+
+			for (int i = 0; i < hashes; i++) {
+				long bit = Long.remainderUnsigned(fingerprint + i * step, size);
+
+				if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+	}
+}
@@ -1,23 +1,32 @@
 package edu.usfca.cs272;
 
-import static opennlp.tools.stemmer.snowball.SnowballStemmer.ALGORITHM.ENGLISH;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
 import opennlp.tools.stemmer.Stemmer;
-import opennlp.tools.stemmer.snowball.SnowballStemmer;
 
 /**
  * Class responsible for crawling the web.
@@ -27,10 +36,8 @@ import opennlp.tools.stemmer.snowball.SnowballStemmer;
  * @version Spring 2022
  */
 public class WebCrawler {
-	/**
-	 * The total number of URLs to crawl.
-	 */
-	private final int max;
+	/** Logger used for this class. */
+	private static final Logger log = LogManager.getLogger();
 	
 	/**
 	 * The inverted index.
@@ -43,14 +50,44 @@ public class WebCrawler {
 	private final WorkQueue workQueue;
 	
 	/**
-	 * Set containing each URL.
+	 * The frontier deciding which links are crawled and when.
+	 */
+	private final CrawlFrontier frontier;
+	
+	/**
+	 * The non-blocking fetcher, or {@code null} to fetch on the work queue.
+	 */
+	private final AsyncHtmlFetcher fetcher;
+	
+	/**
+	 * The pages crawled, shared with the servlets.
+	 */
+	private final PageStore pages;
+	
+	/**
+	 * Whether pages already crawled are fetched conditionally and skipped if unchanged.
+	 */
+	private final boolean recrawl;
+	
+	/**
+	 * The number of pages skipped because they were unchanged.
 	 */
-	private Set<URL> lookup;
+	private final AtomicInteger unchanged;
 	
 	/**
-	 * Map containing each Page.
+	 * The number of pages kept as they were because they could not be fetched again.
 	 */
-	private static Map<String, Page> pages;
+	private final AtomicInteger kept;
+	
+	/**
+	 * Skips pages that are near duplicates of pages already indexed, or {@code null} to index every page.
+	 */
+	private volatile NearDuplicateDetector duplicates;
+	
+	/**
+	 * Writes checkpoints periodically, or {@code null} if not started.
+	 */
+	private ScheduledExecutorService checkpoints;
 	
 	/**
 	 * Constructor for the web crawler.
@@ -60,13 +97,88 @@ public class WebCrawler {
 	 * @param workQueue the work queue
 	 */
 	public WebCrawler(ThreadSafeInvertedIndex index, int max, WorkQueue workQueue) {
-		this.max = max;
+		this(index, max, workQueue, null);
+	}
+	
+	/**
+	 * Constructor for the web crawler. When recrawling, the pages already
+	 * crawled are kept and fetched again only if the server reports a change
+	 * (using their "ETag" and "Last-Modified" headers), and a page whose content
+	 * is identical to what was crawled before is not indexed again.
+	 * 
+	 * @param index the inverted index
+	 * @param max the total number of URLs to crawl
+	 * @param workQueue the work queue
+	 * @param recrawl whether to skip pages that have not changed since they were crawled
+	 */
+	public WebCrawler(ThreadSafeInvertedIndex index, int max, WorkQueue workQueue, boolean recrawl) {
+		this(index, max, workQueue, null, CrawlFrontier.DEFAULT_CONCURRENCY, CrawlFrontier.DEFAULT_DELAY, new UrlSeenSet(), recrawl);
+	}
+	
+	/**
+	 * Constructor for the web crawler.
+	 * 
+	 * @param index the inverted index
+	 * @param max the total number of URLs to crawl
+	 * @param workQueue the work queue
+	 * @param fetcher the non-blocking fetcher, or {@code null} to fetch on the work queue
+	 */
+	public WebCrawler(ThreadSafeInvertedIndex index, int max, WorkQueue workQueue, AsyncHtmlFetcher fetcher) {
+		this(index, max, workQueue, fetcher, CrawlFrontier.DEFAULT_CONCURRENCY, CrawlFrontier.DEFAULT_DELAY);
+	}
+	
+	/**
+	 * Constructor for the web crawler.
+	 * 
+	 * @param index the inverted index
+	 * @param max the total number of URLs to crawl
+	 * @param workQueue the work queue
+	 * @param fetcher the non-blocking fetcher, or {@code null} to fetch on the work queue
+	 * @param concurrency the number of fetches in flight per host
+	 * @param delay the delay between starting fetches to the same host in milliseconds
+	 */
+	public WebCrawler(ThreadSafeInvertedIndex index, int max, WorkQueue workQueue, AsyncHtmlFetcher fetcher, int concurrency, long delay) {
+		this(index, max, workQueue, fetcher, concurrency, delay, new UrlSeenSet());
+	}
+	
+	/**
+	 * Constructor for the web crawler.
+	 * 
+	 * @param index the inverted index
+	 * @param max the total number of URLs to crawl
+	 * @param workQueue the work queue
+	 * @param fetcher the non-blocking fetcher, or {@code null} to fetch on the work queue
+	 * @param concurrency the number of fetches in flight per host
+	 * @param delay the delay between starting fetches to the same host in milliseconds
+	 * @param seen the set used to skip links already seen
+	 */
+	public WebCrawler(ThreadSafeInvertedIndex index, int max, WorkQueue workQueue, AsyncHtmlFetcher fetcher, int concurrency, long delay, UrlSeenSet seen) {
+		this(index, max, workQueue, fetcher, concurrency, delay, seen, false);
+	}
+	
+	/**
+	 * Constructor for the web crawler.
+	 * 
+	 * @param index the inverted index
+	 * @param max the total number of URLs to crawl
+	 * @param workQueue the work queue
+	 * @param fetcher the non-blocking fetcher, or {@code null} to fetch on the work queue
+	 * @param concurrency the number of fetches in flight per host
+	 * @param delay the delay between starting fetches to the same host in milliseconds
+	 * @param seen the set used to skip links already seen
+	 * @param recrawl whether to skip pages that have not changed since they were crawled
+	 */
+	public WebCrawler(ThreadSafeInvertedIndex index, int max, WorkQueue workQueue, AsyncHtmlFetcher fetcher, int concurrency, long delay, UrlSeenSet seen, boolean recrawl) {
 		this.index = index;
 		this.workQueue = workQueue;
-		this.lookup = new HashSet<URL>();
-		pages = new HashMap<String, Page>();
-		
+		this.fetcher = fetcher;
+		this.frontier = new CrawlFrontier(max, concurrency, delay, workQueue, this::crawl, seen);
+		this.recrawl = recrawl;
+		this.unchanged = new AtomicInteger();
+		this.kept = new AtomicInteger();
+		this.pages = PageStore.getShared();
 	}
+	
 	/**
 	 * Traverses through the directory and its sub-directories, outputting all
 	 * paths to the console. For files, also includes the file size in bytes.
@@ -77,80 +189,323 @@ public class WebCrawler {
 	public void build(String start) throws IOException {
 		URL base = new URL(start);
 		
-		lookup.add(base);
+		try {
+			base = LinkParser.normalize(base);
+		} catch (URISyntaxException e) {
+			throw new MalformedURLException(e.getMessage());
+		}
 		
-		Task task = new Task(base, base);
+		frontier.add(base, 0);
+	}
+	
+	/**
+	 * Writes the crawl state to a directory: the index, the crawled pages, the
+	 * links waiting to be crawled, and the links already seen. Crawling pauses
+	 * until every page in flight has been processed, so the files agree with
+	 * each other, and continues once they are written. Each file is written to a
+	 * temporary file first and then moved into place. Pages keep the validators,
+	 * content hash, and links used to skip unchanged pages when recrawling.
+	 * 
+	 * @param directory the directory to write to
+	 * @throws IOException if an I/O error occurs
+	 * 
+	 * @see #resume(Path)
+	 */
+	public void checkpoint(Path directory) throws IOException {
+		Files.createDirectories(directory);
+		
+		frontier.checkpoint(directory, () -> {
+			Path indexTemp = directory.resolve("index.json.tmp");
+			index.toJson(indexTemp);
+			
+			Path pagesTemp = directory.resolve("pages.tsv.tmp");
+			
+			try (BufferedWriter writer = Files.newBufferedWriter(pagesTemp, UTF_8)) {
+				for (Page page : pages.values()) {
+					writer.write(String.join("\t", escape(page.getLocation()), escape(page.getSnippet()),
+							escape(page.getTitle()), escape(page.getLength()), escape(page.getTimeStamp()),
+							escape(page.getEtag()), escape(page.getLastModified()), links(page)));
+					writer.newLine();
+				}
+			}
+			
+			replace(indexTemp, directory.resolve("index.json"));
+			replace(pagesTemp, directory.resolve("pages.tsv"));
+		});
 		
-		workQueue.execute(task);
+		log.info("Checkpointed {} pages to {}.", pages.size(), directory);
 	}
 	
 	/**
-	 * Builds text snippets
+	 * Restores the crawl state written by {@link #checkpoint(Path)} and queues
+	 * the links that were waiting to be crawled. The crawler should be created
+	 * with the seen set read from the same directory, so links already crawled
+	 * are not crawled again.
+	 * 
+	 * @param directory the directory to read from
+	 * @throws IOException if an I/O error occurs or a file is malformed
 	 * 
-	 * @param html the html
-	 * @return group the words
+	 * @see UrlSeenSet#read(Path)
 	 */
-	public String fetchSnippet(String html) {
-		if (html == null) {
-			html = "";
-			return "";
+	public void resume(Path directory) throws IOException {
+		InvertedIndex local = new InvertedIndex();
+		SimpleJsonReader.readNestedMap(directory.resolve("index.json"), local);
+		index.addAll(local);
+		
+		try (BufferedReader reader = Files.newBufferedReader(directory.resolve("pages.tsv"), UTF_8)) {
+			String line;
+			
+			while ((line = reader.readLine()) != null) {
+				String[] fields = line.split("\t", -1);
+				
+				// checkpoints written before validators were saved have only 5 fields
+				if (fields.length != 5 && fields.length != 8) {
+					throw new IOException("Malformed page line: " + line);
+				}
+				
+				Page page = new Page(unescape(fields[0]), unescape(fields[1]), unescape(fields[2]), unescape(fields[3]), unescape(fields[4]));
+				
+				if (fields.length == 8) {
+					page.setEtag(fields[5].isEmpty() ? null : unescape(fields[5]));
+					page.setLastModified(fields[6].isEmpty() ? null : unescape(fields[6]));
+					links(page, fields[7]);
+				}
+				
+				pages.put(page);
+			}
 		}
 		
-		String regex = "(?i)<p.*?>([^<>]{50,800})<?\\/?p.*?>";
+		int waiting = frontier.read(directory);
+		log.info("Resumed {} pages with {} links waiting from {}.", pages.size(), waiting, directory);
+	}
+	
+	/**
+	 * Starts writing a checkpoint periodically on a background thread until
+	 * {@link #stopCheckpoints()} is called.
+	 * 
+	 * @param directory the directory to write to
+	 * @param seconds the number of seconds between checkpoints
+	 */
+	public synchronized void startCheckpoints(Path directory, long seconds) {
+		stopCheckpoints();
+		
+		checkpoints = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "Checkpointer");
+			thread.setDaemon(true);
+			return thread;
+		});
 		
-		Pattern pattern = Pattern.compile(regex);
-		Matcher matcher = pattern.matcher(html);
+		checkpoints.scheduleWithFixedDelay(() -> {
+			try {
+				checkpoint(directory);
+			} catch (IOException e) {
+				log.warn("Unable to checkpoint to {}: {}", directory, e.getMessage());
+			}
+		}, seconds, seconds, TimeUnit.SECONDS);
+	}
+	
+	/**
+	 * Stops writing checkpoints periodically and waits for a checkpoint in
+	 * progress to finish.
+	 */
+	public synchronized void stopCheckpoints() {
+		if (checkpoints == null) {
+			return;
+		}
 		
-		String group = "";
+		checkpoints.shutdown();
 		
-		while (matcher.find()) {
-			group += matcher.group(matcher.groupCount());
-			group = group.replaceAll("[\\s]*?", "");
-			
+		try {
+			checkpoints.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
 		}
 		
-		if (group.length() > 400) {
-			group = group.substring(0, 400);
+		checkpoints = null;
+	}
+	
+	/**
+	 * Moves a temporary file into place, atomically if the file system allows.
+	 * 
+	 * @param temp the temporary file
+	 * @param target the file to replace
+	 * @throws IOException if an I/O error occurs
+	 */
+	static void replace(Path temp, Path target) throws IOException {
+		try {
+			Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
 		}
+	}
+	
+	/**
+	 * Formats the content hash and links of a page as one field: the hash
+	 * followed by each link, separated by spaces. The field is empty if the page
+	 * has no links recorded.
+	 * 
+	 * @param page the page
+	 * @return the field
+	 */
+	private static String links(Page page) {
+		if (page.getLinks() == null) {
+			return "";
+		}
+		
+		StringBuilder field = new StringBuilder(Long.toString(page.getHash()));
 		
-		if (group.startsWith(", ")) {
-			group = group.replaceFirst(", ", "");
+		for (URL link : page.getLinks()) {
+			field.append(' ').append(escape(link.toString()));
 		}
-
-		if (group == "") {
-			return "Contains links";
+		
+		return field.toString();
+	}
+	
+	/**
+	 * Reverses {@link #links(Page)}, setting the content hash and links of a
+	 * page.
+	 * 
+	 * @param page the page
+	 * @param field the field
+	 * @throws IOException if the field is malformed
+	 */
+	private static void links(Page page, String field) throws IOException {
+		if (field.isEmpty()) {
+			return;
 		}
 		
-		return group;
+		String[] parts = field.split(" ");
+		List<URL> links = new ArrayList<>(parts.length - 1);
+		
+		try {
+			page.setHash(Long.parseLong(parts[0]));
+			
+			for (int i = 1; i < parts.length; i++) {
+				links.add(new URL(unescape(parts[i])));
+			}
+		} catch (NumberFormatException | MalformedURLException e) {
+			throw new IOException("Malformed page links: " + field, e);
+		}
+		
+		page.setLinks(links);
 	}
 	
 	/**
-	 * Fetches the title
+	 * Escapes backslashes, tabs, and line breaks so a field fits on one line of
+	 * a tab-separated file.
 	 * 
-	 * @param html the html
-	 * @return group the match
+	 * @param field the field, which may be {@code null}
+	 * @return the escaped field
 	 */
-	public String fetchTitle(String html) {
-		if (html == null) {
-			html = "";
+	private static String escape(String field) {
+		if (field == null) {
 			return "";
 		}
 		
-		String regex = "(?is)<title>(.*?)<\\/title>";
+		StringBuilder escaped = new StringBuilder(field.length());
+		
+		for (int i = 0; i < field.length(); i++) {
+			char c = field.charAt(i);
+			
+			switch (c) {
+				case '\\' -> escaped.append("\\\\");
+				case '\t' -> escaped.append("\\t");
+				case '\n' -> escaped.append("\\n");
+				case '\r' -> escaped.append("\\r");
+				default -> escaped.append(c);
+			}
+		}
 		
-		Pattern pattern = Pattern.compile(regex);
-		Matcher matcher = pattern.matcher(html);
+		return escaped.toString();
+	}
+	
+	/**
+	 * Reverses {@link #escape(String)}.
+	 * 
+	 * @param field the escaped field
+	 * @return the original field
+	 */
+	private static String unescape(String field) {
+		if (field.indexOf('\\') < 0) {
+			return field;
+		}
 		
-		String group = "";
+		StringBuilder unescaped = new StringBuilder(field.length());
 		
-		if (matcher.find()) {
-			group = matcher.group(matcher.groupCount());
-			group = group.replaceAll("\n", "");
-			group = group.trim();
+		for (int i = 0; i < field.length(); i++) {
+			char c = field.charAt(i);
 			
+			if (c == '\\' && i + 1 < field.length()) {
+				char next = field.charAt(++i);
+				unescaped.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+			} else {
+				unescaped.append(c);
+			}
+		}
+		
+		return unescaped.toString();
+	}
+	
+	/**
+	 * Sets the detector used to skip pages that are near duplicates of pages
+	 * already indexed. Their links are still followed. The detector can be
+	 * shared between crawlers so later crawls are compared with earlier ones.
+	 * 
+	 * @param detector the detector, or {@code null} to index every page
+	 */
+	public void setDuplicateDetector(NearDuplicateDetector detector) {
+		this.duplicates = detector;
+	}
+	
+	/**
+	 * Gets the number of links crawled so far, including unchanged pages.
+	 * 
+	 * @return the number of links crawled
+	 */
+	public int getCrawled() {
+		return frontier.size();
+	}
+	
+	/**
+	 * Gets the number of pages skipped because they had not changed since they
+	 * were crawled.
+	 * 
+	 * @return the number of unchanged pages
+	 */
+	public int getUnchanged() {
+		return unchanged.get();
+	}
+	
+	/**
+	 * Gets the number of pages kept as they were because the recrawl could not
+	 * fetch them, for example after a timeout or a server error.
+	 * 
+	 * @return the number of kept pages
+	 */
+	public int getKept() {
+		return kept.get();
+	}
+	
+	/**
+	 * Gets the conditional request headers for a link, based on the headers
+	 * stored when its page was last crawled.
+	 * 
+	 * @param url the normalized link
+	 * @return the conditional request headers, which may be empty
+	 */
+	private Map<String, String> conditions(URL url) {
+		Page previous = recrawl ? pages.get(url.toString()) : null;
+		Map<String, String> conditions = new LinkedHashMap<>();
+		
+		if (previous != null && previous.getEtag() != null) {
+			conditions.put("If-None-Match", previous.getEtag());
 		}
 		
-		return group;
+		if (previous != null && previous.getLastModified() != null) {
+			conditions.put("If-Modified-Since", previous.getLastModified());
+		}
+		
+		return conditions;
 	}
 	
 	/**
@@ -160,183 +515,259 @@ public class WebCrawler {
 	 * @return the page
 	 */
 	public static Page getPage(String url) {
-		return pages.get(url);
+		return PageStore.getShared().get(url);
 	}
 	
 	/**
-	 * The non-static task class that will update the shared set
-	 * using the increment number.
+	 * Removes the page
+	 * 
+	 * @param url the link
+	 * @return the removed page or {@code null} if the page was not crawled
 	 */
-	public class Task implements Runnable {
-		/** The link. */
-		private URL url;
+	public static Page removePage(String url) {
+		return PageStore.getShared().remove(url);
+	}
+	
+	/**
+	 * Crawls a link once the frontier allows it, either by executing a blocking
+	 * task or by starting a non-blocking fetch whose response is parsed on the
+	 * work queue.
+	 * 
+	 * @param link the link to crawl
+	 * @param depth the number of links followed from the seed
+	 * @param done the callback to run when the fetch is complete
+	 */
+	private void crawl(URL link, int depth, Runnable done) {
+		if (fetcher == null) {
+			workQueue.execute(new Task(link, depth, done));
+			return;
+		}
 		
-		/**
-		 * The URL base
-		 */
-		private URL base;
-
-		/**
-		 * Initializes this task.
-		 *
-		 * @param url the link
-		 * @param base the base
-		 */
-		public Task(URL url, URL base) {
-			this.url = url;
-			this.base = url;
+		try {
+			URL url = LinkParser.normalize(link);
+			long start = System.nanoTime();
+			
+			workQueue.track(fetcher.fetch(url, conditions(url)).thenAccept(response -> {
+				done.run();
+				FetchResult result = FetchResult.of(url, response, System.nanoTime() - start);
+				workQueue.execute(() -> process(url, depth, result));
+			}));
+		} catch (MalformedURLException e) {
+			done.run();
+			frontier.complete();
+			System.out.println("MalformedURLException");
+		} catch (URISyntaxException e) {
+			done.run();
+			frontier.complete();
+			System.out.println("URISyntaxException");
 		}
-
-		@Override
-		public void run() {
-			try {
-				url = LinkParser.normalize(url);
-				
-				String html = HtmlFetcher.fetch(url, 3);
-				
-				String urlString = url.toString();
-				
-				pages.put(urlString, new Page(urlString, fetchSnippet(html), fetchTitle(html), HtmlFetcher.getContentLength(), LocalDateTime.now().format(DateTimeFormatter.ofPattern("EEEE, MMMM dd, yyyy 'at' HH:mm a"))));
-				
-				html = HtmlCleaner.stripBlockElements(html);
-				
-				ArrayList<URL> list = LinkParser.getValidLinks(base, html);
-				
-				synchronized (lookup) {
-					for (URL link : list) {
-						if (lookup.size() == max) {
-							break;
-						} else {
-							if (!lookup.contains(link)) {
-								lookup.add(link);
-								Task task = new Task(link, url);
-								workQueue.execute(task);
-							}
-						}
-					}
-				}
-				
-				html = HtmlCleaner.stripTags(html);
-				html = HtmlCleaner.stripEntities(html);
-				
-				
-				String[] words = TextParser.parse(html);
-				
-				Stemmer stemmer = new SnowballStemmer(ENGLISH);
-				
-				InvertedIndex local = new InvertedIndex();
-				
-				int i = 1;
-				
-				for (String word : words) {
-					local.add(stemmer.stem(word).toString(), urlString, i);
-					i++;
-				}
-				
-				index.addAll(local);
-			} catch (MalformedURLException e) {
-				System.out.println("MalformedURLException");
-			} catch (URISyntaxException e) {
-				System.out.println("URISyntaxException");
+	}
+	
+	/**
+	 * Scans the page in a single pass, then records the page, queues its links,
+	 * and adds its words to the index. Marks the link complete in the frontier
+	 * when done.
+	 * 
+	 * @param url the normalized link
+	 * @param depth the number of links followed from the seed
+	 * @param result the result of fetching the link
+	 */
+	private void process(URL url, int depth, FetchResult result) {
+		log.debug("Fetched {}.", result);
+		
+		try {
+			if (!skipUnchanged(url, depth, result)) {
+				scan(url, depth, result);
 			}
+		} finally {
+			frontier.complete();
 		}
 	}
 	
 	/**
-	 * Contains data for each page crawled
+	 * When recrawling, skips a page that has not changed since it was crawled:
+	 * either the server answered the conditional request with 304, or the html
+	 * has the same fingerprint as before. A page that could not be fetched again
+	 * (neither 200 nor 304, and not gone with 404 or 410) is skipped too and
+	 * counted as kept. The links found last time are queued again so the rest of
+	 * the site is still checked, but the index is left as it is.
+	 * 
+	 * @param url the normalized link
+	 * @param depth the number of links followed from the seed
+	 * @param result the result of fetching the link
+	 * @return {@code true} if the page was unchanged and skipped
 	 */
-	public class Page {
-		/** The normalized text file path. */
-		private final String location;
-		
-		/** The snippet. */
-		private String snippet;
+	private boolean skipUnchanged(URL url, int depth, FetchResult result) {
+		Page previous = recrawl ? pages.get(url.toString()) : null;
 		
-		/** The title. */
-		private String title;
-		
-		/** The length. */
-		private final String length;
+		if (previous == null || previous.getLinks() == null) {
+			return false;
+		}
 		
-		/** The timestamp. */
-		private final String timestamp;
+		String html = result.getHtml();
+		int status = result.getStatus();
 		
-		/**
-		 * Data from each page is stored
-		 * 
-		 * @param location the location
-		 * @param snippet the snippet
-		 * @param title the title
-		 * @param length the length
-		 * @param timestamp the timestamp
-		 */
-		public Page(String location, String snippet, String title, String length, String timestamp) {
-			this.location = location;
-			this.snippet = snippet;
-			this.title = title;
-			this.length = length;
-			this.timestamp = timestamp;
+		if (status != 200 && status != 304 && status != 404 && status != 410) {
+			log.debug("Keeping {} after a failed recrawl with status {}.", url, status);
+			kept.incrementAndGet();
+			
+			for (URL link : previous.getLinks()) {
+				frontier.add(link, depth + 1);
+			}
+			
+			return true;
 		}
 		
-		/**
-		 * Gets the location
-		 * 
-		 * @return location the location
-		 */
-		public String getLocation() {
-			return location;
+		if (!result.isNotModified() && (html == null || UrlSeenSet.fingerprint(html) != previous.getHash())) {
+			return false;
 		}
 		
-		/**
-		 * Gets the snippet
-		 * 
-		 * @return snippet the snippet
-		 */
-		public String getSnippet() {
-			return snippet;
+		if (!result.isNotModified()) {
+			// same content under new validators, so keep them for next time
+			previous.setEtag(result.getHeader("ETag"));
+			previous.setLastModified(result.getHeader("Last-Modified"));
 		}
 		
-		/**
-		 * Gets the title
-		 * 
-		 * @return title the title
-		 */
-		public String getTitle() {
-			return title;
+		unchanged.incrementAndGet();
+		
+		for (URL link : previous.getLinks()) {
+			frontier.add(link, depth + 1);
 		}
 		
-		/**
-		 * Sets the snippet
-		 * @param snippet the snippet
-		 */
-		public void setSnippet(String snippet) {
-			this.snippet = snippet;
+		return true;
+	}
+	
+	/**
+	 * Scans the page in a single pass, then queues its links, records the page,
+	 * and replaces its words in the index. A page that is a near duplicate of a
+	 * page already indexed is not recorded or indexed, and is removed if it was
+	 * indexed by an earlier crawl.
+	 * 
+	 * Only a successful html response replaces what is stored for the link. A
+	 * link that is gone (404 or 410) is removed from the index and the pages,
+	 * and any other failure leaves what was stored before untouched.
+	 * 
+	 * @param url the normalized link
+	 * @param depth the number of links followed from the seed
+	 * @param result the result of fetching the link
+	 */
+	private void scan(URL url, int depth, FetchResult result) {
+		String urlString = url.toString();
+		String html = result.getHtml();
+		
+		if (html == null) {
+			if (result.getStatus() == 404 || result.getStatus() == 410) {
+				index.removeLocation(urlString);
+				pages.remove(urlString);
+				
+				NearDuplicateDetector detector = duplicates;
+				
+				if (detector != null) {
+					detector.remove(urlString);
+				}
+			}
+			
+			return;
 		}
 		
-		/**
-		 * Sets the title
-		 * @param title the title
-		 */
-		public void setTitle(String title) {
-			this.title = title;
+		Stemmer stemmer = StemmingService.stemmer();
+		
+		InvertedIndex local = new InvertedIndex();
+		
+		int[] position = { 1 };
+		
+		NearDuplicateDetector detector = duplicates;
+		NearDuplicateDetector.SimHash simHash = detector == null ? null : new NearDuplicateDetector.SimHash();
+		
+		HtmlScanner scanner = HtmlScanner.scan(html, url, word -> {
+			String stem = stemmer.stem(word).toString();
+			local.add(stem, urlString, position[0]++);
+			
+			if (simHash != null) {
+				simHash.add(stem);
+			}
+		});
+		
+		for (URL link : scanner.getLinks()) {
+			if (frontier.add(link, depth + 1) && fetcher == null) {
+				DnsCache.getShared().prefetch(link.getHost());
+			}
 		}
 		
-		/**
-		 * Gets the length
-		 * 
-		 * @return length the length
-		 */
-		public String getLength() {
-			return length;
+		if (simHash != null) {
+			String original = detector.check(urlString, simHash, html.length(), simHash.words());
+			
+			if (original != null) {
+				// a page indexed before may have become a duplicate since
+				log.debug("Skipping {} as a near duplicate of {}.", urlString, original);
+				index.removeLocation(urlString);
+				pages.remove(urlString);
+				return;
+			}
 		}
 		
+		String snippet = scanner.getSnippet().isEmpty() ? "Contains links" : scanner.getSnippet();
+		
+		Page page = new Page(urlString, snippet, scanner.getTitle(), result.getContentLength(), LocalDateTime.now().format(DateTimeFormatter.ofPattern("EEEE, MMMM dd, yyyy 'at' HH:mm a")));
+		
+		page.setEtag(result.getHeader("ETag"));
+		page.setLastModified(result.getHeader("Last-Modified"));
+		page.setHash(UrlSeenSet.fingerprint(html));
+		page.setLinks(scanner.getLinks());
+		
+		pages.put(page);
+		
+		index.replaceLocation(local, urlString);
+	}
+	
+	/**
+	 * The non-static task class that will update the shared set
+	 * using the increment number.
+	 */
+	public class Task implements Runnable {
+		/** The link. */
+		private URL url;
+		
+		/** The number of links followed from the seed. */
+		private final int depth;
+		
+		/** The callback to run when the fetch is complete. */
+		private final Runnable done;
+
 		/**
-		 * Gets the timestamp
-		 * 
-		 * @return timestamp the timestamp
+		 * Initializes this task.
+		 *
+		 * @param url the link
+		 * @param depth the number of links followed from the seed
+		 * @param done the callback to run when the fetch is complete
 		 */
-		public String getTimeStamp() {
-			return timestamp;
+		public Task(URL url, int depth, Runnable done) {
+			this.url = url;
+			this.depth = depth;
+			this.done = done;
+		}
+
+		@Override
+		public void run() {
+			FetchResult result;
+			
+			try {
+				url = LinkParser.normalize(url);
+				
+				result = HtmlFetcher.get(url, 3, conditions(url));
+			} catch (MalformedURLException e) {
+				frontier.complete();
+				System.out.println("MalformedURLException");
+				return;
+			} catch (URISyntaxException e) {
+				frontier.complete();
+				System.out.println("URISyntaxException");
+				return;
+			} finally {
+				done.run();
+			}
+			
+			process(url, depth, result);
 		}
 	}
-}
\ No newline at end of file
+}
@@ -1,24 +1,83 @@
 package edu.usfca.cs272;
 
+import java.nio.file.Path;
 import java.time.LocalDateTime;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
 import org.eclipse.jetty.server.handler.HandlerList;
 import org.eclipse.jetty.server.handler.ShutdownHandler;
+import org.eclipse.jetty.server.handler.gzip.GzipHandler;
 import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.BlockingArrayQueue;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+import edu.usfca.cs272.SearchServlet.Order;
 
 /**
- * Creates a web server.
+ * Creates a web server. The size of the request thread pool, the accept queue,
+ * and the idle timeout can be tuned before the server is started, and requests
+ * can be handled on virtual threads if the Java runtime supports them. HTML and
+ * JSON responses larger than a threshold are compressed for clients that
+ * accept gzip.
+ *
+ * @see ServerBenchmark
  *
  * @author CS 272 Software Development (University of San Francisco)
  * @version Spring 2022
  */
 public class WebServer {
+	/** Logger used for this class. */
+	private static final Logger log = LogManager.getLogger();
+
+	/** The default fewest threads kept to handle requests. */
+	public static final int DEFAULT_MIN_THREADS = 8;
+
+	/** The default most threads used to handle requests. */
+	public static final int DEFAULT_MAX_THREADS = 200;
+
+	/** The default most threads used to handle requests on virtual threads. */
+	public static final int DEFAULT_MAX_VIRTUAL_THREADS = 10000;
+
+	/** The default time an idle connection is kept open in milliseconds. */
+	public static final int DEFAULT_IDLE_TIMEOUT = 30000;
+
+	/** The default smallest response compressed in bytes. */
+	public static final int DEFAULT_MIN_GZIP_SIZE = 1024;
+
+	/** The time an idle request thread is kept in milliseconds. */
+	private static final int THREAD_IDLE_TIMEOUT = 60000;
+
 	/**
 	 * The port of the server
 	 */
 	private final int port;
+
+	/** The fewest threads kept to handle requests. */
+	private int minThreads;
+
+	/** The most threads used to handle requests, or 0 for the default. */
+	private int maxThreads;
+
+	/** The most requests waiting for a thread, or 0 for no limit. */
+	private int maxQueued;
+
+	/** The most connections waiting to be accepted, or 0 for the system default. */
+	private int acceptQueue;
+
+	/** The time an idle connection is kept open in milliseconds. */
+	private int idleTimeout;
+
+	/** True if requests are handled on virtual threads. */
+	private boolean virtual;
+
+	/** The smallest response compressed in bytes. */
+	private int minGzipSize;
 	
 	/**
 	 * The inverted index.
@@ -46,6 +105,60 @@ public class WebServer {
 		this.port = port;
 		this.index = index;
 		this.workQueue = workQueue;
+		this.minThreads = DEFAULT_MIN_THREADS;
+		this.maxThreads = 0;
+		this.maxQueued = 0;
+		this.acceptQueue = 0;
+		this.idleTimeout = DEFAULT_IDLE_TIMEOUT;
+		this.virtual = false;
+		this.minGzipSize = DEFAULT_MIN_GZIP_SIZE;
+	}
+
+	/**
+	 * Sets the size of the pool of threads that handle requests. Requests that
+	 * arrive while every thread is busy wait in a queue, and are rejected once
+	 * the queue is full.
+	 *
+	 * @param minThreads the fewest threads kept
+	 * @param maxThreads the most threads, or 0 for the default
+	 * @param maxQueued the most requests waiting for a thread, or 0 for no limit
+	 */
+	public void setThreads(int minThreads, int maxThreads, int maxQueued) {
+		this.minThreads = Math.max(minThreads, 1);
+		this.maxThreads = Math.max(maxThreads, 0);
+		this.maxQueued = Math.max(maxQueued, 0);
+	}
+
+	/**
+	 * Sets how connections are accepted and kept.
+	 *
+	 * @param acceptQueue the most connections waiting to be accepted, or 0 for
+	 *   the system default
+	 * @param idleTimeout the time an idle connection is kept open in milliseconds
+	 */
+	public void setConnector(int acceptQueue, int idleTimeout) {
+		this.acceptQueue = Math.max(acceptQueue, 0);
+		this.idleTimeout = Math.max(idleTimeout, 1);
+	}
+
+	/**
+	 * Sets the smallest response that is compressed. Smaller responses are sent
+	 * as they are, since compressing them saves little.
+	 *
+	 * @param minGzipSize the smallest response compressed in bytes
+	 */
+	public void setCompression(int minGzipSize) {
+		this.minGzipSize = Math.max(minGzipSize, 0);
+	}
+
+	/**
+	 * Sets whether requests are handled on virtual threads. Virtual threads need
+	 * Java 21 or later; on older runtimes the server uses platform threads.
+	 *
+	 * @param virtual true if requests are handled on virtual threads
+	 */
+	public void setVirtualThreads(boolean virtual) {
+		this.virtual = virtual;
 	}
 
 	/**
@@ -54,30 +167,60 @@ public class WebServer {
 	 * @throws Exception if unable to start server successfully
 	 */
 	public void startServer() throws Exception {
-		Server server = new Server(port);
+		HtmlTemplate.preload(Path.of("src", "main", "resources"));
+		
+		ThreadFactory factory = virtual ? virtualThreadFactory() : null;
+		int max = maxThreads > 0 ? maxThreads : factory != null ? DEFAULT_MAX_VIRTUAL_THREADS : DEFAULT_MAX_THREADS;
+		int min = Math.min(minThreads, max);
+		// the queue starts at and grows by the minimum threads, which may not exceed its capacity
+		int step = Math.min(min, maxQueued);
+		BlockingQueue<Runnable> queue = maxQueued > 0 ? new BlockingArrayQueue<>(step, step, maxQueued) : null;
+
+		QueuedThreadPool pool = new QueuedThreadPool(max, min, THREAD_IDLE_TIMEOUT, -1, queue, null, factory);
+		pool.setName("server");
+
+		Server server = new Server(pool);
+
+		ServerConnector connector = new ServerConnector(server);
+		connector.setPort(port);
+		connector.setAcceptQueueSize(acceptQueue);
+		connector.setIdleTimeout(idleTimeout);
+		server.addConnector(connector);
+
+		log.info("Handling requests on {} to {} {} threads with {} queue, {} accept queue, and {} ms idle timeout.",
+				min, max, factory != null ? "virtual" : "platform", maxQueued > 0 ? "a " + maxQueued + " request" : "an unbounded",
+				acceptQueue > 0 ? "a " + acceptQueue + " connection" : "the default", idleTimeout);
 
 		ServletContextHandler servletContext = new ServletContextHandler(ServletContextHandler.SESSIONS);
 		
 		servletContext.setContextPath("/");
-		servletContext.addServlet(new ServletHolder(new WebServlet(index, workQueue)), "/");
+		servletContext.addServlet(new ServletHolder(new SearchServlet(index, workQueue, "results.html", false, Order.BEST, true, SearchServlet.ALL)), "/");
 		servletContext.addServlet(new ServletHolder(new HistoryServlet(index, workQueue)), "/history");
 		servletContext.addServlet(new ServletHolder(new SeedServlet(index, workQueue)), "/seed");
 		servletContext.addServlet(new ServletHolder(new IndexServlet(index, workQueue)), "/index");
 		servletContext.addServlet(new ServletHolder(new CountServlet(index, workQueue)), "/counts");
-		servletContext.addServlet(new ServletHolder(new PrivateServlet(index, workQueue)), "/private");
+		servletContext.addServlet(new ServletHolder(new SearchServlet(index, workQueue, "private.html", true, Order.BEST, false, SearchServlet.ALL)), "/private");
 		servletContext.addServlet(new ServletHolder(new PopularServlet(index, workQueue)), "/popular");
 		servletContext.addServlet(new ServletHolder(new ResetServlet(index, workQueue)), "/reset");
-		servletContext.addServlet(new ServletHolder(new ExactServlet(index, workQueue)), "/exact");
-		servletContext.addServlet(new ServletHolder(new ReverseServlet(index, workQueue)), "/reverse");
+		servletContext.addServlet(new ServletHolder(new SearchServlet(index, workQueue, "exact.html", true, Order.BEST, true, SearchServlet.ALL)), "/exact");
+		servletContext.addServlet(new ServletHolder(new SearchServlet(index, workQueue, "reverse.html", false, Order.WORST, true, SearchServlet.ALL)), "/reverse");
 		servletContext.addServlet(new ServletHolder(new OptionsServlet(index, workQueue)), "/options");
-		servletContext.addServlet(new ServletHolder(new QuickServlet(index, workQueue)), "/quick");
+		servletContext.addServlet(new ServletHolder(new SearchServlet(index, workQueue, "quick.html", false, Order.BEST, true, 1)), "/quick");
+		servletContext.addServlet(new ServletHolder(new SearchApiServlet(index, workQueue)), "/api/search");
+		servletContext.addServlet(new ServletHolder(new TrendingApiServlet(index, workQueue)), "/api/trending");
 		servletContext.addServlet(new ServletHolder(new ShutdownServlet(index, workQueue)), "/end");
 		
 		HandlerList handlers = new HandlerList();
 		
 		handlers.addHandler(new ShutdownHandler("password", false, false));
 		
-		handlers.addHandler(servletContext);
+		GzipHandler gzip = new GzipHandler();
+		gzip.setMinGzipSize(minGzipSize);
+		gzip.setIncludedMethods("GET", "POST");
+		gzip.setIncludedMimeTypes("text/html", "application/json");
+		gzip.setHandler(servletContext);
+		
+		handlers.addHandler(gzip);
 		
 		server.setHandler(handlers);
 		
@@ -90,6 +233,24 @@ public class WebServer {
 		server.join();
 	}
 	
+	/**
+	 * Creates virtual threads if the Java runtime supports them. Found by
+	 * reflection so the server still compiles and runs on Java 17.
+	 *
+	 * @return the factory or {@code null} if virtual threads are not supported
+	 */
+	private static ThreadFactory virtualThreadFactory() {
+		try {
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			Object factory = Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+			return (ThreadFactory) factory;
+		}
+		catch (ReflectiveOperationException | RuntimeException e) {
+			log.warn("Virtual threads are not supported by Java {}; using platform threads.", Runtime.version().feature());
+			return null;
+		}
+	}
+
 	/**
 	 * Gets the uptime
 	 * 
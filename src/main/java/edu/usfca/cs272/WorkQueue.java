@@ -1,6 +1,7 @@
 package edu.usfca.cs272;
 
 import java.util.LinkedList;
+import java.util.concurrent.CompletableFuture;
 
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
@@ -100,6 +101,18 @@ public class WorkQueue {
 		}
 	}
 
+	/**
+	 * Counts asynchronous work (such as a non-blocking request) as pending until
+	 * it completes, so that {@link #finish()} also waits for it. Any tasks the
+	 * future executes on this queue before completing are counted as usual.
+	 *
+	 * @param future the asynchronous work to track
+	 */
+	public void track(CompletableFuture<?> future) {
+		incrementPending();
+		future.whenComplete((result, exception) -> decrementPending());
+	}
+
 	/**
 	 * Waits for all pending work (or tasks) to be finished. Does not terminate
 	 * the worker threads so that the work queue can continue to be used.